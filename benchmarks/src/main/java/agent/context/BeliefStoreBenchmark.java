@@ -0,0 +1,105 @@
+package agent.context;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import sumo.IdDictionary;
+import sumo.SimConfig;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading and updating the beliefs of all agents through their contexts, for both belief store layouts. Each
+ * invocation visits every agent once. See {@link BeliefStoreFootprint} for the heap taken by each layout.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BeliefStoreBenchmark {
+
+    private static final String[] TYPES = {SimConfig.RICH_TYPE, SimConfig.MEDIUM_TYPE, SimConfig.POOR_TYPE};
+    private static final int EDGES = 1000;
+    private static final int LANES_PER_EDGE = 2;
+
+    @Param({"objects", "columnar"})
+    public String layout;
+
+    @Param({"10000", "100000"})
+    public int agents;
+
+    private CarContext[] contexts;
+
+    @Setup
+    public void setup() {
+        this.contexts = createContexts(this.layout, this.agents);
+    }
+
+    @Benchmark
+    public double readBeliefs() {
+        double total = 0;
+        for (CarContext context : this.contexts) {
+            if (context.isInWorld()) {
+                total += context.getBudget() + context.getCurrentMaxSpeed() + context.getCurrentMinGap() +
+                        context.getCo2BacklogAvg();
+            }
+        }
+        return total;
+    }
+
+    @Benchmark
+    public void updateBeliefs() {
+        for (int i = 0; i < this.contexts.length; i++) {
+            CarContext context = this.contexts[i];
+            context.addCo2ValueToBacklog(i % 5000);
+            context.setCurrentMaxSpeed(context.getCurrentMaxSpeed() + 0.1);
+        }
+    }
+
+    /**
+     * Create the contexts of a number of agents sharing a belief store, with every belief set
+     *
+     * @param layout    Belief store layout, objects or columnar
+     * @param agents    Number of agents
+     * @return Contexts of the agents
+     */
+    static CarContext[] createContexts(String layout, int agents) {
+        IdDictionary edges = new IdDictionary(EDGES);
+        IdDictionary lanes = new IdDictionary(EDGES * LANES_PER_EDGE);
+        for (int e = 0; e < EDGES; e++) {
+            edges.intern("e" + e);
+            for (int l = 0; l < LANES_PER_EDGE; l++) {
+                lanes.intern("e" + e + "_" + l);
+            }
+        }
+
+        BeliefStore store = "columnar".equals(layout) ?
+                new ColumnarBeliefStore(agents, edges, lanes) : new ObjectBeliefStore(agents);
+        CarContext[] contexts = new CarContext[agents];
+        for (int i = 0; i < agents; i++) {
+            CarContext context = new CarContext(null, null, TYPES[i % TYPES.length], new SplittableRandom(i), store);
+            int edge = i % EDGES;
+            context.updateLocation(edges.get(edge));
+            context.setCurrentLane(lanes.get(edge * LANES_PER_EDGE));
+            context.setCurrentMaxSpeed(13.89);
+            context.setCurrentMinGap(2.5);
+            context.setInWorld(true);
+            for (int t = 0; t < CarContext.CO2_BACKLOG_LENGTH; t++) {
+                context.addCo2ValueToBacklog(2000 + t);
+            }
+            contexts[i] = context;
+        }
+        return contexts;
+    }
+}
@@ -0,0 +1,45 @@
+package agent.context;
+
+import java.lang.ref.Reference;
+import java.util.Locale;
+
+/**
+ * Measures the heap retained by the contexts of a number of agents, for both belief store layouts. The contexts
+ * themselves and the random streams of the agents are included, as they are part of every agent in either layout.
+ * <p>
+ * Run with {@code java -cp benchmarks/target/benchmarks.jar agent.context.BeliefStoreFootprint [agents...]}.
+ * Measurements rely on System.gc(), so run with a fixed heap and without other load for stable numbers.
+ */
+public class BeliefStoreFootprint {
+
+    private static final String[] LAYOUTS = {"objects", "columnar"};
+
+    public static void main(String[] args) {
+        int[] agentCounts = args.length == 0 ? new int[]{100000, 1000000} : new int[args.length];
+        for (int i = 0; i < args.length; i++) {
+            agentCounts[i] = Integer.parseInt(args[i]);
+        }
+
+        System.out.println("layout,agents,bytes,bytes_per_agent");
+        for (int agents : agentCounts) {
+            for (String layout : LAYOUTS) {
+                long before = usedHeap();
+                CarContext[] contexts = BeliefStoreBenchmark.createContexts(layout, agents);
+                long bytes = usedHeap() - before;
+                Reference.reachabilityFence(contexts);
+                System.out.printf(Locale.ROOT, "%s,%d,%d,%.1f%n", layout, agents, bytes, (double) bytes / agents);
+            }
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        // Collect a few times, as a single System.gc() may leave garbage behind
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+}
@@ -0,0 +1,76 @@
+package agent.plan;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import sumo.BenchmarkEnvironment;
+import sumo.Institution;
+import sumo.SimConfig;
+import sumo.SumoEnvironmentInterface;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The decisions of the speed and gap plans of all agents during a single tick, against an environment on the
+ * synthetic backend. Each invocation lets every agent decide once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlanDeliberationBenchmark {
+
+    private static final double[] BUDGETS = {SimConfig.RICH_BUDGET, SimConfig.MEDIUM_BUDGET, SimConfig.POOR_BUDGET};
+
+    @Param({"1000", "10000"})
+    public int agents;
+
+    private BenchmarkEnvironment benchmarkEnvironment;
+    private SumoEnvironmentInterface environment;
+    private Institution institution;
+    private List<String> vehicleIDs;
+
+    @Setup
+    public void setup() throws Exception {
+        SimConfig.setSpeedLimitFactor(1);
+        SimConfig.setMinGap(2.5);
+        this.benchmarkEnvironment = new BenchmarkEnvironment(this.agents);
+        this.environment = this.benchmarkEnvironment.getEnvironment();
+        this.institution = new Institution();
+        this.vehicleIDs = this.benchmarkEnvironment.getVehicleIDs();
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.benchmarkEnvironment.close();
+    }
+
+    @Benchmark
+    public void setMaxSpeed(Blackhole blackhole) {
+        for (int i = 0; i < this.vehicleIDs.size(); i++) {
+            blackhole.consume(SetMaxSpeedPlan.decide(
+                    this.vehicleIDs.get(i), BUDGETS[i % BUDGETS.length], this.environment, this.institution));
+        }
+    }
+
+    @Benchmark
+    public void setMinGap(Blackhole blackhole) {
+        for (int i = 0; i < this.vehicleIDs.size(); i++) {
+            blackhole.consume(SetMinGapPlan.decide(
+                    this.vehicleIDs.get(i), BUDGETS[i % BUDGETS.length], this.environment, this.institution));
+        }
+    }
+}
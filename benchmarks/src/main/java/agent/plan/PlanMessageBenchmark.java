@@ -0,0 +1,88 @@
+package agent.plan;
+
+import de.tudresden.ws.container.SumoStage;
+import de.tudresden.ws.container.SumoStringList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding and decoding of every message type, both as JSON and with the binary codec
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlanMessageBenchmark {
+
+    private static final int ROUTE_EDGES = 20;
+
+    @Param({"SetMaxSpeed", "SetMinGap", "CreateRoute", "EnterWorld"})
+    public String messageType;
+
+    private PlanMessage message;
+    private List<PlanMessage> messages;
+    private String json;
+    private String binary;
+
+    @Setup
+    public void setup() {
+        switch (this.messageType) {
+            case "SetMaxSpeed":
+                this.message = new SetMaxSpeedPlanMessage("car-node0-1234", 13.9);
+                break;
+            case "SetMinGap":
+                this.message = new SetMinGapPlanMessage("car-node0-1234", 2.5);
+                break;
+            case "CreateRoute":
+                SumoStringList edges = new SumoStringList();
+                for (int i = 0; i < ROUTE_EDGES; i++) edges.add("edge-" + i);
+                SumoStage stage = new SumoStage();
+                stage.edges = edges;
+                this.message = new CreateRoutePlanMessage("route-1234", stage);
+                break;
+            case "EnterWorld":
+                this.message = new EnterWorldPlanMessage("car-node0-1234", "car", "route-1234", 60000, (byte) 1);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown message type " + this.messageType);
+        }
+        this.messages = Collections.singletonList(this.message);
+        this.json = this.message.toJson();
+        this.binary = PlanMessageCodec.encode(this.messages);
+    }
+
+    @Benchmark
+    public String toJson() {
+        return this.message.toJson();
+    }
+
+    @Benchmark
+    public PlanMessage parseJson() {
+        return PlanMessageParser.parse(this.json);
+    }
+
+    @Benchmark
+    public String encodeBinary() {
+        return PlanMessageCodec.encode(this.messages);
+    }
+
+    @Benchmark
+    public List<PlanMessage> decodeBinary() {
+        return PlanMessageCodec.decode(this.binary);
+    }
+}
@@ -0,0 +1,143 @@
+package sumo;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * An environment interface on top of the synthetic backend, with a given number of vehicles driving, for benchmarks
+ * that need the environment but should not measure SUMO.
+ * <p>
+ * The network consists of independent corridors of two long edges with two lanes each, with ten vehicles per
+ * corridor, so all vehicles depart within a few steps and none arrive during a benchmark.
+ * <p>
+ * Actions that set a value the vehicle already has are not dropped, so benchmarks that dispatch the same actions in
+ * every invocation measure the full dispatch each time.
+ */
+public class BenchmarkEnvironment {
+
+    private static final int VEHICLES_PER_CORRIDOR = 10;
+    private static final int EDGE_LENGTH = 5000;
+    private static final int WARMUP_STEPS = 30;
+
+    private final SumoEnvironmentInterface environment;
+    private final List<String> vehicleIDs = new ArrayList<>();
+
+    /**
+     * Create an environment, and let the vehicles depart
+     *
+     * @param nVehicles Number of vehicles driving in the environment
+     */
+    public BenchmarkEnvironment(int nVehicles) throws Exception {
+        int nCorridors = (nVehicles + VEHICLES_PER_CORRIDOR - 1) / VEHICLES_PER_CORRIDOR;
+        File config = writeScenario(nCorridors);
+
+        this.environment = new SumoEnvironmentInterface(parseArguments(config), new Random(42));
+
+        SumoBackend backend = this.environment.getBackend();
+        for (int i = 0; i < nVehicles; i++) {
+            String vehicleID = "car-benchmark-" + i;
+            backend.addVehicle(vehicleID, "car", "route-" + (i / VEHICLES_PER_CORRIDOR), 0, (byte) (i % 2));
+            this.vehicleIDs.add(vehicleID);
+        }
+
+        // The pre-hook processes departures of the previous step, and subscribes to the departed vehicles
+        for (int step = 0; step < WARMUP_STEPS; step++) {
+            this.environment.tickPreHook(step);
+            this.environment.tickPostHook(step, 0, new HashMap<>());
+        }
+        this.environment.tickPreHook(WARMUP_STEPS);
+    }
+
+    public SumoEnvironmentInterface getEnvironment() {
+        return environment;
+    }
+
+    /**
+     * @return SUMO IDs of all vehicles in the environment
+     */
+    public List<String> getVehicleIDs() {
+        return vehicleIDs;
+    }
+
+    /**
+     * Stop the synthetic simulation
+     */
+    public void close() {
+        this.environment.getBackend().close();
+    }
+
+    private static CommandLine parseArguments(File config) throws Exception {
+        Options options = new Options();
+        options.addOption(Option.builder().longOpt("sumo-binary").hasArg().build());
+        options.addOption(Option.builder().longOpt("configuration-file").hasArg().build());
+        options.addOption(Option.builder().longOpt("backend").hasArg().build());
+        options.addOption(Option.builder().longOpt("applied-state-epsilon").hasArg().build());
+
+        return new DefaultParser().parse(options, new String[]{
+                "--sumo-binary", "sumo",
+                "--configuration-file", config.getAbsolutePath(),
+                "--backend", "synthetic",
+                "--applied-state-epsilon", "-1"
+        });
+    }
+
+    private static File writeScenario(int nCorridors) throws IOException {
+        File dir = Files.createTempDirectory("sim2apl-sumo-benchmark").toFile();
+        dir.deleteOnExit();
+
+        File net = new File(dir, "benchmark.net.xml");
+        try (PrintWriter out = new PrintWriter(net)) {
+            out.println("<net>");
+            for (int c = 0; c < nCorridors; c++) {
+                double y = c * 20.0;
+                for (int e = 0; e < 2; e++) {
+                    out.printf("<edge id=\"c%d_%d\">%n", c, e);
+                    for (int lane = 0; lane < 2; lane++) {
+                        out.printf(Locale.ROOT, "<lane id=\"c%d_%d_%d\" index=\"%d\" speed=\"13.89\" length=\"%d\" " +
+                                        "shape=\"%d,%.1f %d,%.1f\"/>%n",
+                                c, e, lane, lane, EDGE_LENGTH, e * EDGE_LENGTH, y + lane * 3.2,
+                                (e + 1) * EDGE_LENGTH, y + lane * 3.2);
+                    }
+                    out.println("</edge>");
+                }
+                out.printf("<connection from=\"c%d_0\" to=\"c%d_1\" fromLane=\"0\" toLane=\"0\"/>%n", c, c);
+            }
+            out.println("</net>");
+        }
+
+        File routes = new File(dir, "benchmark.rou.xml");
+        try (PrintWriter out = new PrintWriter(routes)) {
+            out.println("<routes>");
+            out.println("<vType id=\"car\" minGap=\"2.5\" maxSpeed=\"55\"/>");
+            for (int c = 0; c < nCorridors; c++) {
+                out.printf("<route id=\"route-%d\" edges=\"c%d_0 c%d_1\"/>%n", c, c, c);
+            }
+            out.println("</routes>");
+        }
+
+        File config = new File(dir, "benchmark.sumocfg");
+        try (PrintWriter out = new PrintWriter(config)) {
+            out.println("<configuration><input>");
+            out.printf("<net-file value=\"%s\"/>%n", net.getName());
+            out.printf("<route-files value=\"%s\"/>%n", routes.getName());
+            out.println("</input></configuration>");
+        }
+
+        net.deleteOnExit();
+        routes.deleteOnExit();
+        config.deleteOnExit();
+        return config;
+    }
+}
@@ -0,0 +1,107 @@
+package sumo;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The sanction functions of the institution, and the inverse queries agents use to find the speed and gap they can
+ * afford. Inputs cycle through a fixed set of random values, so results cannot be constant folded.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InstitutionBenchmark {
+
+    private static final int N_INPUTS = 1024;
+    private static final double MAX_GAP = 200;
+
+    private final Institution institution = new Institution();
+
+    private final double[] speeds = new double[N_INPUTS];
+    private final double[] laneSpeeds = new double[N_INPUTS];
+    private final double[] gaps = new double[N_INPUTS];
+    private final double[] budgets = new double[N_INPUTS];
+    private int i = 0;
+
+    @Setup
+    public void setup() {
+        SimConfig.setSpeedLimitFactor(1);
+        SimConfig.setMinGap(2.5);
+
+        Random random = new Random(42);
+        double[] budgetValues = {SimConfig.RICH_BUDGET, SimConfig.MEDIUM_BUDGET, SimConfig.POOR_BUDGET};
+        for (int j = 0; j < N_INPUTS; j++) {
+            this.speeds[j] = random.nextDouble() * 40;
+            this.laneSpeeds[j] = 8 + random.nextDouble() * 25;
+            this.gaps[j] = random.nextDouble() * 50;
+            this.budgets[j] = budgetValues[random.nextInt(budgetValues.length)];
+        }
+    }
+
+    private int next() {
+        this.i = (this.i + 1) & (N_INPUTS - 1);
+        return this.i;
+    }
+
+    @Benchmark
+    public double speedLimitSanction() {
+        int j = next();
+        return this.institution.getSpeedLimitSanction(this.speeds[j], this.laneSpeeds[j]);
+    }
+
+    @Benchmark
+    public double fixedSpeedSanction() {
+        int j = next();
+        return this.institution.getFixedSpeedSanction(this.speeds[j], this.laneSpeeds[j]);
+    }
+
+    @Benchmark
+    public double minGapSanction() {
+        int j = next();
+        return this.institution.getMinGapSanction(this.gaps[j], this.speeds[j]);
+    }
+
+    @Benchmark
+    public double fixedGapSanction() {
+        int j = next();
+        return this.institution.getFixedGapSanction(this.gaps[j], this.speeds[j]);
+    }
+
+    @Benchmark
+    public double maxAffordableSpeed() {
+        int j = next();
+        return this.institution.getMaxAffordableSpeed(this.budgets[j], this.laneSpeeds[j], 55);
+    }
+
+    @Benchmark
+    public double maxAffordableFixedSpeed() {
+        int j = next();
+        return this.institution.getMaxAffordableFixedSpeed(this.budgets[j], this.laneSpeeds[j], 55);
+    }
+
+    @Benchmark
+    public double minAffordableGap() {
+        int j = next();
+        return this.institution.getMinAffordableGap(this.budgets[j], this.speeds[j], SimConfig.MIN_GAP, MAX_GAP);
+    }
+
+    @Benchmark
+    public double minAffordableFixedGap() {
+        int j = next();
+        return this.institution.getMinAffordableFixedGap(this.budgets[j], this.speeds[j], SimConfig.MIN_GAP, MAX_GAP);
+    }
+}
@@ -0,0 +1,99 @@
+package sumo;
+
+import agent.plan.PlanMessage;
+import agent.plan.PlanMessageCodec;
+import agent.plan.SetMaxSpeedPlanMessage;
+import agent.plan.SetMinGapPlanMessage;
+import nl.uu.cs.iss.ga.sim2apl.core.agent.AgentID;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ordering and dispatching the actions of all agents at the end of a tick, as done in the tick post-hook, for
+ * actions delivered in-process and for actions returned by plans as JSON or as binary frames. Actions are performed
+ * by the synthetic backend, which only stores them, so the cost measured is that of the environment interface. The
+ * benchmark environment does not drop repeated actions, so every invocation dispatches all actions.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TickDispatchBenchmark {
+
+    @Param({"1000", "10000"})
+    public int agents;
+
+    @Param({"in-process", "json", "binary"})
+    public String encoding;
+
+    private BenchmarkEnvironment benchmarkEnvironment;
+    private SumoEnvironmentInterface environment;
+    private final Map<AgentID, List<PlanMessage>> channelActions = new HashMap<>();
+    private final HashMap<AgentID, List<String>> planResults = new HashMap<>();
+
+    @Setup
+    public void setup() throws Exception {
+        this.benchmarkEnvironment = new BenchmarkEnvironment(this.agents);
+        this.environment = this.benchmarkEnvironment.getEnvironment();
+
+        for (String vehicleID : this.benchmarkEnvironment.getVehicleIDs()) {
+            AgentID agentID = AgentID.createEmpty();
+            agentID.setName(vehicleID);
+            this.environment.getAgentRegistry().register(vehicleID, agentID, null, null);
+            List<PlanMessage> messages = Arrays.asList(
+                    new SetMaxSpeedPlanMessage(vehicleID, 13.9),
+                    new SetMinGapPlanMessage(vehicleID, 2.5));
+
+            switch (this.encoding) {
+                case "in-process":
+                    this.channelActions.put(agentID, messages);
+                    break;
+                case "json":
+                    List<String> json = new ArrayList<>();
+                    for (PlanMessage message : messages) json.add(message.toJson());
+                    this.planResults.put(agentID, json);
+                    break;
+                case "binary":
+                    List<String> frames = new ArrayList<>();
+                    for (PlanMessage message : messages) {
+                        frames.add(PlanMessageCodec.encode(Collections.singletonList(message)));
+                    }
+                    this.planResults.put(agentID, frames);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown encoding " + this.encoding);
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.benchmarkEnvironment.close();
+    }
+
+    @Benchmark
+    public int orderAndDispatch() {
+        List<AgentID> order = this.environment.orderActingAgents(this.channelActions, this.planResults);
+        return this.environment.dispatchActions(order, this.channelActions, this.planResults);
+    }
+}
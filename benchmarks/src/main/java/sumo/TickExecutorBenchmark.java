@@ -0,0 +1,168 @@
+package sumo;
+
+import agent.plan.SetMaxSpeedPlan;
+import nl.uu.cs.iss.ga.sim2apl.core.agent.Agent;
+import nl.uu.cs.iss.ga.sim2apl.core.agent.AgentArguments;
+import nl.uu.cs.iss.ga.sim2apl.core.agent.AgentContextInterface;
+import nl.uu.cs.iss.ga.sim2apl.core.agent.AgentID;
+import nl.uu.cs.iss.ga.sim2apl.core.agent.PlanToAgentInterface;
+import nl.uu.cs.iss.ga.sim2apl.core.agent.Trigger;
+import nl.uu.cs.iss.ga.sim2apl.core.fipa.FIPAMessenger;
+import nl.uu.cs.iss.ga.sim2apl.core.plan.Plan;
+import nl.uu.cs.iss.ga.sim2apl.core.plan.PlanScheme;
+import nl.uu.cs.iss.ga.sim2apl.core.platform.Platform;
+import nl.uu.cs.iss.ga.sim2apl.core.tick.TickExecutor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A full tick of the work-stealing and the virtual thread tick executors, with every agent deliberating once. Each
+ * agent decides on its maximum speed against an environment on the synthetic backend, and then makes one request
+ * that holds a shared monitor for the given round trip time, like a TraCI request holds the monitor of the TraaS
+ * connection. Virtual threads that block inside the monitor pin their carrier thread, so this shows whether the
+ * virtual thread executor still pays off when agents talk to SUMO.
+ * <p>
+ * The virtual thread executor is only available when the simulation was built and is run on JDK 21 or newer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TickExecutorBenchmark {
+
+    @Param({"2000", "20000"})
+    public int agents;
+
+    @Param({"work-stealing", "virtual"})
+    public String executor;
+
+    @Param({"0", "20"})
+    public int roundTripMicros;
+
+    private BenchmarkEnvironment benchmarkEnvironment;
+    private TickExecutor tickExecutor;
+    private final List<Agent> agentList = new ArrayList<>();
+
+    @Setup
+    public void setup() throws Exception {
+        SimConfig.setSpeedLimitFactor(1);
+        this.benchmarkEnvironment = new BenchmarkEnvironment(this.agents);
+        this.tickExecutor = createTickExecutor(this.executor);
+        Platform platform = Platform.newPlatform(this.tickExecutor, new FIPAMessenger());
+
+        SumoEnvironmentInterface environment = this.benchmarkEnvironment.getEnvironment();
+        Institution institution = new Institution();
+        Object connection = new Object();
+        long roundTripNanos = TimeUnit.MICROSECONDS.toNanos(this.roundTripMicros);
+
+        for (String vehicleID : this.benchmarkEnvironment.getVehicleIDs()) {
+            AgentArguments args = new AgentArguments();
+            args.addExternalTriggerPlanScheme(
+                    new DecidePlanScheme(vehicleID, environment, institution, connection, roundTripNanos));
+            AgentID id = AgentID.createEmpty();
+            id.setName(vehicleID);
+            this.agentList.add(new Agent(platform, args, id));
+        }
+
+        // Newly created agents are scheduled for their first deliberation cycle
+        this.tickExecutor.doTick();
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.tickExecutor.shutdown();
+        this.benchmarkEnvironment.close();
+    }
+
+    @Benchmark
+    public HashMap<AgentID, List<String>> tick() {
+        for (Agent agent : this.agentList) {
+            agent.addExternalTrigger(new DecideTrigger());
+        }
+        return this.tickExecutor.doTick();
+    }
+
+    private static TickExecutor createTickExecutor(String type) {
+        switch (type) {
+            case "work-stealing":
+                return new WorkStealingTickExecutor(new Random(42));
+            case "virtual":
+                try {
+                    return (TickExecutor) Class.forName("sumo.VirtualThreadTickExecutor")
+                            .getConstructor(Random.class)
+                            .newInstance(new Random(42));
+                } catch (ReflectiveOperationException | UnsupportedClassVersionError e) {
+                    throw new IllegalStateException("The virtual tick executor requires building with the jdk21 " +
+                            "profile and running on JDK 21 or newer", e);
+                }
+            default:
+                throw new IllegalArgumentException("Unknown tick executor " + type);
+        }
+    }
+
+    private static class DecideTrigger implements Trigger {
+    }
+
+    /**
+     * Lets the agent of a vehicle decide on its maximum speed, and then make a request to the environment
+     */
+    private static class DecidePlanScheme implements PlanScheme {
+        private final String vehicleID;
+        private final SumoEnvironmentInterface environment;
+        private final Institution institution;
+        private final Object connection;
+        private final long roundTripNanos;
+
+        DecidePlanScheme(String vehicleID, SumoEnvironmentInterface environment, Institution institution,
+                         Object connection, long roundTripNanos) {
+            this.vehicleID = vehicleID;
+            this.environment = environment;
+            this.institution = institution;
+            this.connection = connection;
+            this.roundTripNanos = roundTripNanos;
+        }
+
+        @Override
+        public Plan instantiate(Trigger trigger, AgentContextInterface agentContextInterface) {
+            return trigger instanceof DecideTrigger ? new DecidePlan(this) : Plan.UNINSTANTIATED;
+        }
+    }
+
+    private static class DecidePlan extends Plan {
+        private final DecidePlanScheme scheme;
+
+        DecidePlan(DecidePlanScheme scheme) {
+            this.scheme = scheme;
+        }
+
+        @Override
+        public String execute(PlanToAgentInterface planToAgentInterface) {
+            Object decision = SetMaxSpeedPlan.decide(this.scheme.vehicleID, SimConfig.MEDIUM_BUDGET,
+                    this.scheme.environment, this.scheme.institution);
+            synchronized (this.scheme.connection) {
+                if (this.scheme.roundTripNanos > 0) LockSupport.parkNanos(this.scheme.roundTripNanos);
+            }
+            setFinished(true);
+            return decision == null ? null : this.scheme.vehicleID;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package sumo;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drawing agent types from the distribution used when creating agents
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WeightedRandomBagBenchmark {
+
+    private WeightedRandomBag<String> bag;
+
+    @Setup
+    public void setup() {
+        this.bag = new WeightedRandomBag<>(new Random(42));
+        this.bag.addEntry(SimConfig.RICH_TYPE, 20);
+        this.bag.addEntry(SimConfig.POOR_TYPE, 30);
+        this.bag.addEntry(SimConfig.MEDIUM_TYPE, 50);
+    }
+
+    @Benchmark
+    public String getRandom() {
+        return this.bag.getRandom();
+    }
+}
@@ -1,6 +1,9 @@
 import org.apache.commons.cli.*;
+import sumo.AppliedStateTable;
+import sumo.CommandMetrics;
 import sumo.EnvironmentAgentInterface;
 import sumo.SimConfig;
+import sumo.TickMetrics;
 
 public class Main {
 
@@ -94,6 +97,50 @@ public class Main {
                 .desc("If true use matrix")
                 .build();
 
+        final Option matrixEncoding = Option.builder()
+                .argName("binary,json")
+                .hasArg()
+                .required(false)
+                .longOpt("matrix-encoding")
+                .type(String.class)
+                .desc("Encoding of agent actions sent through the Matrix: [binary,json]. Default is json. binary " +
+                        "sends every action as a compact binary frame, and should only be used " +
+                        "when all nodes support it")
+                .build();
+
+        final Option backend = Option.builder()
+                .argName("traci,libsumo,synthetic")
+                .hasArg()
+                .required(false)
+                .longOpt("backend")
+                .type(String.class)
+                .desc("How to run SUMO: [traci,libsumo,synthetic]. Default is traci, which runs SUMO as a separate " +
+                        "process. libsumo runs SUMO inside this JVM, and requires the libsumo jar and native library " +
+                        "of the SUMO installation (-Djava.library.path=$SUMO_HOME/bin). synthetic does not run SUMO, " +
+                        "but moves vehicles over the configured network with a simple model, for load testing agents")
+                .build();
+
+        final Option dispatchBatchSize = Option.builder()
+                .argName("Batch size")
+                .hasArg()
+                .required(false)
+                .longOpt("dispatch-batch-size")
+                .type(Integer.TYPE)
+                .desc("The maximum number of agent actions sent to SUMO in a single TraCI message. Default is " +
+                        "1000")
+                .build();
+
+        final Option appliedStateEpsilon = Option.builder()
+                .argName("epsilon")
+                .hasArg()
+                .required(false)
+                .longOpt("applied-state-epsilon")
+                .type(Double.TYPE)
+                .desc("Actions setting the maximum speed or minimum gap of a car to within this difference of the " +
+                        "value last applied are dropped instead of sent to SUMO. Default is " +
+                        AppliedStateTable.DEFAULT_EPSILON + ". A negative value sends every action")
+                .build();
+
         /**
          * Instantiation
          */
@@ -165,6 +212,59 @@ public class Main {
          * SIMULATION
          * **/
 
+        final Option tickExecutor = Option.builder()
+                .argName("default,matrix,work-stealing,virtual")
+                .hasArg()
+                .required(false)
+                .longOpt("tick-executor")
+                .type(String.class)
+                .desc("The executor performing the deliberation cycles of the agents: " +
+                        "[default,matrix,work-stealing,virtual]. Default is default, or matrix if --use-matrix is " +
+                        "true. The virtual executor requires JDK 21 and a build with the jdk21 profile")
+                .build();
+
+        final Option beliefStore = Option.builder()
+                .argName("objects,columnar")
+                .hasArg()
+                .required(false)
+                .longOpt("belief-store")
+                .type(String.class)
+                .desc("How the beliefs of the car agents are stored: [objects,columnar]. Default is objects, which " +
+                        "keeps an object per agent. columnar keeps each belief in a primitive array indexed by agent, " +
+                        "which takes far less heap with many agents")
+                .build();
+
+        final Option insertionRamp = Option.builder()
+                .argName("ticks")
+                .hasArg()
+                .required(false)
+                .longOpt("insertion-ramp")
+                .type(Integer.TYPE)
+                .desc("Spread the insertion of the cars over this many ticks, by letting at most " +
+                        "number-of-cars / ticks cars enter the environment per tick. By default all cars enter at once")
+                .build();
+
+        final Option insertionCapacity = Option.builder()
+                .argName("cars per lane")
+                .hasArg()
+                .required(false)
+                .longOpt("insertion-capacity")
+                .type(Double.TYPE)
+                .desc("Maximum number of cars per lane of a source edge that have been released to enter the " +
+                        "environment, but have not been inserted by SUMO yet. Other cars wait until the source edge " +
+                        "has room. By default there is no limit")
+                .build();
+
+        final Option executorThreads = Option.builder()
+                .argName("number of threads")
+                .hasArg()
+                .required(false)
+                .longOpt("executor-threads")
+                .type(Integer.TYPE)
+                .desc("The number of threads used for agent deliberation. Defaults to 4, or to the number of " +
+                        "available processors for the work-stealing executor")
+                .build();
+
         final Option agentSeed = Option.builder()
                 .argName("Agent seed")
                 .hasArg()
@@ -219,6 +319,18 @@ public class Main {
                         "name will be generated")
                 .build();
 
+        final Option telemetryStatistics = Option.builder()
+                .argName("Include vehicle telemetry")
+                .hasArg(true)
+                .optionalArg(true)
+                .longOpt("telemetry-statistics")
+                .required(false)
+                .type(boolean.class)
+                .desc("Write the speed, position, lane, CO2 emission, budget and sanction of every vehicle at each " +
+                        "time step to a compressed binary file, without SUMO output. Read it with " +
+                        "sumo.TelemetryReader. If no file is specified, a file name will be generated")
+                .build();
+
         final Option statistics = Option.builder()
                 .argName("Include all possible statistics")
                 .hasArg(false)
@@ -239,6 +351,34 @@ public class Main {
                         "statistics automatically")
                 .build();
 
+        final Option extractStatistics = Option.builder()
+                .argName("Extract statistics")
+                .hasArg(false)
+                .longOpt("extract-statistics")
+                .required(false)
+                .desc("Compute summary statistics of the agent, route and emission statistics while SUMO writes " +
+                        "them, and write them as JSON to the statistics directory when the simulation finishes")
+                .build();
+
+        final Option metricsDir = Option.builder()
+                .argName("Directory")
+                .hasArg(true)
+                .longOpt("metrics-directory")
+                .desc("If specified, timing of the phases of each tick and counts of actions and vehicles are " +
+                        "written to a CSV file in this directory, and to a Prometheus text file that is updated " +
+                        "every " + TickMetrics.EXPORT_INTERVAL + " ticks")
+                .build();
+
+        final Option commandMetrics = Option.builder()
+                .argName("Record simulation command metrics")
+                .hasArg(false)
+                .longOpt("command-metrics")
+                .required(false)
+                .desc("Record the count, latency, estimated volume and errors of every request made to the " +
+                        "simulation, by command. Written to the log and, with --metrics-directory, to " +
+                        CommandMetrics.CSV_FILE + " and the Prometheus file")
+                .build();
+
         final Options options = new Options();
 
         options.addOption(sumoBinary);
@@ -254,14 +394,27 @@ public class Main {
         options.addOption(speedFact);
         options.addOption(minGap);
         options.addOption(agentSeed);
+        options.addOption(tickExecutor);
+        options.addOption(executorThreads);
+        options.addOption(beliefStore);
+        options.addOption(insertionRamp);
+        options.addOption(insertionCapacity);
         options.addOption(agentStatistics);
         options.addOption(routeStatistics);
         options.addOption(useMatrix);
+        options.addOption(matrixEncoding);
+        options.addOption(backend);
+        options.addOption(dispatchBatchSize);
+        options.addOption(appliedStateEpsilon);
         options.addOption(carIDPrefix);
         options.addOption(emissionStatistics);
         options.addOption(summaryStatistics);
+        options.addOption(telemetryStatistics);
         options.addOption(statistics);
         options.addOption(statisticsDir);
+        options.addOption(extractStatistics);
+        options.addOption(metricsDir);
+        options.addOption(commandMetrics);
 
         return options;
     }
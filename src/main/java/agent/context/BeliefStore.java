@@ -0,0 +1,75 @@
+package agent.context;
+
+/**
+ * Storage of the beliefs of all car agents, as rows indexed by the ordinal of the agent. {@link CarContext} is a view
+ * over a single row, so plans access beliefs through the context and do not depend on how they are laid out.
+ * <p>
+ * Rows are added on the thread that creates the agents, before the simulation starts. After that, an agent only
+ * reads and writes its own row while it deliberates, and the environment agent interface writes rows in the tick
+ * pre-hook, so implementations do not synchronize.
+ */
+public interface BeliefStore {
+
+    /**
+     * Add a row for a new agent, holding the default beliefs: a budget of 0, no route, location or lane, no maximum
+     * speed or minimum gap (-1), not in the world, and an empty CO2 backlog
+     *
+     * @return Ordinal of the new row
+     */
+    int add();
+
+    /**
+     * @return Number of rows
+     */
+    int size();
+
+    double getBudget(int agent);
+
+    void setBudget(int agent, double budget);
+
+    double getMaxSpeed(int agent);
+
+    void setMaxSpeed(int agent, double maxSpeed);
+
+    double getMinGap(int agent);
+
+    void setMinGap(int agent, double minGap);
+
+    /**
+     * @return Index of the current route in the route table, or -1 if no route has been picked yet
+     */
+    int getRoute(int agent);
+
+    void setRoute(int agent, int route);
+
+    /**
+     * @return ID of the edge the car is at, or null if not known
+     */
+    String getLocation(int agent);
+
+    void setLocation(int agent, String edgeID);
+
+    /**
+     * @return ID of the lane the car is on, or null if not known
+     */
+    String getLane(int agent);
+
+    void setLane(int agent, String laneID);
+
+    boolean isInWorld(int agent);
+
+    void setInWorld(int agent, boolean inWorld);
+
+    /**
+     * Add a CO2 emission to the backlog of an agent, replacing the oldest emission if the backlog holds
+     * {@value CarContext#CO2_BACKLOG_LENGTH} emissions
+     */
+    void addCo2(int agent, double co2);
+
+    /**
+     * @return Average of the CO2 emissions in the backlog of an agent, or 0 if the backlog is empty
+     */
+    double getCo2Average(int agent);
+
+    void clearCo2(int agent);
+}
@@ -3,47 +3,54 @@ package agent.context;
 import agent.SumoCar2APLAgent;
 import nl.uu.cs.iss.ga.sim2apl.core.agent.Context;
 import sumo.EnvironmentAgentInterface;
+import sumo.RouteTable;
 import sumo.SimConfig;
 
-import java.util.LinkedList;
 import java.util.List;
-import java.util.OptionalDouble;
+import java.util.SplittableRandom;
 
+/**
+ * The beliefs of a car agent. The beliefs themselves are kept in a {@link BeliefStore} shared by all agents, of which
+ * this context is a view over the row of its agent.
+ */
 public class CarContext implements Context {
 
-    private static final int CO2_BACKLOG_LENGTH = 10;
+    /**
+     * Number of ticks the CO2 emission is averaged over
+     */
+    public static final int CO2_BACKLOG_LENGTH = 10;
 
     // Do not change this value. It is the physical limit of the car
     public static final double CAR_MAX_SPEED = 55.0;
 
     private final EnvironmentAgentInterface environmentAgentInterface;
     private final SumoCar2APLAgent agentInterface;
-
-    private String currentLocation;
-    private String currentTarget;
-    private List<String> currentRoute;
-    private String routeID;
-    private List<Double> co2Backlog = new LinkedList<>();
-    private double budget;
-    private String currentLane;
-
-    private double currentMaxSpeed = -1;
-    private double currentMinGap = -1;
-
-    private boolean inWorld = false;
-
-    public CarContext(EnvironmentAgentInterface environmentAgentInterface, SumoCar2APLAgent agentInterface, String type) {
+    private final SplittableRandom random;
+
+    private final BeliefStore beliefs;
+    private final int row;
+
+    /**
+     * Create the context of a new agent, adding a row for its beliefs to the belief store
+     *
+     * @param beliefs   Belief store shared by all agents
+     */
+    public CarContext(EnvironmentAgentInterface environmentAgentInterface, SumoCar2APLAgent agentInterface, String type,
+                      SplittableRandom random, BeliefStore beliefs) {
         this.environmentAgentInterface = environmentAgentInterface;
         this.agentInterface = agentInterface;
+        this.random = random;
+        this.beliefs = beliefs;
+        this.row = beliefs.add();
         switch (type) {
             case SimConfig.RICH_TYPE:
-                this.budget = SimConfig.RICH_BUDGET;
+                setBudget(SimConfig.RICH_BUDGET);
                 break;
             case SimConfig.MEDIUM_TYPE:
-                this.budget = SimConfig.MEDIUM_BUDGET;
+                setBudget(SimConfig.MEDIUM_BUDGET);
                 break;
             case SimConfig.POOR_TYPE:
-                this.budget = SimConfig.POOR_BUDGET;
+                setBudget(SimConfig.POOR_BUDGET);
                 break;
         }
     }
@@ -52,86 +59,128 @@ public class CarContext implements Context {
         return environmentAgentInterface;
     }
 
+    /**
+     * @return Read-only view of the edges of the current route, or null if no route has been picked yet
+     */
     public List<String> getCurrentRoute() {
-        return currentRoute;
+        int route = getCurrentRouteIndex();
+        return route < 0 ? null : getRouteTable().getEdgeIDs(route);
+    }
+
+    /**
+     * @return Index of the current route in the route table, or -1 if no route has been picked yet
+     */
+    public int getCurrentRouteIndex() {
+        return this.beliefs.getRoute(this.row);
     }
 
     public String getCurrentLocation() {
-        return currentLocation;
+        return this.beliefs.getLocation(this.row);
     }
 
     public String getCurrentTarget() {
-        return currentTarget;
+        int route = getCurrentRouteIndex();
+        if (route < 0) return null;
+        RouteTable routes = getRouteTable();
+        return routes.getEdgeID(route, routes.getEdgeCount(route) - 1);
     }
 
     public SumoCar2APLAgent getAgentInterface() {
         return agentInterface;
     }
 
-    public void updateRoute(String currentLocation, List<String> route, String routeID) {
-        this.currentLocation = currentLocation;
-        this.currentRoute = route;
-        this.routeID = routeID;
-        this.currentTarget = this.currentRoute.get(this.currentRoute.size() - 1);
+    /**
+     * @return Random stream of this agent. Only to be used while this agent deliberates
+     */
+    public SplittableRandom getRandom() {
+        return random;
+    }
+
+    /**
+     * Adopt a route from the route table, placing the car at the first edge of that route
+     *
+     * @param route Index of the route in the route table
+     */
+    public void updateRoute(int route) {
+        this.beliefs.setRoute(this.row, route);
+        this.beliefs.setLocation(this.row, getRouteTable().getEdgeID(route, 0));
     }
 
     public void updateLocation(String location) {
-        this.currentLocation = location;
+        this.beliefs.setLocation(this.row, location);
     }
 
     public String getRouteID() {
-        return routeID;
+        int route = getCurrentRouteIndex();
+        return route < 0 ? null : getRouteTable().getRouteID(route);
     }
 
     public boolean isInWorld() {
-        return inWorld;
+        return this.beliefs.isInWorld(this.row);
     }
 
     public void setInWorld(boolean inWorld) {
-        this.inWorld = inWorld;
+        this.beliefs.setInWorld(this.row, inWorld);
     }
 
+    /**
+     * Add the CO2 emission of this car during the last time step. Called by the environment agent interface every
+     * tick, before the agent deliberates
+     *
+     * @param co2_value CO2 emission in mg/s
+     */
     public void addCo2ValueToBacklog(double co2_value) {
-        this.co2Backlog.add(co2_value);
-        if(this.co2Backlog.size() > CO2_BACKLOG_LENGTH) {
-            this.co2Backlog.remove(this.co2Backlog.get(0));
-        }
+        this.beliefs.addCo2(this.row, co2_value);
+    }
+
+    /**
+     * Forget the CO2 emissions of the last trip
+     */
+    public void clearCo2Backlog() {
+        this.beliefs.clearCo2(this.row);
     }
 
+    /**
+     * @return Average CO2 emission of this car over the last {@value #CO2_BACKLOG_LENGTH} ticks in the environment in
+     * mg/s, or 0 if no emission has been reported yet
+     */
     public double getCo2BacklogAvg() {
-        OptionalDouble avg = this.co2Backlog.stream().mapToDouble(a -> a).average();
-        return avg.isPresent() ? avg.getAsDouble() : 0;
+        return this.beliefs.getCo2Average(this.row);
     }
 
     public double getBudget() {
-        return budget;
+        return this.beliefs.getBudget(this.row);
     }
 
     public void setBudget(double budget) {
-        this.budget = budget;
+        this.beliefs.setBudget(this.row, budget);
     }
 
     public double getCurrentMaxSpeed() {
-        return currentMaxSpeed;
+        return this.beliefs.getMaxSpeed(this.row);
     }
 
     public void setCurrentMaxSpeed(double currentMaxSpeed) {
-        this.currentMaxSpeed = currentMaxSpeed;
+        this.beliefs.setMaxSpeed(this.row, currentMaxSpeed);
     }
 
     public double getCurrentMinGap() {
-        return currentMinGap;
+        return this.beliefs.getMinGap(this.row);
     }
 
     public void setCurrentMinGap(double currentMinGap) {
-        this.currentMinGap = currentMinGap;
+        this.beliefs.setMinGap(this.row, currentMinGap);
     }
 
     public String getCurrentLane() {
-        return currentLane;
+        return this.beliefs.getLane(this.row);
     }
 
     public void setCurrentLane(String currentLane) {
-        this.currentLane = currentLane;
+        this.beliefs.setLane(this.row, currentLane);
+    }
+
+    private RouteTable getRouteTable() {
+        return this.environmentAgentInterface.getEnvironmentInterface().getRouteTable();
     }
 }
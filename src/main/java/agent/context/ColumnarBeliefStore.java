@@ -0,0 +1,196 @@
+package agent.context;
+
+import sumo.IdDictionary;
+
+import java.util.Arrays;
+
+/**
+ * Belief store keeping every belief in a primitive array indexed by the ordinal of the agent. Edge and lane IDs are
+ * stored as indices in the dictionaries of the network cache, and the CO2 backlogs of all agents share one array of
+ * {@value CarContext#CO2_BACKLOG_LENGTH} slots per agent. This avoids the object headers and references of
+ * {@link ObjectBeliefStore}, which take most of the heap of large runs, and keeps the beliefs of consecutive agents
+ * next to each other in memory.
+ * <p>
+ * Edge and lane IDs that are not in the dictionaries are stored as unknown, and read back as null.
+ */
+public class ColumnarBeliefStore implements BeliefStore {
+
+    private static final int BACKLOG = CarContext.CO2_BACKLOG_LENGTH;
+
+    private final IdDictionary edges;
+    private final IdDictionary lanes;
+
+    private int size = 0;
+
+    private double[] budget;
+    private double[] maxSpeed;
+    private double[] minGap;
+    private int[] route;
+    private int[] location;
+    private int[] lane;
+    private boolean[] inWorld;
+
+    /** Ring buffers of the CO2 backlogs, with the running sum and the number of values added since the last clear **/
+    private double[] co2Values;
+    private double[] co2Sum;
+    private int[] co2Added;
+
+    /**
+     * @param expectedSize  Number of agents expected to be added. The arrays grow if more agents are added
+     * @param edges         Dictionary of the edges of the network
+     * @param lanes         Dictionary of the lanes of the network
+     */
+    public ColumnarBeliefStore(int expectedSize, IdDictionary edges, IdDictionary lanes) {
+        this.edges = edges;
+        this.lanes = lanes;
+        allocate(Math.max(expectedSize, 1));
+    }
+
+    @Override
+    public int add() {
+        if (this.size == this.budget.length) {
+            allocate(this.size * 2);
+        }
+        int agent = this.size++;
+        this.maxSpeed[agent] = -1;
+        this.minGap[agent] = -1;
+        this.route[agent] = -1;
+        this.location[agent] = IdDictionary.UNKNOWN;
+        this.lane[agent] = IdDictionary.UNKNOWN;
+        return agent;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public double getBudget(int agent) {
+        return this.budget[agent];
+    }
+
+    @Override
+    public void setBudget(int agent, double budget) {
+        this.budget[agent] = budget;
+    }
+
+    @Override
+    public double getMaxSpeed(int agent) {
+        return this.maxSpeed[agent];
+    }
+
+    @Override
+    public void setMaxSpeed(int agent, double maxSpeed) {
+        this.maxSpeed[agent] = maxSpeed;
+    }
+
+    @Override
+    public double getMinGap(int agent) {
+        return this.minGap[agent];
+    }
+
+    @Override
+    public void setMinGap(int agent, double minGap) {
+        this.minGap[agent] = minGap;
+    }
+
+    @Override
+    public int getRoute(int agent) {
+        return this.route[agent];
+    }
+
+    @Override
+    public void setRoute(int agent, int route) {
+        this.route[agent] = route;
+    }
+
+    @Override
+    public String getLocation(int agent) {
+        return lookup(this.edges, this.location[agent]);
+    }
+
+    @Override
+    public void setLocation(int agent, String edgeID) {
+        this.location[agent] = edgeID == null ? IdDictionary.UNKNOWN : this.edges.indexOf(edgeID);
+    }
+
+    @Override
+    public String getLane(int agent) {
+        return lookup(this.lanes, this.lane[agent]);
+    }
+
+    @Override
+    public void setLane(int agent, String laneID) {
+        this.lane[agent] = laneID == null ? IdDictionary.UNKNOWN : this.lanes.indexOf(laneID);
+    }
+
+    @Override
+    public boolean isInWorld(int agent) {
+        return this.inWorld[agent];
+    }
+
+    @Override
+    public void setInWorld(int agent, boolean inWorld) {
+        this.inWorld[agent] = inWorld;
+    }
+
+    @Override
+    public void addCo2(int agent, double co2) {
+        int added = this.co2Added[agent];
+        int slot = agent * BACKLOG + added % BACKLOG;
+        if (added >= BACKLOG) {
+            this.co2Sum[agent] -= this.co2Values[slot];
+        }
+        this.co2Values[slot] = co2;
+        this.co2Sum[agent] += co2;
+        added++;
+        // Recompute the sum when the ring wraps around, so rounding errors of the subtractions do not accumulate
+        if (added % BACKLOG == 0) {
+            double sum = 0;
+            for (int i = agent * BACKLOG; i < (agent + 1) * BACKLOG; i++) {
+                sum += this.co2Values[i];
+            }
+            this.co2Sum[agent] = sum;
+            added = BACKLOG;
+        }
+        this.co2Added[agent] = added;
+    }
+
+    @Override
+    public double getCo2Average(int agent) {
+        int n = Math.min(this.co2Added[agent], BACKLOG);
+        return n == 0 ? 0 : this.co2Sum[agent] / n;
+    }
+
+    @Override
+    public void clearCo2(int agent) {
+        this.co2Added[agent] = 0;
+        this.co2Sum[agent] = 0;
+    }
+
+    private void allocate(int capacity) {
+        this.budget = grow(this.budget, capacity);
+        this.maxSpeed = grow(this.maxSpeed, capacity);
+        this.minGap = grow(this.minGap, capacity);
+        this.route = grow(this.route, capacity);
+        this.location = grow(this.location, capacity);
+        this.lane = grow(this.lane, capacity);
+        this.inWorld = this.inWorld == null ? new boolean[capacity] : Arrays.copyOf(this.inWorld, capacity);
+        this.co2Values = grow(this.co2Values, capacity * BACKLOG);
+        this.co2Sum = grow(this.co2Sum, capacity);
+        this.co2Added = grow(this.co2Added, capacity);
+    }
+
+    private static double[] grow(double[] array, int capacity) {
+        return array == null ? new double[capacity] : Arrays.copyOf(array, capacity);
+    }
+
+    private static int[] grow(int[] array, int capacity) {
+        return array == null ? new int[capacity] : Arrays.copyOf(array, capacity);
+    }
+
+    private static String lookup(IdDictionary dictionary, int index) {
+        return index == IdDictionary.UNKNOWN ? null : dictionary.get(index);
+    }
+}
@@ -0,0 +1,130 @@
+package agent.context;
+
+import sumo.RollingAverage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Belief store keeping the beliefs of every agent in an object of its own, as the car contexts used to. Simple, but
+ * at a hundred thousand agents and more the object headers and references take a large part of the heap. See
+ * {@link ColumnarBeliefStore} for a compact alternative.
+ */
+public class ObjectBeliefStore implements BeliefStore {
+
+    private final List<Beliefs> rows;
+
+    /**
+     * @param expectedSize Number of agents expected to be added
+     */
+    public ObjectBeliefStore(int expectedSize) {
+        this.rows = new ArrayList<>(expectedSize);
+    }
+
+    @Override
+    public int add() {
+        this.rows.add(new Beliefs());
+        return this.rows.size() - 1;
+    }
+
+    @Override
+    public int size() {
+        return this.rows.size();
+    }
+
+    @Override
+    public double getBudget(int agent) {
+        return this.rows.get(agent).budget;
+    }
+
+    @Override
+    public void setBudget(int agent, double budget) {
+        this.rows.get(agent).budget = budget;
+    }
+
+    @Override
+    public double getMaxSpeed(int agent) {
+        return this.rows.get(agent).maxSpeed;
+    }
+
+    @Override
+    public void setMaxSpeed(int agent, double maxSpeed) {
+        this.rows.get(agent).maxSpeed = maxSpeed;
+    }
+
+    @Override
+    public double getMinGap(int agent) {
+        return this.rows.get(agent).minGap;
+    }
+
+    @Override
+    public void setMinGap(int agent, double minGap) {
+        this.rows.get(agent).minGap = minGap;
+    }
+
+    @Override
+    public int getRoute(int agent) {
+        return this.rows.get(agent).route;
+    }
+
+    @Override
+    public void setRoute(int agent, int route) {
+        this.rows.get(agent).route = route;
+    }
+
+    @Override
+    public String getLocation(int agent) {
+        return this.rows.get(agent).location;
+    }
+
+    @Override
+    public void setLocation(int agent, String edgeID) {
+        this.rows.get(agent).location = edgeID;
+    }
+
+    @Override
+    public String getLane(int agent) {
+        return this.rows.get(agent).lane;
+    }
+
+    @Override
+    public void setLane(int agent, String laneID) {
+        this.rows.get(agent).lane = laneID;
+    }
+
+    @Override
+    public boolean isInWorld(int agent) {
+        return this.rows.get(agent).inWorld;
+    }
+
+    @Override
+    public void setInWorld(int agent, boolean inWorld) {
+        this.rows.get(agent).inWorld = inWorld;
+    }
+
+    @Override
+    public void addCo2(int agent, double co2) {
+        this.rows.get(agent).co2Backlog.add(co2);
+    }
+
+    @Override
+    public double getCo2Average(int agent) {
+        return this.rows.get(agent).co2Backlog.getAverage();
+    }
+
+    @Override
+    public void clearCo2(int agent) {
+        this.rows.get(agent).co2Backlog.clear();
+    }
+
+    private static class Beliefs {
+        String location;
+        int route = -1;
+        final RollingAverage co2Backlog = new RollingAverage(CarContext.CO2_BACKLOG_LENGTH);
+        double budget;
+        String lane;
+        double maxSpeed = -1;
+        double minGap = -1;
+        boolean inWorld = false;
+    }
+}
@@ -0,0 +1,29 @@
+package agent.plan;
+
+import agent.context.CarContext;
+import com.sun.istack.Nullable;
+import nl.uu.cs.iss.ga.sim2apl.core.agent.PlanToAgentInterface;
+import nl.uu.cs.iss.ga.sim2apl.core.plan.Plan;
+
+/**
+ * A plan that performs an action in the SUMO environment. Every execution of an action plan ends with
+ * {@link #submitAction(PlanToAgentInterface, PlanMessage)}, which hands the action to the environment in the way the
+ * environment expects it, see {@link sumo.SumoEnvironmentInterface#submitAction}.
+ */
+public abstract class ActionPlan extends Plan {
+
+    /**
+     * Hand the action of this plan to the environment
+     *
+     * @param planToAgentInterface  Interface of the agent executing this plan
+     * @param message               The action, or null if this plan does not perform an action in this cycle
+     * @return The result this plan should return
+     */
+    @Nullable
+    protected String submitAction(PlanToAgentInterface planToAgentInterface, @Nullable PlanMessage message) {
+        if (message == null) return null;
+        CarContext context = planToAgentInterface.getContext(CarContext.class);
+        return context.getEnvironmentAgentInterface().getEnvironmentInterface()
+                .submitAction(planToAgentInterface.getAgentID(), message);
+    }
+}
@@ -1,13 +1,13 @@
 package agent.plan;
 
 import agent.context.CarContext;
-import de.tudresden.sumo.cmd.Route;
 import nl.uu.cs.iss.ga.sim2apl.core.agent.PlanToAgentInterface;
 import nl.uu.cs.iss.ga.sim2apl.core.plan.Plan;
 import nl.uu.cs.iss.ga.sim2apl.core.plan.PlanExecutionError;
 import sumo.EnvironmentAgentInterface;
+import sumo.InsertionScheduler;
+import sumo.RouteTable;
 
-import java.util.List;
 import java.util.logging.Logger;
 
 /**
@@ -18,6 +18,9 @@ import java.util.logging.Logger;
  * on trying to find a route between two random edges if that reversed route could not be created. If a previous
  * route already existed, that is also an indication the agent has previously left the environment. Therefor, the
  * agent adopts the plan to enter the world right after it has created and uploaded its new route.
+ *
+ * If insertions are scheduled, the agent requests an insertion slot instead, and adopts the plan to enter the world
+ * when it is notified that its slot has come.
  */
 public class CreateRoutePlan extends Plan {
     private static final Logger LOG = Logger.getLogger(CreateRoutePlan.class.getName());
@@ -30,12 +33,18 @@ public class CreateRoutePlan extends Plan {
         CarContext context = planToAgentInterface.getContext(CarContext.class);
         EnvironmentAgentInterface eaInterface = context.getEnvironmentAgentInterface();
 
-        String routeID = eaInterface.getEnvironmentInterface().getRandomRoute();
-        List<String> routeEdges = (List<String>) eaInterface.getEnvironmentInterface().do_job_get(Route.getEdges(routeID));
+        RouteTable routes = eaInterface.getEnvironmentInterface().getRouteTable();
+        int route = eaInterface.getEnvironmentInterface().getRandomRoute(context.getRandom());
         LOG.fine("Agent " + planToAgentInterface.getAgentID().getUuID() + "picked random route " +
-                routeID + " with " +routeEdges.size() + " edges");
-        context.updateRoute(routeEdges.get(0), routeEdges, routeID);
-        planToAgentInterface.adoptPlan(new EnterWorldPlan());
+                routes.getRouteID(route) + " with " + routes.getEdgeCount(route) + " edges");
+        context.updateRoute(route);
+
+        InsertionScheduler scheduler = eaInterface.getInsertionScheduler();
+        if (scheduler == null) {
+            planToAgentInterface.adoptPlan(new EnterWorldPlan());
+        } else {
+            scheduler.request(context);
+        }
         setFinished(true);
         return  null;
     }
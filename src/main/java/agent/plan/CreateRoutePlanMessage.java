@@ -1,11 +1,13 @@
 package agent.plan;
 
 import com.google.gson.Gson;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
 import de.tudresden.sumo.cmd.Route;
 import de.tudresden.sumo.util.SumoCommand;
 import de.tudresden.ws.container.SumoStage;
+import sumo.SumoBackend;
+
+import java.util.ArrayList;
+import java.util.List;
 
 public class CreateRoutePlanMessage implements PlanMessage {
     public static Gson gson = new Gson();
@@ -28,14 +30,15 @@ public class CreateRoutePlanMessage implements PlanMessage {
         return Route.add(routeID, plannedRoute.edges);
     }
     
+    @Override
+    public void applyTo(SumoBackend backend) throws Exception {
+        List<String> edges = new ArrayList<>(plannedRoute.edges.size());
+        for (String edge : plannedRoute.edges) edges.add(edge);
+        backend.addRoute(routeID, edges);
+    }
+
     @Override
     public String toJson() {
-        JsonObject message = new JsonObject();
-        message.addProperty("class", "CreateRoutePlanMessage");
-        
-        JsonElement instance = gson.toJsonTree(this);
-        message.add("instance", instance);
-        
-        return gson.toJson(message);
+        return PlanMessageParser.toJson("CreateRoutePlanMessage", gson.toJson(this));
     }
 }
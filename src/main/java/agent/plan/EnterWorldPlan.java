@@ -1,15 +1,11 @@
 package agent.plan;
 
 import agent.context.CarContext;
-import agent.trigger.goal.SetMaxSpeedMaintenanceGoal;
-import agent.trigger.goal.SetMinGapMaintenanceGoal;
-import nl.uu.cs.iss.ga.sim2apl.core.agent.Goal;
 import nl.uu.cs.iss.ga.sim2apl.core.agent.PlanToAgentInterface;
-import nl.uu.cs.iss.ga.sim2apl.core.plan.Plan;
 import nl.uu.cs.iss.ga.sim2apl.core.plan.PlanExecutionError;
 import sumo.EnvironmentAgentInterface;
+import sumo.InsertionScheduler;
 
-import java.util.List;
 import java.util.logging.Logger;
 
 /**
@@ -17,10 +13,20 @@ import java.util.logging.Logger;
  * <p>
  * Before this plan is performed, a route should have been created and the SUMO environment should have been informed
  * of that route.
+ * <p>
+ * The agent adopts its driving goals when it is notified that its car has entered the environment, see
+ * {@link StartDrivingPlan}. Until then it has nothing to do, and is not deliberated. In case that notification never
+ * comes, the agent sets a timer to check on its car after {@value #ENTER_WORLD_TIMEOUT_TICKS} ticks.
  */
-public class EnterWorldPlan extends Plan {
+public class EnterWorldPlan extends ActionPlan {
     private static final Logger LOG = Logger.getLogger(EnterWorldPlan.class.getName());
 
+    /**
+     * Number of ticks after which an agent checks if its car has entered the environment. This is when the insertion
+     * scheduler stops counting the car as pending
+     */
+    public static final int ENTER_WORLD_TIMEOUT_TICKS = InsertionScheduler.PENDING_TIMEOUT_TICKS;
+
     @Override
     public String execute(PlanToAgentInterface planToAgentInterface) throws PlanExecutionError {
         LOG.fine("Agent " + planToAgentInterface.getAgentID().getUuID() + " executing EnterWorldPlan plan");
@@ -32,40 +38,15 @@ public class EnterWorldPlan extends Plan {
             context.getAgentInterface().getTypeID(),
             context.getRouteID(),
             eaInterface.getEnvironmentInterface().simulationTime,
-            eaInterface.getEnvironmentInterface().getLaneForEdge(context.getCurrentLocation())
+            eaInterface.getEnvironmentInterface().getLaneForEdge(context.getCurrentLocation(), context.getRandom())
         );
 
         LOG.fine("Agent " + planToAgentInterface.getAgentID().getUuID() + " entered world at route " + context.getRouteID());
 
-        List<Goal> goals = planToAgentInterface.getAgent().getGoals();
-
-        boolean hasSpeedGoal = false;
-        boolean hasMinGapGoal = false;
-
-        for (Goal g : goals) {
-            if (g instanceof SetMaxSpeedMaintenanceGoal) hasSpeedGoal = true;
-            if (g instanceof SetMinGapMaintenanceGoal) hasMinGapGoal = true;
-            if (hasSpeedGoal && hasMinGapGoal) break;
-        }
-
-        if (!hasSpeedGoal) {
-            planToAgentInterface.adoptGoal(new SetMaxSpeedMaintenanceGoal());
-            LOG.fine("Agent " + planToAgentInterface.getAgentID().getUuID() + " adopted speed maintenance goal");
-        } else {
-            LOG.fine("Agent " + planToAgentInterface.getAgentID().getUuID() + "already has a max speed " +
-                    "maintenance goal. Not adopting");
-        }
-
-        if (!hasMinGapGoal) {
-            planToAgentInterface.adoptGoal(new SetMinGapMaintenanceGoal());
-            LOG.fine("Agent " + planToAgentInterface.getAgentID().getUuID() + " adopted min gap maintenance goal");
-        } else {
-            LOG.fine("Agent " + planToAgentInterface.getAgentID().getUuID() + "already has a min gap " +
-                    "maintenance goal. Not adopting");
-        }
+        eaInterface.getWakeUpTimer().schedule(context, ENTER_WORLD_TIMEOUT_TICKS);
 
         setFinished(true);
         
-        return message.toJson();
+        return submitAction(planToAgentInterface, message);
     }
 }
@@ -1,10 +1,9 @@
 package agent.plan;
 
 import com.google.gson.Gson;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
 import de.tudresden.sumo.cmd.Vehicle;
 import de.tudresden.sumo.util.SumoCommand;
+import sumo.SumoBackend;
 
 public class EnterWorldPlanMessage implements PlanMessage {
     public static Gson gson = new Gson();
@@ -43,14 +42,13 @@ public class EnterWorldPlanMessage implements PlanMessage {
         );
     }
     
+    @Override
+    public void applyTo(SumoBackend backend) throws Exception {
+        backend.addVehicle(sumoID, typeID, routeID, simulationTime, laneIndex);
+    }
+
     @Override
     public String toJson() {
-        JsonObject message = new JsonObject();
-        message.addProperty("class", "EnterWorldPlanMessage");
-        
-        JsonElement instance = gson.toJsonTree(this);
-        message.add("instance", instance);
-        
-        return gson.toJson(message);
+        return PlanMessageParser.toJson("EnterWorldPlanMessage", gson.toJson(this));
     }
 }
@@ -0,0 +1,51 @@
+package agent.plan;
+
+import agent.context.CarContext;
+import nl.uu.cs.iss.ga.sim2apl.core.agent.PlanToAgentInterface;
+import nl.uu.cs.iss.ga.sim2apl.core.plan.Plan;
+import nl.uu.cs.iss.ga.sim2apl.core.plan.PlanExecutionError;
+import sumo.EnvironmentAgentInterface;
+import sumo.InsertionScheduler;
+import sumo.SumoEnvironmentInterface;
+
+import java.util.logging.Logger;
+
+/**
+ * A plan for when the timer set by {@link EnterWorldPlan} expires. If the car entered the environment without the
+ * agent being notified, the agent starts driving. If SUMO still has the car waiting to be inserted, the agent waits
+ * for another period. If the car was not added at all, the agent tries to enter the world again, through the
+ * insertion scheduler if there is one.
+ */
+public class EnterWorldTimeoutPlan extends Plan {
+    private static final Logger LOG = Logger.getLogger(EnterWorldTimeoutPlan.class.getName());
+
+    @Override
+    public String execute(PlanToAgentInterface planToAgentInterface) throws PlanExecutionError {
+        CarContext context = planToAgentInterface.getContext(CarContext.class);
+        EnvironmentAgentInterface eaInterface = context.getEnvironmentAgentInterface();
+        SumoEnvironmentInterface environment = eaInterface.getEnvironmentInterface();
+        setFinished(true);
+
+        if (context.isInWorld()) return null;
+
+        String sumoID = context.getAgentInterface().getSumoID();
+        if (environment.isAgentActive(sumoID)) {
+            context.setInWorld(true);
+            planToAgentInterface.adoptPlan(new StartDrivingPlan());
+        } else if (environment.isVehicleLoaded(sumoID)) {
+            LOG.fine("Car " + sumoID + " did not enter the world within " + InsertionScheduler.PENDING_TIMEOUT_TICKS +
+                    " ticks, but is still waiting to be inserted by SUMO");
+            eaInterface.getWakeUpTimer().schedule(context, InsertionScheduler.PENDING_TIMEOUT_TICKS);
+        } else {
+            LOG.fine("Car " + sumoID + " was not added to the world within " +
+                    InsertionScheduler.PENDING_TIMEOUT_TICKS + " ticks. Trying again");
+            InsertionScheduler scheduler = eaInterface.getInsertionScheduler();
+            if (scheduler == null) {
+                planToAgentInterface.adoptPlan(new EnterWorldPlan());
+            } else {
+                scheduler.request(context);
+            }
+        }
+        return null;
+    }
+}
@@ -1,9 +1,27 @@
 package agent.plan;
 
 import de.tudresden.sumo.util.SumoCommand;
+import sumo.SumoBackend;
 
 public interface PlanMessage {
     public SumoCommand getSumoCommand();
     public String toJson();
+
+    /**
+     * Perform the action encoded in this message through the typed calls of a backend. Used by backends that do not
+     * speak TraCI.
+     *
+     * @param backend   Backend to perform the action in
+     * @throws Exception if the backend could not perform the action
+     */
+    public void applyTo(SumoBackend backend) throws Exception;
+
+    /**
+     * Whether performing the SUMO command of this message more than once has the same effect as performing it once.
+     * Idempotent commands may be batched and replayed by the dispatcher.
+     */
+    public default boolean isIdempotent() {
+        return false;
+    }
 }
 
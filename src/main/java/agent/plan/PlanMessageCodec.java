@@ -0,0 +1,271 @@
+package agent.plan;
+
+import de.tudresden.ws.container.SumoStage;
+import de.tudresden.ws.container.SumoStringList;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact, versioned binary encoding of plan messages, used when actions have to travel through the Matrix.
+ * <p>
+ * A frame holds any number of messages. Its layout is:
+ * <pre>
+ * byte     magic (0x5A)
+ * byte     version
+ * varint   number of dictionary strings, followed by each string (varint length + UTF-8 bytes)
+ * varint   number of messages, followed by each message as a one-byte type tag and its fields
+ * </pre>
+ * All vehicle, type, route and edge IDs are coded as varint indices into the frame dictionary, so IDs repeated
+ * within a frame are only sent once. Doubles are written as raw 8 byte IEEE 754 values.
+ * <p>
+ * The transport only carries Strings, so frames are Base64 encoded and prefixed with {@link #TEXT_PREFIX}, which
+ * can never start a JSON message. {@link PlanMessageParser#parseAll(String)} uses this prefix to decide between
+ * this codec and the JSON encoding.
+ * <p>
+ * Frames are not compressed. Every action plan returns its own frame, which holds one or two messages and stays well
+ * below the size at which deflate pays off.
+ */
+public class PlanMessageCodec {
+
+    public static final String TEXT_PREFIX = "~";
+
+    public static final byte VERSION = 2;
+
+    private static final byte MAGIC = 0x5A;
+
+    private static final byte TAG_SET_MAX_SPEED = 1;
+    private static final byte TAG_SET_MIN_GAP = 2;
+    private static final byte TAG_CREATE_ROUTE = 3;
+    private static final byte TAG_ENTER_WORLD = 4;
+
+    private PlanMessageCodec() { }
+
+    /**
+     * Encode a list of messages as a single text frame
+     *
+     * @param messages  Messages to encode
+     * @return Base64 encoded frame, prefixed with {@link #TEXT_PREFIX}
+     */
+    public static String encode(List<? extends PlanMessage> messages) {
+        return TEXT_PREFIX + Base64.getEncoder().encodeToString(encodeFrame(messages));
+    }
+
+    /**
+     * Decode a text frame produced by {@link #encode(List)}
+     *
+     * @param text  Base64 encoded frame, prefixed with {@link #TEXT_PREFIX}
+     * @return Decoded messages, in the order they were encoded
+     */
+    public static List<PlanMessage> decode(String text) {
+        if (!text.startsWith(TEXT_PREFIX)) {
+            throw new IllegalArgumentException("Not a binary plan message frame: " + text);
+        }
+        return decodeFrame(Base64.getDecoder().decode(text.substring(TEXT_PREFIX.length())));
+    }
+
+    /**
+     * Encode a list of messages as a single binary frame
+     *
+     * @param messages  Messages to encode
+     * @return Binary frame
+     */
+    public static byte[] encodeFrame(List<? extends PlanMessage> messages) {
+        Dictionary dictionary = new Dictionary();
+        Output body = new Output();
+
+        body.writeVarInt(messages.size());
+        for (PlanMessage message : messages) {
+            encodeMessage(message, body, dictionary);
+        }
+
+        Output frame = new Output();
+        frame.write(MAGIC);
+        frame.write(VERSION);
+        frame.writeVarInt(dictionary.strings.size());
+        for (String s : dictionary.strings) {
+            frame.writeString(s);
+        }
+        frame.write(body.toByteArray());
+        return frame.toByteArray();
+    }
+
+    /**
+     * Decode a binary frame produced by {@link #encodeFrame(List)}
+     *
+     * @param frame Binary frame
+     * @return Decoded messages, in the order they were encoded
+     */
+    public static List<PlanMessage> decodeFrame(byte[] frame) {
+        try {
+            ByteBuffer payload = ByteBuffer.wrap(frame);
+            if (payload.get() != MAGIC) {
+                throw new IllegalArgumentException("Frame does not start with plan message magic byte");
+            }
+            byte version = payload.get();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unsupported plan message frame version " + version);
+            }
+
+            int dictionarySize = readVarInt(payload);
+            String[] dictionary = new String[dictionarySize];
+            for (int i = 0; i < dictionarySize; i++) {
+                dictionary[i] = readString(payload);
+            }
+
+            int nMessages = readVarInt(payload);
+            List<PlanMessage> messages = new ArrayList<>(nMessages);
+            for (int i = 0; i < nMessages; i++) {
+                messages.add(decodeMessage(payload, dictionary));
+            }
+            return messages;
+        } catch (BufferUnderflowException | ArrayIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Truncated or corrupt plan message frame", e);
+        }
+    }
+
+    private static void encodeMessage(PlanMessage message, Output out, Dictionary dictionary) {
+        if (message instanceof SetMaxSpeedPlanMessage) {
+            SetMaxSpeedPlanMessage m = (SetMaxSpeedPlanMessage) message;
+            out.write(TAG_SET_MAX_SPEED);
+            out.writeVarInt(dictionary.index(m.sumoID));
+            out.writeDouble(m.speed);
+        } else if (message instanceof SetMinGapPlanMessage) {
+            SetMinGapPlanMessage m = (SetMinGapPlanMessage) message;
+            out.write(TAG_SET_MIN_GAP);
+            out.writeVarInt(dictionary.index(m.sumoID));
+            out.writeDouble(m.minGap);
+        } else if (message instanceof CreateRoutePlanMessage) {
+            // Only the edges of the planned route are used to create the route in SUMO
+            CreateRoutePlanMessage m = (CreateRoutePlanMessage) message;
+            out.write(TAG_CREATE_ROUTE);
+            out.writeVarInt(dictionary.index(m.routeID));
+            out.writeVarInt(m.plannedRoute.edges.size());
+            for (String edge : m.plannedRoute.edges) {
+                out.writeVarInt(dictionary.index(edge));
+            }
+        } else if (message instanceof EnterWorldPlanMessage) {
+            EnterWorldPlanMessage m = (EnterWorldPlanMessage) message;
+            out.write(TAG_ENTER_WORLD);
+            out.writeVarInt(dictionary.index(m.sumoID));
+            out.writeVarInt(dictionary.index(m.typeID));
+            out.writeVarInt(dictionary.index(m.routeID));
+            out.writeVarInt(m.simulationTime);
+            out.write(m.laneIndex);
+        } else {
+            throw new IllegalArgumentException("No binary encoding for message class " + message.getClass().getName());
+        }
+    }
+
+    private static PlanMessage decodeMessage(ByteBuffer in, String[] dictionary) {
+        byte tag = in.get();
+        switch (tag) {
+            case TAG_SET_MAX_SPEED:
+                return new SetMaxSpeedPlanMessage(dictionary[readVarInt(in)], in.getDouble());
+            case TAG_SET_MIN_GAP:
+                return new SetMinGapPlanMessage(dictionary[readVarInt(in)], in.getDouble());
+            case TAG_CREATE_ROUTE:
+                String routeID = dictionary[readVarInt(in)];
+                int nEdges = readVarInt(in);
+                SumoStringList edges = new SumoStringList();
+                for (int i = 0; i < nEdges; i++) {
+                    edges.add(dictionary[readVarInt(in)]);
+                }
+                SumoStage stage = new SumoStage();
+                stage.edges = edges;
+                return new CreateRoutePlanMessage(routeID, stage);
+            case TAG_ENTER_WORLD:
+                return new EnterWorldPlanMessage(
+                        dictionary[readVarInt(in)],
+                        dictionary[readVarInt(in)],
+                        dictionary[readVarInt(in)],
+                        readVarInt(in),
+                        in.get());
+            default:
+                throw new IllegalArgumentException("Unknown plan message type tag " + tag);
+        }
+    }
+
+    private static int readVarInt(ByteBuffer in) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            if (shift > 28) throw new IllegalArgumentException("Malformed varint in plan message frame");
+            b = in.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[readVarInt(in)];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Assigns frame-local indices to strings in order of first occurrence
+     */
+    private static class Dictionary {
+        private final Map<String, Integer> indices = new HashMap<>();
+        private final List<String> strings = new ArrayList<>();
+
+        int index(String s) {
+            if (s == null) {
+                throw new IllegalArgumentException("Plan message contains a null ID");
+            }
+            Integer index = this.indices.get(s);
+            if (index == null) {
+                index = this.strings.size();
+                this.indices.put(s, index);
+                this.strings.add(s);
+            }
+            return index;
+        }
+    }
+
+    private static class Output extends ByteArrayOutputStream {
+
+        void write(byte b) {
+            super.write(b);
+        }
+
+        void writeVarInt(int value) {
+            if (value < 0) {
+                throw new IllegalArgumentException("Cannot encode negative value " + value + " as varint");
+            }
+            while ((value & ~0x7F) != 0) {
+                super.write((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            super.write(value);
+        }
+
+        void writeDouble(double value) {
+            long bits = Double.doubleToRawLongBits(value);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                super.write((int) (bits >>> shift));
+            }
+        }
+
+        void writeString(String s) {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(bytes.length);
+            write(bytes);
+        }
+
+        @Override
+        public void write(byte[] b) {
+            super.write(b, 0, b.length);
+        }
+    }
+}
@@ -5,32 +5,64 @@ import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 public class PlanMessageParser {
     public static Gson gson = new Gson();
-    
+
+    private static final Map<String, Class<? extends PlanMessage>> MESSAGE_CLASSES = new HashMap<>();
+
+    static {
+        MESSAGE_CLASSES.put("SetMinGapPlanMessage", SetMinGapPlanMessage.class);
+        MESSAGE_CLASSES.put("SetMaxSpeedPlanMessage", SetMaxSpeedPlanMessage.class);
+        MESSAGE_CLASSES.put("CreateRoutePlanMessage", CreateRoutePlanMessage.class);
+        MESSAGE_CLASSES.put("EnterWorldPlanMessage", EnterWorldPlanMessage.class);
+    }
+
+    /**
+     * Parse an action string, which is either a binary frame produced by {@link PlanMessageCodec} or a single JSON
+     * encoded message as produced by {@link PlanMessage#toJson()}
+     *
+     * @param mstr  Action string
+     * @return All messages encoded in the action string
+     */
+    public static List<PlanMessage> parseAll(String mstr) {
+        if (mstr.startsWith(PlanMessageCodec.TEXT_PREFIX)) {
+            return PlanMessageCodec.decode(mstr);
+        }
+        return Collections.singletonList(parse(mstr));
+    }
+
     public static PlanMessage parse(String mstr) {
         JsonObject mobj = JsonParser.parseString(mstr).getAsJsonObject();
-        
+
         if (!mobj.has("class") || !mobj.has("instance")) {
             throw new RuntimeException(String.format("Message not of type PlanMessage: %s", mstr));
         }
-        
+
         String klass = mobj.get("class").getAsString();
         JsonElement instance = mobj.get("instance");
-        
-        PlanMessage message;
-        if ("SetMinGapPlanMessage".equals(klass)) {
-            message = gson.fromJson(instance, SetMinGapPlanMessage.class);
-        } else if ("SetMaxSpeedPlanMessage".equals(klass)) {
-            message = gson.fromJson(instance, SetMaxSpeedPlanMessage.class);
-        } else if ("CreateRoutePlanMessage".equals(klass)) {
-            message = gson.fromJson(instance, CreateRoutePlanMessage.class);
-        } else if ("EnterWorldPlanMessage".equals(klass)) {
-            message = gson.fromJson(instance, EnterWorldPlanMessage.class);
-        } else {
+
+        Class<? extends PlanMessage> messageClass = MESSAGE_CLASSES.get(klass);
+        if (messageClass == null) {
             throw new RuntimeException(String.format("Message class unknown: %s", klass));
         }
-        
-        return message;
+
+        return gson.fromJson(instance, messageClass);
+    }
+
+    /**
+     * Wrap the JSON encoding of a message instance in the envelope expected by {@link #parse(String)}, so the
+     * instance only needs to be serialized once, directly to a String.
+     *
+     * @param klass         Simple class name of the message
+     * @param instanceJson  JSON encoding of the message instance
+     * @return JSON encoding of the message
+     */
+    static String toJson(String klass, String instanceJson) {
+        return "{\"class\":\"" + klass + "\",\"instance\":" + instanceJson + "}";
     }
 }
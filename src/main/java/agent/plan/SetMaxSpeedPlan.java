@@ -1,31 +1,57 @@
 package agent.plan;
 
 import agent.context.CarContext;
-import de.tudresden.sumo.cmd.Vehicle;
 import nl.uu.cs.iss.ga.sim2apl.core.agent.PlanToAgentInterface;
-import nl.uu.cs.iss.ga.sim2apl.core.plan.Plan;
 import nl.uu.cs.iss.ga.sim2apl.core.plan.PlanExecutionError;
 import sumo.EnvironmentAgentInterface;
+import sumo.Institution;
+import sumo.SumoEnvironmentInterface;
+import sumo.VehicleState;
 
-public class SetMaxSpeedPlan extends Plan {
+public class SetMaxSpeedPlan extends ActionPlan {
 
     @Override
     public String execute(PlanToAgentInterface planToAgentInterface) throws PlanExecutionError {
         CarContext context = planToAgentInterface.getContext(CarContext.class);
         EnvironmentAgentInterface eaInterface = context.getEnvironmentAgentInterface();
+        if (!context.isInWorld()) {
+            // The car left the environment, which achieves the goal of this plan
+            setFinished(true);
+            return submitAction(planToAgentInterface, null);
+        }
+
+        SetMaxSpeedPlanMessage message = decide(context.getAgentInterface().getSumoID(), context.getBudget(),
+                eaInterface.getEnvironmentInterface(), eaInterface.getInstitution());
+        if (message == null) return submitAction(planToAgentInterface, null);
+
+        context.setCurrentMaxSpeed(message.speed);
+        setFinished(true);
+
+        return submitAction(planToAgentInterface, message);
+    }
 
-        if (!eaInterface.getEnvironmentInterface().isAgentActive(context.getAgentInterface().getSumoID())) {
+    /**
+     * Decide on the maximum speed of a car, based on the state of the environment in the current tick
+     *
+     * @param sumoID        SUMO ID of the car
+     * @param budget        Budget of the car for sanctions
+     * @param environment   Environment the car drives in
+     * @param institution   Institution enforcing the speed norm
+     * @return Message setting the new maximum speed, or null if the car cannot act in the environment
+     */
+    public static SetMaxSpeedPlanMessage decide(String sumoID, double budget, SumoEnvironmentInterface environment,
+                                                Institution institution) {
+        if (!environment.isAgentActive(sumoID)) {
             // Do not try to take actions in the environment if you do not exist there
             return null;
         }
 
-        Object laneIDObject = eaInterface.getEnvironmentInterface()
-                .do_job_get(Vehicle.getLaneID(context.getAgentInterface().getSumoID()));
-        if (laneIDObject == null) return null;
-        String laneID = (String) laneIDObject;
-        if (laneID.isEmpty()) return null;
+        VehicleState state = environment.getVehicleState(sumoID);
+        if (state == null) return null;
+        String laneID = state.getLaneID();
+        if (laneID == null || laneID.isEmpty()) return null;
 
-        double currLaneMaxSpeed = eaInterface.getEnvironmentInterface().getLaneMaxSpeed(laneID); //sense the environment (e.g., street signs)
+        double currLaneMaxSpeed = environment.getLaneMaxSpeed(laneID); //sense the environment (e.g., street signs)
 
         /**
          * Reasoning/planning of a norm-aware agent: uses info from
@@ -35,19 +61,9 @@ public class SetMaxSpeedPlan extends Plan {
          * The agent tries to maximize its speed as much the vehicle can go and as much it can afford
          * (here i'm simplifying, increasing the complexity)
          */
-        double increment = 0.1;
-        double newSpeed = 0.1;
-
         //rich people always violate all norms, poor people never violate
-        while (newSpeed < CarContext.CAR_MAX_SPEED - increment &&
-                context.getBudget() > eaInterface.getInstitution().getFixedSpeedSanction(newSpeed, currLaneMaxSpeed)) {
-            newSpeed += increment;
-        }
-
-        setFinished(true);
-
-        SetMaxSpeedPlanMessage message = new SetMaxSpeedPlanMessage(context.getAgentInterface().getSumoID(), newSpeed);
+        double newSpeed = institution.getMaxAffordableFixedSpeed(budget, currLaneMaxSpeed, CarContext.CAR_MAX_SPEED);
 
-        return message.toJson();
+        return new SetMaxSpeedPlanMessage(sumoID, newSpeed);
     }
 }
@@ -1,10 +1,9 @@
 package agent.plan;
 
 import com.google.gson.Gson;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
 import de.tudresden.sumo.cmd.Vehicle;
 import de.tudresden.sumo.util.SumoCommand;
+import sumo.SumoBackend;
 
 public class SetMaxSpeedPlanMessage implements PlanMessage {
     public static Gson gson = new Gson();
@@ -27,14 +26,18 @@ public class SetMaxSpeedPlanMessage implements PlanMessage {
         return Vehicle.setMaxSpeed(sumoID, speed);                 
     }
     
+    @Override
+    public boolean isIdempotent() {
+        return true;
+    }
+
+    @Override
+    public void applyTo(SumoBackend backend) throws Exception {
+        backend.setVehicleMaxSpeed(sumoID, speed);
+    }
+
     @Override
     public String toJson() {
-        JsonObject message = new JsonObject();
-        message.addProperty("class", "SetMaxSpeedPlanMessage");
-        
-        JsonElement instance = gson.toJsonTree(this);
-        message.add("instance", instance);
-        
-        return gson.toJson(message);
+        return PlanMessageParser.toJson("SetMaxSpeedPlanMessage", gson.toJson(this));
     }
 }
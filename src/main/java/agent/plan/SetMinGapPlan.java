@@ -1,31 +1,62 @@
 package agent.plan;
 
 import agent.context.CarContext;
-import de.tudresden.sumo.cmd.Vehicle;
 import nl.uu.cs.iss.ga.sim2apl.core.agent.PlanToAgentInterface;
-import nl.uu.cs.iss.ga.sim2apl.core.plan.Plan;
 import nl.uu.cs.iss.ga.sim2apl.core.plan.PlanExecutionError;
 import sumo.EnvironmentAgentInterface;
+import sumo.Institution;
 import sumo.SimConfig;
+import sumo.SumoEnvironmentInterface;
+import sumo.VehicleState;
 
-public class SetMinGapPlan extends Plan {
+public class SetMinGapPlan extends ActionPlan {
+
+    /**
+     * The largest gap an agent considers keeping
+     */
+    private static final double MAX_GAP = 200;
 
     @Override
     public String execute(PlanToAgentInterface planToAgentInterface) throws PlanExecutionError {
         CarContext context = planToAgentInterface.getContext(CarContext.class);
         EnvironmentAgentInterface eaInterface = context.getEnvironmentAgentInterface();
+        if (!context.isInWorld()) {
+            // The car left the environment, which achieves the goal of this plan
+            setFinished(true);
+            return submitAction(planToAgentInterface, null);
+        }
+
+        SetMinGapPlanMessage message = decide(context.getAgentInterface().getSumoID(), context.getBudget(),
+                eaInterface.getEnvironmentInterface(), eaInterface.getInstitution());
+        if (message == null) return submitAction(planToAgentInterface, null);
+
+        context.setCurrentMinGap(message.minGap);
+        setFinished(true);
+
+        return submitAction(planToAgentInterface, message);
+    }
 
-        if (!eaInterface.getEnvironmentInterface().isAgentActive(context.getAgentInterface().getSumoID())) {
+    /**
+     * Decide on the minimum gap of a car, based on the state of the environment in the current tick
+     *
+     * @param sumoID        SUMO ID of the car
+     * @param budget        Budget of the car for sanctions
+     * @param environment   Environment the car drives in
+     * @param institution   Institution enforcing the gap norm
+     * @return Message setting the new minimum gap, or null if the car cannot act in the environment
+     */
+    public static SetMinGapPlanMessage decide(String sumoID, double budget, SumoEnvironmentInterface environment,
+                                              Institution institution) {
+        if (!environment.isAgentActive(sumoID)) {
             // Do not try to take actions in the environment if you do not exist there
             return null;
         }
 
         //this ideally should be kept in the agent context instead of retrieved from the env. it's the CURRENT MIN GAP SET BY THE AGENT
-        Object currSpeedObject = eaInterface.getEnvironmentInterface().do_job_get(
-                Vehicle.getSpeed(context.getAgentInterface().getSumoID()));
+        VehicleState state = environment.getVehicleState(sumoID);
 
-        if (currSpeedObject == null) return null;
-        double currSpeed = (double) currSpeedObject;
+        if (state == null || Double.isNaN(state.getSpeed())) return null;
+        double currSpeed = state.getSpeed();
 
         /**
          * Reasoning/planning of a norm-aware agent: uses info from
@@ -35,18 +66,9 @@ public class SetMinGapPlan extends Plan {
          * The agent tries to minimize its gap as much it can afford
          * (here i'm simplifying, increasing the complexity)
          */
-        double increment = 0.1;
-        double new_gap = 200;
-
         //rich people always violate all norms, poor people never violate
-        while (new_gap > SimConfig.MIN_GAP + increment && context.getBudget() > eaInterface.getInstitution().getFixedGapSanction(new_gap, currSpeed)) {
-            new_gap -= increment;
-        }
-
-        setFinished(true);
-
-        SetMinGapPlanMessage message = new SetMinGapPlanMessage(context.getAgentInterface().getSumoID(), new_gap);
+        double new_gap = institution.getMinAffordableFixedGap(budget, currSpeed, SimConfig.MIN_GAP, MAX_GAP);
 
-        return message.toJson();
+        return new SetMinGapPlanMessage(sumoID, new_gap);
     }
 }
@@ -1,10 +1,9 @@
 package agent.plan;
 
 import com.google.gson.Gson;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
 import de.tudresden.sumo.cmd.Vehicle;
 import de.tudresden.sumo.util.SumoCommand;
+import sumo.SumoBackend;
 
 public class SetMinGapPlanMessage implements PlanMessage {
     public static Gson gson = new Gson();
@@ -27,14 +26,18 @@ public class SetMinGapPlanMessage implements PlanMessage {
         return Vehicle.setMinGap(sumoID, minGap);
     }
 
+    @Override
+    public boolean isIdempotent() {
+        return true;
+    }
+
+    @Override
+    public void applyTo(SumoBackend backend) throws Exception {
+        backend.setVehicleMinGap(sumoID, minGap);
+    }
+
     @Override
     public String toJson() {
-        JsonObject message = new JsonObject();
-        message.addProperty("class", "SetMinGapPlanMessage");
-        
-        JsonElement instance = gson.toJsonTree(this);
-        message.add("instance", instance);
-        
-        return gson.toJson(message);
+        return PlanMessageParser.toJson("SetMinGapPlanMessage", gson.toJson(this));
     }
 }
@@ -0,0 +1,54 @@
+package agent.plan;
+
+import agent.trigger.goal.SetMaxSpeedMaintenanceGoal;
+import agent.trigger.goal.SetMinGapMaintenanceGoal;
+import nl.uu.cs.iss.ga.sim2apl.core.agent.Goal;
+import nl.uu.cs.iss.ga.sim2apl.core.agent.PlanToAgentInterface;
+import nl.uu.cs.iss.ga.sim2apl.core.plan.Plan;
+import nl.uu.cs.iss.ga.sim2apl.core.plan.PlanExecutionError;
+
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * A plan to adopt the goals of a car driving in the SUMO environment, once it has entered the environment.
+ * <p>
+ * The maintenance goals are achieved as soon as the car leaves the environment again, so an agent whose car is not
+ * in the environment has no goals, and is not deliberated until it receives a trigger.
+ */
+public class StartDrivingPlan extends Plan {
+    private static final Logger LOG = Logger.getLogger(StartDrivingPlan.class.getName());
+
+    @Override
+    public String execute(PlanToAgentInterface planToAgentInterface) throws PlanExecutionError {
+        List<Goal> goals = planToAgentInterface.getAgent().getGoals();
+
+        boolean hasSpeedGoal = false;
+        boolean hasMinGapGoal = false;
+
+        for (Goal g : goals) {
+            if (g instanceof SetMaxSpeedMaintenanceGoal) hasSpeedGoal = true;
+            if (g instanceof SetMinGapMaintenanceGoal) hasMinGapGoal = true;
+            if (hasSpeedGoal && hasMinGapGoal) break;
+        }
+
+        if (!hasSpeedGoal) {
+            planToAgentInterface.adoptGoal(new SetMaxSpeedMaintenanceGoal());
+            LOG.fine("Agent " + planToAgentInterface.getAgentID().getUuID() + " adopted speed maintenance goal");
+        } else {
+            LOG.fine("Agent " + planToAgentInterface.getAgentID().getUuID() + "already has a max speed " +
+                    "maintenance goal. Not adopting");
+        }
+
+        if (!hasMinGapGoal) {
+            planToAgentInterface.adoptGoal(new SetMinGapMaintenanceGoal());
+            LOG.fine("Agent " + planToAgentInterface.getAgentID().getUuID() + " adopted min gap maintenance goal");
+        } else {
+            LOG.fine("Agent " + planToAgentInterface.getAgentID().getUuID() + "already has a min gap " +
+                    "maintenance goal. Not adopting");
+        }
+
+        setFinished(true);
+        return null;
+    }
+}
@@ -2,7 +2,13 @@ package agent.planscheme;
 
 import agent.context.CarContext;
 import agent.plan.CreateRoutePlan;
+import agent.plan.EnterWorldPlan;
+import agent.plan.EnterWorldTimeoutPlan;
+import agent.plan.StartDrivingPlan;
+import agent.trigger.external.EnteredWorldExternalTrigger;
+import agent.trigger.external.InsertionSlotExternalTrigger;
 import agent.trigger.external.LeftWorldExternalTrigger;
+import agent.trigger.external.WakeUpExternalTrigger;
 import nl.uu.cs.iss.ga.sim2apl.core.agent.AgentContextInterface;
 import nl.uu.cs.iss.ga.sim2apl.core.agent.Trigger;
 import nl.uu.cs.iss.ga.sim2apl.core.plan.Plan;
@@ -18,6 +24,15 @@ public class SumoCarExternalTriggerPlanScheme implements PlanScheme {
             context.setInWorld(false);
 
             plan = new CreateRoutePlan();
+        } else if (trigger instanceof EnteredWorldExternalTrigger) {
+            CarContext context = agentContextInterface.getContext(CarContext.class);
+            context.setInWorld(true);
+
+            plan = new StartDrivingPlan();
+        } else if (trigger instanceof InsertionSlotExternalTrigger) {
+            plan = new EnterWorldPlan();
+        } else if (trigger instanceof WakeUpExternalTrigger) {
+            plan = new EnterWorldTimeoutPlan();
         }
 
         return plan;
@@ -1,7 +1,9 @@
 package agent.planscheme;
 
+import agent.context.CarContext;
 import agent.plan.SetMaxSpeedPlan;
 import agent.plan.SetMinGapPlan;
+import agent.trigger.goal.MaintenanceGoal;
 import agent.trigger.goal.SetMaxSpeedMaintenanceGoal;
 import agent.trigger.goal.SetMinGapMaintenanceGoal;
 import nl.uu.cs.iss.ga.sim2apl.core.agent.AgentContextInterface;
@@ -9,12 +11,21 @@ import nl.uu.cs.iss.ga.sim2apl.core.agent.Trigger;
 import nl.uu.cs.iss.ga.sim2apl.core.plan.Plan;
 import nl.uu.cs.iss.ga.sim2apl.core.plan.PlanScheme;
 
+/**
+ * Instantiates the plans for the maintenance goals of a car. A plan is only instantiated when one of the inputs of
+ * its goal changed since the last plan for that goal, as the plan would otherwise repeat the action of the last one.
+ */
 public class SumoCarGoalPlanScheme implements PlanScheme {
 
     @Override
     public Plan instantiate(Trigger trigger, AgentContextInterface agentContextInterface) {
         Plan plan = Plan.UNINSTANTIATED;
 
+        if (trigger instanceof MaintenanceGoal &&
+                !((MaintenanceGoal) trigger).updateInputs(agentContextInterface.getContext(CarContext.class))) {
+            return plan;
+        }
+
         if(trigger instanceof SetMaxSpeedMaintenanceGoal) {
             plan = new SetMaxSpeedPlan();
         } else if (trigger instanceof SetMinGapMaintenanceGoal) {
@@ -0,0 +1,9 @@
+package agent.trigger.external;
+
+import nl.uu.cs.iss.ga.sim2apl.core.agent.Trigger;
+
+/**
+ * Notifies an agent that has requested an insertion slot that it may enter the world now
+ */
+public class InsertionSlotExternalTrigger implements Trigger {
+}
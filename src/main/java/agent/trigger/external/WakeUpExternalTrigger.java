@@ -0,0 +1,9 @@
+package agent.trigger.external;
+
+import nl.uu.cs.iss.ga.sim2apl.core.agent.Trigger;
+
+/**
+ * Wakes up a dormant agent after the timer it set has expired
+ */
+public class WakeUpExternalTrigger implements Trigger {
+}
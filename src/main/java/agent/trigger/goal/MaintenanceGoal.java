@@ -0,0 +1,112 @@
+package agent.trigger.goal;
+
+import agent.context.CarContext;
+import nl.uu.cs.iss.ga.sim2apl.core.agent.AgentContextInterface;
+import nl.uu.cs.iss.ga.sim2apl.core.agent.Goal;
+import sumo.SumoEnvironmentInterface;
+import sumo.VehicleState;
+
+import java.util.EnumSet;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * A goal that keeps a setting of the car in line with a few beliefs of the agent for as long as the car is in the
+ * environment. Each goal declares the inputs its plan depends on, and a plan is only instantiated for the goal when
+ * one of these inputs changed since the last time it was, or when a set for the car failed since then, so an action
+ * that was not applied is retried. In between, the goal produces no plan and thus no action.
+ * <p>
+ * Inputs are read from the context of the agent and the vehicle state snapshot of the current tick. The goal is
+ * achieved, and thus dropped, when the car leaves the environment, so a car that enters again adopts a new goal that
+ * is evaluated from scratch.
+ */
+public abstract class MaintenanceGoal extends Goal {
+
+    /**
+     * Width of the speed buckets in m/s. A change of speed within a bucket does not cause the goal to be re-evaluated
+     */
+    public static final double SPEED_BUCKET_WIDTH = 0.5;
+
+    /**
+     * Beliefs a maintenance goal can depend on
+     */
+    public enum Input {
+        /** The lane the car drives on, which determines the maximum speed of the lane **/
+        LANE,
+        /** The speed of the car, rounded down to a multiple of {@link #SPEED_BUCKET_WIDTH} **/
+        SPEED_BUCKET,
+        /** The budget of the agent for sanctions **/
+        BUDGET
+    }
+
+    private final Set<Input> inputs;
+
+    /** Inputs at the last evaluation. Only used by the agent deliberating on this goal **/
+    private boolean evaluated = false;
+    private String lane;
+    private long speedBucket;
+    private double budget;
+    private int failures;
+
+    /**
+     * @param first Input the plan for this goal depends on
+     * @param rest  Other inputs the plan for this goal depends on
+     */
+    protected MaintenanceGoal(Input first, Input... rest) {
+        this.inputs = EnumSet.of(first, rest);
+    }
+
+    /**
+     * @return Inputs the plan for this goal depends on
+     */
+    public Set<Input> getInputs() {
+        return this.inputs;
+    }
+
+    @Override
+    public boolean isAchieved(AgentContextInterface agentContextInterface) {
+        return !agentContextInterface.getContext(CarContext.class).isInWorld();
+    }
+
+    /**
+     * Check if the inputs of this goal changed, or a set for the car failed, since the last evaluation, and if so,
+     * take the current inputs as those of the evaluation that follows. Inputs that are not known yet, e.g. because the
+     * car only just entered the environment, count as unchanged, so the goal is evaluated once they are known.
+     *
+     * @param context   Context of the agent
+     * @return True iff the goal should be re-evaluated
+     */
+    public boolean updateInputs(CarContext context) {
+        String sumoID = context.getAgentInterface().getSumoID();
+        SumoEnvironmentInterface environment = context.getEnvironmentAgentInterface().getEnvironmentInterface();
+        VehicleState state = environment.getVehicleState(sumoID);
+        if (state == null) return false;
+
+        String lane = null;
+        if (this.inputs.contains(Input.LANE)) {
+            lane = state.getLaneID();
+            if (lane == null || lane.isEmpty()) return false;
+        }
+
+        long speedBucket = 0;
+        if (this.inputs.contains(Input.SPEED_BUCKET)) {
+            if (Double.isNaN(state.getSpeed())) return false;
+            speedBucket = (long) Math.floor(state.getSpeed() / SPEED_BUCKET_WIDTH);
+        }
+
+        double budget = this.inputs.contains(Input.BUDGET) ? context.getBudget() : 0;
+        int failures = environment.getAppliedState().getFailureCount(sumoID);
+
+        if (this.evaluated && Objects.equals(lane, this.lane) && speedBucket == this.speedBucket &&
+                budget == this.budget && failures == this.failures) {
+            return false;
+        }
+
+        this.evaluated = true;
+        this.lane = lane;
+        this.speedBucket = speedBucket;
+        this.budget = budget;
+        this.failures = failures;
+        return true;
+    }
+}
@@ -1,11 +1,13 @@
 package agent.trigger.goal;
 
-import nl.uu.cs.iss.ga.sim2apl.core.agent.AgentContextInterface;
-import nl.uu.cs.iss.ga.sim2apl.core.agent.Goal;
+/**
+ * Keep the maximum speed of the car as high as the agent can afford, for as long as the car is in the environment. The
+ * affordable speed only depends on the budget of the agent and the maximum speed of the lane the car is on, as the
+ * physical limit of the car is fixed.
+ */
+public class SetMaxSpeedMaintenanceGoal extends MaintenanceGoal {
 
-public class SetMaxSpeedMaintenanceGoal extends Goal {
-    @Override
-    public boolean isAchieved(AgentContextInterface agentContextInterface) {
-        return false;
+    public SetMaxSpeedMaintenanceGoal() {
+        super(Input.LANE, Input.BUDGET);
     }
 }
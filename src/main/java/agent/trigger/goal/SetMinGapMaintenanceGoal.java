@@ -1,11 +1,12 @@
 package agent.trigger.goal;
 
-import nl.uu.cs.iss.ga.sim2apl.core.agent.AgentContextInterface;
-import nl.uu.cs.iss.ga.sim2apl.core.agent.Goal;
+/**
+ * Keep the minimum gap of the car as small as the agent can afford, for as long as the car is in the environment. The
+ * affordable gap only depends on the budget of the agent and the speed of the car.
+ */
+public class SetMinGapMaintenanceGoal extends MaintenanceGoal {
 
-public class SetMinGapMaintenanceGoal extends Goal {
-    @Override
-    public boolean isAchieved(AgentContextInterface agentContextInterface) {
-        return false;
+    public SetMinGapMaintenanceGoal() {
+        super(Input.SPEED_BUCKET, Input.BUDGET);
     }
 }
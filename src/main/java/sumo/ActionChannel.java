@@ -0,0 +1,44 @@
+package sumo;
+
+import agent.plan.PlanMessage;
+import nl.uu.cs.iss.ga.sim2apl.core.agent.AgentID;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A typed, in-process channel through which plans hand their actions to the {@link SumoEnvironmentInterface}.
+ * <p>
+ * When all agents run in the same JVM as the environment, actions do not need to be serialized. Plans submit their
+ * {@link PlanMessage} objects to this channel during deliberation, and the environment drains the channel in the
+ * tick post-hook. Each agent is deliberated by a single thread at a time, so only the map itself needs to be
+ * thread safe.
+ */
+public class ActionChannel {
+
+    private volatile Map<AgentID, List<PlanMessage>> actions = new ConcurrentHashMap<>();
+
+    /**
+     * Submit an action produced by an agent during the current tick
+     *
+     * @param agentID   ID of the agent producing the action
+     * @param message   The action
+     */
+    public void submit(AgentID agentID, PlanMessage message) {
+        this.actions.computeIfAbsent(agentID, aid -> new ArrayList<>(2)).add(message);
+    }
+
+    /**
+     * Remove and return all actions submitted since the last call to this method. Should only be called when no agents
+     * are deliberating, i.e. from one of the tick hooks.
+     *
+     * @return Map of all actions submitted since the last call, per agent
+     */
+    public Map<AgentID, List<PlanMessage>> drain() {
+        Map<AgentID, List<PlanMessage>> drained = this.actions;
+        this.actions = new ConcurrentHashMap<>();
+        return drained;
+    }
+}
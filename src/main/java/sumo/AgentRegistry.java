@@ -0,0 +1,179 @@
+package sumo;
+
+import agent.SumoAPLAgent;
+import agent.context.CarContext;
+import nl.uu.cs.iss.ga.sim2apl.core.agent.AgentID;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Dense registry of the agents driving vehicles in SUMO. Every agent gets a stable int ordinal when it is registered,
+ * under which its SUMO ID, 2APL agent ID, agent interface and context are stored, and whether its vehicle is in the
+ * environment is kept in a bit set. Ordinals follow the order of registration, which gives a deterministic order to
+ * perform actions in that does not need to be sorted every tick.
+ * <p>
+ * Agents are registered on a single thread before the simulation starts, after which the registry itself is not
+ * modified and can be read from any thread. Only the active state changes, in the tick hooks, when agents are not
+ * deliberating. Vehicles that are not driven by a registered agent, e.g. background traffic from the route files,
+ * are tracked in a set of their own.
+ */
+public class AgentRegistry {
+
+    public static final int UNKNOWN = IdDictionary.UNKNOWN;
+
+    private final IdDictionary sumoIDs = new IdDictionary();
+    private final Map<AgentID, Integer> ordinals = new HashMap<>();
+    private final List<AgentID> agentIDs = new ArrayList<>();
+    private final List<SumoAPLAgent> agents = new ArrayList<>();
+    private final List<CarContext> contexts = new ArrayList<>();
+
+    private final BitSet active = new BitSet();
+    private final Set<String> activeUnregistered = new HashSet<>();
+    private int activeCount = 0;
+
+    /**
+     * Register an agent, assigning it the next ordinal
+     *
+     * @param sumoID    SUMO ID of the vehicle of the agent
+     * @param agentID   2APL ID of the agent
+     * @param agent     Agent interface
+     * @param context   Context of the agent
+     * @return Ordinal of the agent
+     */
+    public int register(String sumoID, AgentID agentID, SumoAPLAgent agent, CarContext context) {
+        int ordinal = this.sumoIDs.indexOf(sumoID);
+        if (ordinal != UNKNOWN) {
+            throw new IllegalArgumentException("Agent " + sumoID + " is already registered");
+        }
+        ordinal = this.sumoIDs.intern(sumoID);
+        this.ordinals.put(agentID, ordinal);
+        this.agentIDs.add(agentID);
+        this.agents.add(agent);
+        this.contexts.add(context);
+
+        if (this.activeUnregistered.remove(sumoID)) {
+            this.active.set(ordinal);
+        }
+        return ordinal;
+    }
+
+    /**
+     * @return Number of registered agents
+     */
+    public int size() {
+        return this.sumoIDs.size();
+    }
+
+    /**
+     * @param sumoID    SUMO ID of a vehicle
+     * @return Ordinal of the agent driving the vehicle, or {@link #UNKNOWN} if the vehicle has no registered agent
+     */
+    public int ordinalOf(String sumoID) {
+        return this.sumoIDs.indexOf(sumoID);
+    }
+
+    /**
+     * @param agentID   2APL ID of an agent
+     * @return Ordinal of the agent, or {@link #UNKNOWN} if the agent is not registered
+     */
+    public int ordinalOf(AgentID agentID) {
+        Integer ordinal = this.ordinals.get(agentID);
+        return ordinal == null ? UNKNOWN : ordinal;
+    }
+
+    public String getSumoID(int ordinal) {
+        return this.sumoIDs.get(ordinal);
+    }
+
+    public AgentID getAgentID(int ordinal) {
+        return this.agentIDs.get(ordinal);
+    }
+
+    public SumoAPLAgent getAgent(int ordinal) {
+        return this.agents.get(ordinal);
+    }
+
+    public CarContext getContext(int ordinal) {
+        return this.contexts.get(ordinal);
+    }
+
+    /**
+     * @param sumoID    SUMO ID of a vehicle
+     * @return Context of the agent driving the vehicle, or null if the vehicle has no registered agent
+     */
+    public CarContext getContext(String sumoID) {
+        int ordinal = ordinalOf(sumoID);
+        return ordinal == UNKNOWN ? null : this.contexts.get(ordinal);
+    }
+
+    /**
+     * @param sumoID    SUMO ID of a vehicle
+     * @return Agent interface of the agent driving the vehicle, or null if the vehicle has no registered agent
+     */
+    public SumoAPLAgent getAgent(String sumoID) {
+        int ordinal = ordinalOf(sumoID);
+        return ordinal == UNKNOWN ? null : this.agents.get(ordinal);
+    }
+
+    /**
+     * @param sumoID    SUMO ID of a vehicle
+     * @return True iff the vehicle is in the environment
+     */
+    public boolean isActive(String sumoID) {
+        int ordinal = ordinalOf(sumoID);
+        return ordinal == UNKNOWN ? this.activeUnregistered.contains(sumoID) : this.active.get(ordinal);
+    }
+
+    public boolean isActive(int ordinal) {
+        return this.active.get(ordinal);
+    }
+
+    /**
+     * Mark a vehicle as being in the environment
+     *
+     * @param sumoID    SUMO ID of the vehicle
+     * @return True iff the vehicle was not in the environment yet
+     */
+    boolean activate(String sumoID) {
+        int ordinal = ordinalOf(sumoID);
+        boolean added;
+        if (ordinal == UNKNOWN) {
+            added = this.activeUnregistered.add(sumoID);
+        } else {
+            added = !this.active.get(ordinal);
+            this.active.set(ordinal);
+        }
+        if (added) this.activeCount++;
+        return added;
+    }
+
+    /**
+     * Mark a vehicle as no longer being in the environment
+     *
+     * @param sumoID    SUMO ID of the vehicle
+     */
+    void deactivate(String sumoID) {
+        int ordinal = ordinalOf(sumoID);
+        boolean removed;
+        if (ordinal == UNKNOWN) {
+            removed = this.activeUnregistered.remove(sumoID);
+        } else {
+            removed = this.active.get(ordinal);
+            this.active.clear(ordinal);
+        }
+        if (removed) this.activeCount--;
+    }
+
+    /**
+     * @return Number of vehicles in the environment, with or without a registered agent
+     */
+    public int getActiveCount() {
+        return activeCount;
+    }
+}
@@ -0,0 +1,157 @@
+package sumo;
+
+import agent.plan.PlanMessage;
+import agent.plan.SetMaxSpeedPlanMessage;
+import agent.plan.SetMinGapPlanMessage;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the maximum speed and minimum gap last applied to every vehicle in SUMO, so actions that set a value the
+ * vehicle already has can be dropped before they are dispatched. Values are kept in primitive arrays indexed by the
+ * ordinal of the agent in the {@link AgentRegistry}. Actions for vehicles without a registered agent are never
+ * dropped.
+ * <p>
+ * A value counts as unchanged if it differs at most epsilon from the applied value. Values are only recorded once the
+ * jobs setting them have been performed successfully. When a set fails, the values of its vehicle are forgotten, so
+ * the next set for that vehicle is always sent. The values of a vehicle are also cleared when it arrives, as SUMO
+ * forgets them when it removes the vehicle.
+ * <p>
+ * The table also counts how often the values of each vehicle were forgotten because a set failed, so agents that only
+ * act when their inputs change know they should act again, see {@link #getFailureCount(String)}.
+ * <p>
+ * This class is not thread safe. It should only be modified from the hooks of the environment, and only be read by
+ * agents while they deliberate
+ */
+public class AppliedStateTable {
+
+    public static final double DEFAULT_EPSILON = 1e-6;
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final AgentRegistry agents;
+    private final double epsilon;
+
+    private double[] maxSpeed = new double[0];
+    private double[] minGap = new double[0];
+    private int[] failures = new int[0];
+
+    /**
+     * @param agents    Registry of the agents driving the vehicles
+     * @param epsilon   Largest difference with the applied value that is considered unchanged. Negative to never
+     *                  drop an action
+     */
+    public AppliedStateTable(AgentRegistry agents, double epsilon) {
+        this.agents = agents;
+        this.epsilon = epsilon;
+    }
+
+    /**
+     * Check if an action changes the state of its vehicle. Actions that do not set a value kept in this table are
+     * always performed
+     *
+     * @param message   Action about to be dispatched
+     * @return True iff the action should be dispatched, false if it sets a value the vehicle already has
+     */
+    public boolean changes(PlanMessage message) {
+        if (this.epsilon < 0) return true;
+        if (message instanceof SetMaxSpeedPlanMessage) {
+            SetMaxSpeedPlanMessage setMaxSpeed = (SetMaxSpeedPlanMessage) message;
+            return changes(this.maxSpeed, setMaxSpeed.sumoID, setMaxSpeed.speed);
+        } else if (message instanceof SetMinGapPlanMessage) {
+            SetMinGapPlanMessage setMinGap = (SetMinGapPlanMessage) message;
+            return changes(this.minGap, setMinGap.sumoID, setMinGap.minGap);
+        }
+        return true;
+    }
+
+    /**
+     * Record the value an action applied, after the action has been performed successfully
+     *
+     * @param message   Action that was performed
+     */
+    public void record(PlanMessage message) {
+        if (this.epsilon < 0) return;
+        if (message instanceof SetMaxSpeedPlanMessage) {
+            SetMaxSpeedPlanMessage setMaxSpeed = (SetMaxSpeedPlanMessage) message;
+            record(true, setMaxSpeed.sumoID, setMaxSpeed.speed);
+        } else if (message instanceof SetMinGapPlanMessage) {
+            SetMinGapPlanMessage setMinGap = (SetMinGapPlanMessage) message;
+            record(false, setMinGap.sumoID, setMinGap.minGap);
+        }
+    }
+
+    /**
+     * Forget the values applied to the vehicle of an action that failed, so the next action for the vehicle is always
+     * performed
+     *
+     * @param message   Action that was not performed
+     */
+    public void forget(PlanMessage message) {
+        String sumoID;
+        if (message instanceof SetMaxSpeedPlanMessage) {
+            sumoID = ((SetMaxSpeedPlanMessage) message).sumoID;
+        } else if (message instanceof SetMinGapPlanMessage) {
+            sumoID = ((SetMinGapPlanMessage) message).sumoID;
+        } else {
+            return;
+        }
+
+        clear(sumoID);
+        int ordinal = this.agents.ordinalOf(sumoID);
+        if (ordinal == AgentRegistry.UNKNOWN) return;
+        ensureCapacity(ordinal);
+        this.failures[ordinal]++;
+    }
+
+    /**
+     * Get how often a set for a vehicle failed. An agent that remembers this count when it acts, and finds it changed
+     * later, knows its action was not applied
+     *
+     * @param sumoID    SUMO ID of the vehicle
+     * @return Number of failed sets for the vehicle
+     */
+    public int getFailureCount(String sumoID) {
+        int ordinal = this.agents.ordinalOf(sumoID);
+        if (ordinal == AgentRegistry.UNKNOWN || ordinal >= this.failures.length) return 0;
+        return this.failures[ordinal];
+    }
+
+    /**
+     * Forget the values applied to a vehicle that left the environment
+     *
+     * @param sumoID    SUMO ID of the vehicle
+     */
+    public void clear(String sumoID) {
+        int ordinal = this.agents.ordinalOf(sumoID);
+        if (ordinal == AgentRegistry.UNKNOWN || ordinal >= this.maxSpeed.length) return;
+        this.maxSpeed[ordinal] = Double.NaN;
+        this.minGap[ordinal] = Double.NaN;
+    }
+
+    private boolean changes(double[] applied, String sumoID, double value) {
+        int ordinal = this.agents.ordinalOf(sumoID);
+        if (ordinal == AgentRegistry.UNKNOWN || ordinal >= applied.length) return true;
+        // NaN never compares as unchanged, so the first value of a trip is always applied
+        return !(Math.abs(applied[ordinal] - value) <= this.epsilon);
+    }
+
+    private void record(boolean isMaxSpeed, String sumoID, double value) {
+        int ordinal = this.agents.ordinalOf(sumoID);
+        if (ordinal == AgentRegistry.UNKNOWN) return;
+        ensureCapacity(ordinal);
+        (isMaxSpeed ? this.maxSpeed : this.minGap)[ordinal] = value;
+    }
+
+    private void ensureCapacity(int ordinal) {
+        if (ordinal < this.maxSpeed.length) return;
+        int capacity = Math.max(Math.max(INITIAL_CAPACITY, this.maxSpeed.length * 2),
+                Math.max(ordinal + 1, this.agents.size()));
+        int old = this.maxSpeed.length;
+        this.maxSpeed = Arrays.copyOf(this.maxSpeed, capacity);
+        this.minGap = Arrays.copyOf(this.minGap, capacity);
+        this.failures = Arrays.copyOf(this.failures, capacity);
+        Arrays.fill(this.maxSpeed, old, capacity, Double.NaN);
+        Arrays.fill(this.minGap, old, capacity, Double.NaN);
+    }
+}
@@ -0,0 +1,110 @@
+package sumo;
+
+import agent.plan.PlanMessage;
+import de.tudresden.sumo.util.SumoCommand;
+import it.polito.appeal.traci.SumoTraciConnection;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Dispatches all set-commands produced during a tick to SUMO using as few TraCI messages as possible.
+ * <p>
+ * Consecutive idempotent commands (e.g. setting the maximum speed or minimum gap of a vehicle) are packed into a
+ * single TraCI message, of which all status replies are read in one pass. TraaS only reports the first failing
+ * command of such a message, so when a batch fails, its commands are replayed one by one to isolate and report the
+ * failing ones. Replaying is safe because only idempotent commands are batched. Commands that are not idempotent
+ * (e.g. adding a route or a vehicle) are sent individually, as before, in their original order relative to the
+ * batched commands.
+ */
+public class CommandBatchDispatcher {
+    private static final Logger LOG = Logger.getLogger(CommandBatchDispatcher.class.getName());
+
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    private final SumoTraciConnection connection;
+    private final int maxBatchSize;
+
+    private final LinkedList<SumoCommand> batch = new LinkedList<>();
+    private final LinkedList<PlanMessage> batchMessages = new LinkedList<>();
+
+    private List<PlanMessage> failedJobs = new ArrayList<>();
+
+    /**
+     * @param connection    Connection to send commands over
+     * @param maxBatchSize  Maximum number of commands packed into a single TraCI message
+     */
+    public CommandBatchDispatcher(SumoTraciConnection connection, int maxBatchSize) {
+        this.connection = connection;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+    }
+
+    /**
+     * Queue the command of a message for dispatch. Non-idempotent commands cause the pending batch to be flushed
+     * first, after which the command itself is sent directly.
+     *
+     * @param message   Message encoding the command to send to SUMO
+     * @throws IllegalStateException if the connection with SUMO has been lost
+     */
+    public void dispatch(PlanMessage message) {
+        if (message.isIdempotent()) {
+            this.batch.add(message.getSumoCommand());
+            this.batchMessages.add(message);
+            if (this.batch.size() >= this.maxBatchSize) {
+                flush();
+            }
+        } else {
+            flush();
+            sendSingle(message.getSumoCommand(), message);
+        }
+    }
+
+    /**
+     * Send all queued commands to SUMO. Should be called before performing a time step.
+     *
+     * @return Messages of the commands that failed since the last call to flush, in the order they were dispatched
+     * @throws IllegalStateException if the connection with SUMO has been lost
+     */
+    public List<PlanMessage> flush() {
+        if (!this.batch.isEmpty()) {
+            try {
+                this.connection.do_jobs_set(this.batch);
+            } catch (IllegalStateException e) {
+                throw e;
+            } catch (Exception e) {
+                LOG.log(Level.FINE, "Batch of " + this.batch.size() + " jobs failed. Replaying jobs individually", e);
+                replayIndividually();
+            }
+            this.batch.clear();
+            this.batchMessages.clear();
+        }
+
+        if (this.failedJobs.isEmpty()) return Collections.emptyList();
+        List<PlanMessage> failed = this.failedJobs;
+        this.failedJobs = new ArrayList<>();
+        return failed;
+    }
+
+    private void replayIndividually() {
+        Iterator<PlanMessage> messages = this.batchMessages.iterator();
+        for (SumoCommand command : this.batch) {
+            sendSingle(command, messages.next());
+        }
+    }
+
+    private void sendSingle(SumoCommand command, PlanMessage message) {
+        try {
+            this.connection.do_job_set(command);
+        } catch (IllegalStateException e) {
+            throw e;
+        } catch (Exception e) {
+            this.failedJobs.add(message);
+            LOG.log(Level.WARNING, "Could not perform job " + message.toJson(), e);
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package sumo;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Call counts, volume, latency and errors of the requests made to the simulation, keyed by command domain and
+ * variable, e.g. Vehicle/setMaxSpeed or Lane/getMaxSpeed.
+ * <p>
+ * Requests may be made from agent threads during deliberation, so recording is thread safe. Each command is
+ * synchronized separately, so threads only contend when performing the same command.
+ */
+public class CommandMetrics {
+    private static final Logger LOG = Logger.getLogger(CommandMetrics.class.getName());
+
+    public static final String CSV_FILE = "command-metrics.csv";
+
+    private final Map<String, Command> commands = new ConcurrentHashMap<>();
+
+    /**
+     * Obtain the statistics of a command, creating them on first use. Callers on a hot path should keep the returned
+     * object instead of looking it up for every call.
+     *
+     * @param key   Command domain and variable, separated by a slash
+     * @return Statistics of the command
+     */
+    public Command get(String key) {
+        return this.commands.computeIfAbsent(key, Command::new);
+    }
+
+    /**
+     * @return Statistics of all commands that have been performed at least once, ordered by key
+     */
+    public List<Command> getCommands() {
+        List<Command> performed = new ArrayList<>();
+        for (Command command : this.commands.values()) {
+            if (command.getCount() > 0) performed.add(command);
+        }
+        performed.sort((a, b) -> a.key.compareTo(b.key));
+        return performed;
+    }
+
+    /**
+     * Create a human readable table of all commands, ordered by the total time spent on them
+     *
+     * @return Multi-line summary
+     */
+    public String summary() {
+        List<Command> performed = getCommands();
+        performed.sort((a, b) -> Long.compare(b.getLatency().getSum(), a.getLatency().getSum()));
+
+        StringBuilder sb = new StringBuilder(String.format(Locale.ROOT,
+                "Simulation commands (milliseconds):%n  %-28s %12s %10s %12s %12s %10s %10s %10s",
+                "command", "calls", "errors", "sent", "received", "total", "p99", "max"));
+        for (Command command : performed) {
+            LatencyHistogram latency = command.getLatency();
+            sb.append(String.format(Locale.ROOT, "%n  %-28s %12d %10d %12d %12d %10.1f %10.3f %10.3f",
+                    command.key, latency.getCount(), command.getErrors(),
+                    command.getBytesSent(), command.getBytesReceived(),
+                    latency.getSum() / 1e6, latency.getPercentile(99) / 1e6, latency.getMax() / 1e6));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Write the statistics of all commands to a CSV file
+     *
+     * @param directory Directory to write {@value #CSV_FILE} to
+     */
+    public void writeCsv(File directory) {
+        File file = new File(directory, CSV_FILE);
+        try (PrintWriter out = new PrintWriter(new FileWriter(file))) {
+            out.println("command,calls,errors,bytes_sent,bytes_received,total_us,p50_us,p99_us,max_us");
+            for (Command command : getCommands()) {
+                LatencyHistogram latency = command.getLatency();
+                out.println(String.join(",",
+                        command.key,
+                        Long.toString(latency.getCount()),
+                        Long.toString(command.getErrors()),
+                        Long.toString(command.getBytesSent()),
+                        Long.toString(command.getBytesReceived()),
+                        Long.toString(latency.getSum() / 1000),
+                        Long.toString(latency.getPercentile(50) / 1000),
+                        Long.toString(latency.getPercentile(99) / 1000),
+                        Long.toString(latency.getMax() / 1000)));
+            }
+            LOG.info("Simulation command metrics written to " + file);
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Could not write simulation command metrics to " + file, e);
+        }
+    }
+
+    /**
+     * Write the statistics of all commands in the Prometheus text format
+     *
+     * @param out Writer to write metrics to
+     */
+    public void writePrometheus(PrintWriter out) {
+        List<Command> performed = getCommands();
+
+        out.println("# HELP sim2apl_sumo_command_seconds Latency of requests to the simulation");
+        out.println("# TYPE sim2apl_sumo_command_seconds summary");
+        for (Command command : performed) {
+            LatencyHistogram latency = command.getLatency();
+            String label = "command=\"" + command.key + "\"";
+            out.println("sim2apl_sumo_command_seconds{" + label + ",quantile=\"0.5\"} " +
+                    latency.getPercentile(50) / 1e9);
+            out.println("sim2apl_sumo_command_seconds{" + label + ",quantile=\"0.99\"} " +
+                    latency.getPercentile(99) / 1e9);
+            out.println("sim2apl_sumo_command_seconds_sum{" + label + "} " + latency.getSum() / 1e9);
+            out.println("sim2apl_sumo_command_seconds_count{" + label + "} " + latency.getCount());
+        }
+
+        out.println("# HELP sim2apl_sumo_command_errors_total Requests to the simulation that failed");
+        out.println("# TYPE sim2apl_sumo_command_errors_total counter");
+        for (Command command : performed) {
+            out.println("sim2apl_sumo_command_errors_total{command=\"" + command.key + "\"} " + command.getErrors());
+        }
+
+        out.println("# HELP sim2apl_sumo_command_bytes_total Estimated TraCI message volume of requests");
+        out.println("# TYPE sim2apl_sumo_command_bytes_total counter");
+        for (Command command : performed) {
+            out.println("sim2apl_sumo_command_bytes_total{command=\"" + command.key + "\",direction=\"sent\"} " +
+                    command.getBytesSent());
+            out.println("sim2apl_sumo_command_bytes_total{command=\"" + command.key + "\",direction=\"received\"} " +
+                    command.getBytesReceived());
+        }
+    }
+
+    /**
+     * Statistics of a single command
+     */
+    public static class Command {
+        private final String key;
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private long errors = 0;
+        private long bytesSent = 0;
+        private long bytesReceived = 0;
+
+        private Command(String key) {
+            this.key = key;
+        }
+
+        /**
+         * Record a single call
+         *
+         * @param nanos         Duration of the call in nanoseconds
+         * @param bytesSent     Size of the request
+         * @param bytesReceived Size of the response
+         * @param failed        Whether the call failed
+         */
+        public synchronized void record(long nanos, int bytesSent, int bytesReceived, boolean failed) {
+            this.latency.record(nanos);
+            this.bytesSent += bytesSent;
+            this.bytesReceived += bytesReceived;
+            if (failed) this.errors++;
+        }
+
+        /**
+         * Record failures that were reported after the calls that caused them were recorded
+         *
+         * @param errors    Number of failures
+         */
+        public synchronized void recordErrors(int errors) {
+            this.errors += errors;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public synchronized long getCount() {
+            return this.latency.getCount();
+        }
+
+        public synchronized long getErrors() {
+            return errors;
+        }
+
+        public synchronized long getBytesSent() {
+            return bytesSent;
+        }
+
+        public synchronized long getBytesReceived() {
+            return bytesReceived;
+        }
+
+        /**
+         * @return Histogram of call durations. Should not be read while calls are being recorded
+         */
+        public LatencyHistogram getLatency() {
+            return latency;
+        }
+    }
+}
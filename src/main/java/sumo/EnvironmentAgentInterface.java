@@ -2,12 +2,16 @@ package sumo;
 
 import agent.SumoAPLAgent;
 import agent.SumoCar2APLAgent;
+import agent.context.BeliefStore;
 import agent.context.CarContext;
+import agent.context.ColumnarBeliefStore;
+import agent.context.ObjectBeliefStore;
 import agent.plan.CreateRoutePlan;
 import agent.planscheme.SumoCarExternalTriggerPlanScheme;
 import agent.planscheme.SumoCarGoalPlanScheme;
 import agent.trigger.external.EnteredWorldExternalTrigger;
 import agent.trigger.external.LeftWorldExternalTrigger;
+import com.sun.istack.Nullable;
 import nl.uu.cs.iss.ga.sim2apl.core.agent.Agent;
 import nl.uu.cs.iss.ga.sim2apl.core.agent.AgentArguments;
 import nl.uu.cs.iss.ga.sim2apl.core.agent.AgentID;
@@ -20,7 +24,7 @@ import nl.uu.cs.iss.ga.sim2apl.core.tick.TickExecutor;
 import org.apache.commons.cli.CommandLine;
 
 import java.net.URISyntaxException;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
@@ -46,6 +50,11 @@ public class EnvironmentAgentInterface {
      * Basis for agent poor/rich distribution
      */
     private WeightedRandomBag<String> agentTypesDistribution;
+
+    /**
+     * Source of the random streams of individual agents
+     */
+    private RandomStreams randomStreams;
     private Institution institution = new Institution();
 
     /** **/
@@ -53,10 +62,32 @@ public class EnvironmentAgentInterface {
     private int routesCounter = 0;
 
     /**
-     * Maps to map agents from SUMO to 2APL. Vice versa is not required, since SUMO-ID is present
-     * on the SumoAPLAgent interface
+     * Maps agents from SUMO to 2APL, and holds their contexts. Owned by the environment interface, and not modified
+     * after the agents have been created. Vice versa is not required, since SUMO-ID is present on the SumoAPLAgent
+     * interface
+     **/
+    private AgentRegistry agents;
+
+    /**
+     * Beliefs of the car agents, viewed through their contexts
+     **/
+    private BeliefStore beliefStore;
+
+    /**
+     * Spreads the insertion of cars over time, if requested
+     **/
+    @Nullable
+    private InsertionScheduler insertionScheduler;
+
+    /**
+     * Wakes up dormant agents that wait for their car to enter the environment
+     **/
+    private final WakeUpTimer wakeUpTimer = new WakeUpTimer();
+
+    /**
+     * Average CO2 emission of the vehicles in the environment over the last ticks. Only updated in the tick pre-hook
      **/
-    private Map<String, SumoAPLAgent> sumoAgents = new HashMap<>();
+    private final RollingAverage fleetCo2Backlog = new RollingAverage(CarContext.CO2_BACKLOG_LENGTH);
 
     /**
      * Default constructor. Creates the Sim2APL platform, simulation engine and environment interface.
@@ -80,18 +111,17 @@ public class EnvironmentAgentInterface {
             LOG.info("No agent seed specified. Using random number generator");
         }
 
+        this.randomStreams = new RandomStreams(seed == null ? rnd.nextLong() : Long.parseLong(seed));
         parseDistribution(parsedArguments, rnd);
 
-        TickExecutor executor;
-        if (parsedArguments.hasOption("use-matrix") && Boolean.parseBoolean(parsedArguments.getOptionValue("use-matrix"))) {
-            executor = new MatrixTickExecutor(4, rnd);
-        } else {
-            executor = new DefaultBlockingTickExecutor(4, rnd);
-        }
+        TickExecutor executor = createTickExecutor(parsedArguments, rnd);
 
         this.platform = Platform.newPlatform(executor, new FIPAMessenger());
         this.environmentInterface = new SumoEnvironmentInterface(parsedArguments, rnd);
         this.environmentInterface.addEnvironmentListener(this);
+        this.agents = this.environmentInterface.getAgentRegistry();
+        this.beliefStore = createBeliefStore(parsedArguments);
+        this.insertionScheduler = createInsertionScheduler(parsedArguments);
         createInitialAgents(parsedArguments.getOptionValue("car-id-prefix"));
 
         LOG.info("Starting simulation with " + nIterations + " steps");
@@ -125,6 +155,48 @@ public class EnvironmentAgentInterface {
         return institution;
     }
 
+    /**
+     * Look up the budget of the agent driving a vehicle. Safe to call from any thread, but budgets changed by agents
+     * during the current tick may not be visible yet
+     *
+     * @param sumoID SUMO ID of the vehicle
+     * @return Budget of the agent, or NaN if the vehicle is not driven by an agent of this interface
+     */
+    public double getBudget(String sumoID) {
+        CarContext context = this.agents.getContext(sumoID);
+        return context == null ? Double.NaN : context.getBudget();
+    }
+
+    /**
+     * Obtain the average CO2 emission of all vehicles in the environment, over the last
+     * {@value CarContext#CO2_BACKLOG_LENGTH} ticks. Agents can compare this with
+     * {@link CarContext#getCo2BacklogAvg()} to find out whether they emit more than the average car
+     *
+     * @return Average CO2 emission in mg/s, or 0 if no emission has been reported yet
+     */
+    public double getFleetCo2BacklogAvg() {
+        return this.fleetCo2Backlog.getAverage();
+    }
+
+    /**
+     * Obtain the scheduler agents request insertion slots from after they picked a route
+     *
+     * @return Insertion scheduler, or null if agents should enter the world right away
+     */
+    @Nullable
+    public InsertionScheduler getInsertionScheduler() {
+        return insertionScheduler;
+    }
+
+    /**
+     * Obtain the timer agents use to be woken up while they are dormant
+     *
+     * @return Wake-up timer
+     */
+    public WakeUpTimer getWakeUpTimer() {
+        return wakeUpTimer;
+    }
+
     /**
      * Create a unique route ID. This is just an incremental ID string.
      *
@@ -136,6 +208,106 @@ public class EnvironmentAgentInterface {
         return routeId;
     }
 
+    /**
+     * Create the tick executor performing the deliberation cycles of the agents, as selected on the command line.
+     * <p>
+     * When the Matrix is used, actions have to be exchanged through the Matrix, so the Matrix executor is always used.
+     * Otherwise, the executor can be selected with the tick-executor option. The default executor uses a fixed pool
+     * of 4 threads, unless a number of threads is specified. The work-stealing executor uses one thread per available
+     * processor by default. The virtual thread executor is only available when built with the jdk21 profile.
+     *
+     * @param args  Parsed command line arguments
+     * @param rnd   Random used by the executor to shuffle agents
+     * @return Tick executor
+     */
+    private TickExecutor createTickExecutor(CommandLine args, Random rnd) {
+        boolean useMatrix = args.hasOption("use-matrix") && Boolean.parseBoolean(args.getOptionValue("use-matrix"));
+        String type = args.getOptionValue("tick-executor", useMatrix ? "matrix" : "default");
+        Integer nThreads = args.hasOption("executor-threads") ?
+                Integer.valueOf(args.getOptionValue("executor-threads")) : null;
+
+        if (useMatrix && !"matrix".equals(type)) {
+            LOG.warning("Tick executor " + type + " cannot be used with the Matrix. Using Matrix tick executor");
+            type = "matrix";
+        }
+
+        LOG.info("Using " + type + " tick executor" + (nThreads == null ? "" : " with " + nThreads + " threads"));
+
+        switch (type) {
+            case "matrix":
+                return new MatrixTickExecutor(nThreads == null ? 4 : nThreads, rnd);
+            case "default":
+                return new DefaultBlockingTickExecutor(nThreads == null ? 4 : nThreads, rnd);
+            case "work-stealing":
+                return nThreads == null ? new WorkStealingTickExecutor(rnd) : new WorkStealingTickExecutor(nThreads, rnd);
+            case "virtual":
+                return createVirtualThreadTickExecutor(rnd);
+            default:
+                throw new IllegalArgumentException("Unknown tick executor " + type +
+                        ". Valid values are default, matrix, work-stealing and virtual");
+        }
+    }
+
+    /**
+     * The virtual thread executor is compiled only when building against JDK 21, so it is loaded reflectively to
+     * keep this class compatible with older JDKs.
+     */
+    private TickExecutor createVirtualThreadTickExecutor(Random rnd) {
+        try {
+            return (TickExecutor) Class.forName("sumo.VirtualThreadTickExecutor")
+                    .getConstructor(Random.class)
+                    .newInstance(rnd);
+        } catch (ReflectiveOperationException | UnsupportedClassVersionError e) {
+            throw new IllegalStateException("The virtual tick executor requires building with the jdk21 profile " +
+                    "and running on JDK 21 or newer", e);
+        }
+    }
+
+    /**
+     * Create the store for the beliefs of the car agents, as selected with the belief-store argument
+     *
+     * @param args  Parsed command line arguments
+     * @return Empty belief store
+     */
+    private BeliefStore createBeliefStore(CommandLine args) {
+        String layout = args.getOptionValue("belief-store", "objects");
+        LOG.info("Using " + layout + " belief store");
+        switch (layout) {
+            case "objects":
+                return new ObjectBeliefStore(this.desiredNOfCars);
+            case "columnar":
+                NetworkCache network = this.environmentInterface.getNetworkCache();
+                return new ColumnarBeliefStore(this.desiredNOfCars, network.getEdges(), network.getLanes());
+            default:
+                throw new IllegalArgumentException("Unknown belief store " + layout +
+                        ". Valid values are objects and columnar");
+        }
+    }
+
+    /**
+     * Create the insertion scheduler, if an insertion ramp or source edge capacity is given
+     *
+     * @param args  Parsed command line arguments
+     * @return Insertion scheduler, or null if insertions are not scheduled
+     */
+    @Nullable
+    private InsertionScheduler createInsertionScheduler(CommandLine args) {
+        if (!args.hasOption("insertion-ramp") && !args.hasOption("insertion-capacity")) return null;
+
+        int maxReleasesPerTick = 0;
+        if (args.hasOption("insertion-ramp")) {
+            int rampTicks = Integer.parseInt(args.getOptionValue("insertion-ramp"));
+            maxReleasesPerTick = rampTicks <= 0 ? 0 : (this.desiredNOfCars + rampTicks - 1) / rampTicks;
+        }
+        double capacityPerLane = Double.parseDouble(args.getOptionValue("insertion-capacity", "0"));
+
+        LOG.info("Scheduling insertions. Cars released per tick: " +
+                (maxReleasesPerTick > 0 ? maxReleasesPerTick : "no limit") + ". Cars pending per source lane: " +
+                (capacityPerLane > 0 ? capacityPerLane : "no limit"));
+        return new InsertionScheduler(this.environmentInterface.getNetworkCache(), maxReleasesPerTick,
+                capacityPerLane);
+    }
+
     /**
      * Instantiate the SimConfig parameters from command line arguments
      * @param args  Reference to command line arguments
@@ -170,12 +342,15 @@ public class EnvironmentAgentInterface {
      */
     private void createInitialAgents(String carIdPrefix) {
         LOG.info("Creating " + this.desiredNOfCars + " cars");
+        Map<String, String> vehicleTypes = new LinkedHashMap<>();
         for (int i = 0; i < this.desiredNOfCars; i++) {
-            SumoAPLAgent agent = InstantiateAgent(carIdPrefix, i, agentTypesDistribution.getRandom());
+            String type = agentTypesDistribution.getRandom();
+            SumoAPLAgent agent = InstantiateAgent(carIdPrefix, i, type);
             if (agent != null) {
-                this.sumoAgents.put(agent.getSumoID(), agent);
+                vehicleTypes.put(agent.getSumoID(), type);
             }
         }
+        this.environmentInterface.setVehicleTypes(vehicleTypes);
     }
 
     /**
@@ -189,8 +364,10 @@ public class EnvironmentAgentInterface {
         LOG.fine("Constructing agent " + agentID);
         SumoCar2APLAgent agentInterface = new SumoCar2APLAgent(agentID);
 
+        CarContext context = new CarContext(this, agentInterface, type, this.randomStreams.forAgent(agentIndex),
+                this.beliefStore);
         AgentArguments args = new AgentArguments();
-        args.addContext(new CarContext(this, agentInterface, type));
+        args.addContext(context);
         args.addExternalTriggerPlanScheme(new SumoCarExternalTriggerPlanScheme());
         args.addGoalPlanScheme(new SumoCarGoalPlanScheme());
         args.addInitialPlan(new CreateRoutePlan());
@@ -201,6 +378,7 @@ public class EnvironmentAgentInterface {
             id.setName(agentID);
             agent = new Agent(this.platform, args, id);
             agentInterface.setAgent(agent);
+            this.agents.register(agentID, id, agentInterface, context);
         } catch (URISyntaxException e) {
             LOG.log(Level.SEVERE, "Error creating agent " + agentID, e);
             return null;
@@ -211,34 +389,85 @@ public class EnvironmentAgentInterface {
 
     /**
      * Listens to updates from the environment about agents that have arrived at their destination and thus left the
-     * environment. Notifies all these agents through an external trigger.
+     * environment. Notifies all these agents through an external trigger. Triggers are delivered on the simulation
+     * thread in the order SUMO reported the arrivals, so runs with the same seed deliver them in the same order.
      *
      * @param arrivedAgents SUMO agent ID's of agents that have arrived at their destination and thus been removed from
      *                      the SUMO environment
      */
     void notifyAgentsArrived(List<String> arrivedAgents) {
-        arrivedAgents.forEach(ra -> {
-            SumoAPLAgent agentInterface = this.sumoAgents.get(ra);
-            if (agentInterface != null) {
-                Agent a = agentInterface.getAgent();
+        if (this.insertionScheduler != null) {
+            this.insertionScheduler.departed(arrivedAgents);
+        }
+        for (String sumoID : arrivedAgents) {
+            int ordinal = this.agents.ordinalOf(sumoID);
+            if (ordinal != AgentRegistry.UNKNOWN) {
+                Agent a = this.agents.getAgent(ordinal).getAgent();
                 a.addExternalTrigger(new LeftWorldExternalTrigger());
+                this.agents.getContext(ordinal).clearCo2Backlog();
+            }
+        }
+    }
+
+    /**
+     * Called by the environment in every tick pre-hook, after arrivals and departures have been processed. Lets the
+     * insertion scheduler release the agents that may enter the world during this tick, and wakes up the agents
+     * whose timers expired
+     */
+    void startTick() {
+        if (this.insertionScheduler != null) {
+            this.insertionScheduler.release();
+        }
+        int woken = this.wakeUpTimer.fire();
+        if (woken > 0) {
+            LOG.fine("Woke up " + woken + " agents whose timers expired");
+        }
+    }
+
+    /**
+     * Listens to the vehicle states of the environment, received in bulk through the subscriptions of the last time
+     * step. Adds the CO2 emission of every vehicle to the backlog of its agent, and the average over all vehicles to
+     * the fleet backlog. Called in the tick pre-hook, so agents are not deliberating yet.
+     *
+     * @param vehicleStates Snapshot of the vehicle states for the current tick
+     */
+    void updateCo2Backlogs(VehicleStateSnapshot vehicleStates) {
+        double[] total = new double[2];
+        vehicleStates.forEach((sumoID, state) -> {
+            double co2 = state.getCo2Emission();
+            if (Double.isNaN(co2)) return;
+            total[0] += co2;
+            total[1]++;
+            CarContext context = this.agents.getContext(sumoID);
+            if (context != null) {
+                context.addCo2ValueToBacklog(co2);
             }
         });
+        if (total[1] > 0) {
+            this.fleetCo2Backlog.add(total[0] / total[1]);
+        }
     }
 
     /**
      * Listens to updates form the environment about agents that have succesfully entered the SUMO environment.
-     * Notifies all these agents through an external trigger
+     * Notifies all these agents through an external trigger, in the order SUMO reported them
      *
      * @param enteredAgents SUMO agent ID's of successfully entered agents
      */
     void notifyAgentsEntered(List<String> enteredAgents) {
-        enteredAgents.forEach(ea -> {
-            SumoAPLAgent agentInterface = this.sumoAgents.get(ea);
+        if (this.insertionScheduler != null) {
+            this.insertionScheduler.departed(enteredAgents);
+        }
+        for (String sumoID : enteredAgents) {
+            CarContext context = this.agents.getContext(sumoID);
+            if (context != null) {
+                this.wakeUpTimer.cancel(context);
+            }
+            SumoAPLAgent agentInterface = this.agents.getAgent(sumoID);
             if (agentInterface != null) {
                 Agent a = agentInterface.getAgent();
                 a.addExternalTrigger(new EnteredWorldExternalTrigger());
             }
-        });
+        }
     }
 }
@@ -0,0 +1,76 @@
+package sumo;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Reads a file while it is still being written. When the end of the file is reached, reading blocks until more data
+ * is appended, or until the writer signals it has finished. As a writer may still be flushing its buffers when it
+ * signals, the end of the file is only reported once nothing has been appended for {@value #SETTLE_MILLIS}
+ * milliseconds after the signal. The file does not have to exist yet when the stream is created.
+ */
+class GrowingFileInputStream extends InputStream {
+
+    private static final long POLL_INTERVAL_MILLIS = 200;
+    private static final long SETTLE_MILLIS = 1000;
+
+    private final File file;
+    private final BooleanSupplier writerFinished;
+    private InputStream in;
+    private long settledSince = -1;
+
+    /**
+     * @param file              File to read
+     * @param writerFinished    Returns true once nothing will be appended to the file anymore
+     */
+    GrowingFileInputStream(File file, BooleanSupplier writerFinished) {
+        this.file = file;
+        this.writerFinished = writerFinished;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        int n = read(b, 0, 1);
+        return n < 0 ? -1 : b[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) return 0;
+        while (true) {
+            // Check before reading, so data written just before the writer finished is not missed
+            boolean finished = this.writerFinished.getAsBoolean();
+            if (this.in == null && this.file.exists()) {
+                this.in = new FileInputStream(this.file);
+            }
+            if (this.in != null) {
+                int n = this.in.read(b, off, len);
+                if (n > 0) {
+                    this.settledSince = -1;
+                    return n;
+                }
+            }
+            if (finished) {
+                long now = System.currentTimeMillis();
+                if (this.settledSince < 0) this.settledSince = now;
+                if (now - this.settledSince >= SETTLE_MILLIS) return -1;
+            }
+            try {
+                Thread.sleep(POLL_INTERVAL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for " + this.file + " to grow");
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.in != null) this.in.close();
+    }
+}
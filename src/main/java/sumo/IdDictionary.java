@@ -0,0 +1,70 @@
+package sumo;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Interns String IDs of SUMO objects (edges, lanes, vehicle classes, ...) to dense int indices, so attributes of
+ * those objects can be stored in primitive arrays indexed by the interned ID.
+ * <p>
+ * Dictionaries are filled on a single thread and should not be modified once they are shared with agent threads.
+ */
+public class IdDictionary {
+
+    public static final int UNKNOWN = -1;
+
+    private final Map<String, Integer> indices;
+    private final List<String> ids;
+
+    public IdDictionary() {
+        this(16);
+    }
+
+    public IdDictionary(int expectedSize) {
+        this.indices = new HashMap<>(expectedSize * 4 / 3 + 1);
+        this.ids = new ArrayList<>(expectedSize);
+    }
+
+    /**
+     * Get the index of an ID, assigning the next free index if the ID was not yet known
+     *
+     * @param id    ID to intern
+     * @return Index of the ID
+     */
+    public int intern(String id) {
+        Integer index = this.indices.get(id);
+        if (index == null) {
+            index = this.ids.size();
+            this.indices.put(id, index);
+            this.ids.add(id);
+        }
+        return index;
+    }
+
+    /**
+     * Get the index of an ID
+     *
+     * @param id    ID to look up
+     * @return Index of the ID, or {@link #UNKNOWN} if the ID was never interned
+     */
+    public int indexOf(String id) {
+        Integer index = this.indices.get(id);
+        return index == null ? UNKNOWN : index;
+    }
+
+    /**
+     * Get the ID belonging to an index
+     *
+     * @param index Index obtained from this dictionary
+     * @return ID belonging to the index
+     */
+    public String get(int index) {
+        return this.ids.get(index);
+    }
+
+    public int size() {
+        return this.ids.size();
+    }
+}
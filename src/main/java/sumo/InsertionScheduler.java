@@ -0,0 +1,217 @@
+package sumo;
+
+import agent.context.CarContext;
+import agent.trigger.external.InsertionSlotExternalTrigger;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Logger;
+
+/**
+ * Spreads the insertion of vehicles into SUMO over time, so not all cars try to enter the environment at the same
+ * tick. Agents that have picked a route request an insertion slot instead of entering right away, and are released
+ * in the tick pre-hook by an {@link InsertionSlotExternalTrigger}, after which they enter the world.
+ * <p>
+ * Two limits can be set, separately or together:
+ * <ul>
+ *     <li>A ramp, which releases at most a fixed number of agents per tick, so the initial cars are spread over a
+ *     given number of ticks</li>
+ *     <li>A capacity per lane of the source edge, which bounds the number of vehicles that are released but have not
+ *     departed yet on each source edge. SUMO postpones vehicles that do not fit on their source edge, so releasing
+ *     more than the edge can take only adds to the insertion backlog of SUMO</li>
+ * </ul>
+ * Waiting agents are released in the order they requested a slot on each edge, and edges take turns. Released
+ * vehicles are pending until SUMO reports their departure. Vehicles that have been pending for
+ * {@value #PENDING_TIMEOUT_TICKS} ticks are assumed to have failed to be added, so they do not block their edge
+ * forever. An agent whose vehicle was not added requests a new slot, which ends the pending state of its last one.
+ * <p>
+ * Agents request slots while deliberating, from any thread. Everything else happens in the tick hooks.
+ */
+public class InsertionScheduler {
+    private static final Logger LOG = Logger.getLogger(InsertionScheduler.class.getName());
+
+    /**
+     * Number of ticks after which a vehicle that has not departed is no longer counted as pending
+     */
+    public static final int PENDING_TIMEOUT_TICKS = 600;
+
+    private final NetworkCache network;
+    private final int maxReleasesPerTick;
+    private final double capacityPerLane;
+
+    private final Queue<CarContext> requests = new ConcurrentLinkedQueue<>();
+
+    /** Only used in the tick hooks. Edges with waiting agents take turns in the order of the queue **/
+    private final Map<String, SourceEdge> edges = new HashMap<>();
+    private final ArrayDeque<SourceEdge> turns = new ArrayDeque<>();
+    private final Map<String, Released> pending = new HashMap<>();
+    private final ArrayDeque<Released> released = new ArrayDeque<>();
+    private final Set<String> waiting = new HashSet<>();
+    private long tick = 0;
+
+    /**
+     * @param network               Network cache, for the number of lanes of the source edges
+     * @param maxReleasesPerTick    Maximum number of agents released per tick, or 0 for no limit
+     * @param capacityPerLane       Maximum number of pending vehicles per lane of a source edge, or 0 for no limit
+     */
+    public InsertionScheduler(NetworkCache network, int maxReleasesPerTick, double capacityPerLane) {
+        this.network = network;
+        this.maxReleasesPerTick = maxReleasesPerTick <= 0 ? Integer.MAX_VALUE : maxReleasesPerTick;
+        this.capacityPerLane = capacityPerLane;
+    }
+
+    /**
+     * Request an insertion slot for a car that has picked its route. The agent is notified with an
+     * {@link InsertionSlotExternalTrigger} when it may enter the world. Thread safe.
+     *
+     * @param context   Context of the car, located at the source edge of its route
+     */
+    public void request(CarContext context) {
+        this.requests.add(context);
+    }
+
+    /**
+     * Release the agents that may enter the world during this tick. Should be called once in every tick pre-hook,
+     * after departures have been processed with {@link #departed(List)}.
+     */
+    void release() {
+        this.tick++;
+        expirePending();
+        collectRequests();
+        if (this.waiting.isEmpty()) return;
+
+        int budget = this.maxReleasesPerTick;
+        int releasedThisTick = 0;
+        // Release one vehicle per edge per round, until the budget is spent or no edge can release more. The order
+        // of the turns carries over to the next tick, so no edge is favoured when the budget runs out
+        boolean progress = true;
+        while (budget > 0 && progress && !this.turns.isEmpty()) {
+            progress = false;
+            for (int i = this.turns.size(); i > 0 && budget > 0; i--) {
+                SourceEdge edge = this.turns.poll();
+                if (edge.isFull()) {
+                    this.turns.add(edge);
+                    continue;
+                }
+
+                CarContext context = edge.waiting.poll();
+                String sumoID = context.getAgentInterface().getSumoID();
+                this.waiting.remove(sumoID);
+                edge.pending++;
+                Released release = new Released(sumoID, edge, this.tick);
+                this.pending.put(sumoID, release);
+                this.released.add(release);
+                context.getAgentInterface().getAgent().addExternalTrigger(new InsertionSlotExternalTrigger());
+
+                if (!edge.waiting.isEmpty()) this.turns.add(edge);
+                budget--;
+                releasedThisTick++;
+                progress = true;
+            }
+        }
+
+        LOG.fine(String.format("Released %d insertions. %d agents waiting, %d vehicles pending",
+                releasedThisTick, this.waiting.size(), this.pending.size()));
+    }
+
+    /**
+     * Stop counting vehicles as pending once SUMO reports they departed. Vehicles that departed and arrived during
+     * the same step are only reported as arrived, so arrivals should be passed as well
+     *
+     * @param vehicles SUMO IDs of the vehicles that entered or left the environment during the last step
+     */
+    void departed(List<String> vehicles) {
+        if (this.pending.isEmpty()) return;
+        for (String sumoID : vehicles) {
+            Released release = this.pending.remove(sumoID);
+            if (release != null) release.edge.pending--;
+        }
+    }
+
+    /**
+     * @return Number of agents waiting for an insertion slot
+     */
+    public int getWaitingCount() {
+        return this.waiting.size();
+    }
+
+    /**
+     * @return Number of vehicles that were released but did not depart yet
+     */
+    public int getPendingCount() {
+        return this.pending.size();
+    }
+
+    private void collectRequests() {
+        CarContext context;
+        while ((context = this.requests.poll()) != null) {
+            String sumoID = context.getAgentInterface().getSumoID();
+            // An agent that is still waiting does not need a second slot
+            if (!this.waiting.add(sumoID)) continue;
+            // An agent only requests a slot while released if its vehicle was not added, so it is no longer pending
+            Released release = this.pending.remove(sumoID);
+            if (release != null) release.edge.pending--;
+            String edgeID = context.getCurrentLocation();
+            SourceEdge edge = this.edges.computeIfAbsent(edgeID, this::sourceEdge);
+            if (edge.waiting.isEmpty()) this.turns.add(edge);
+            edge.waiting.add(context);
+        }
+    }
+
+    private SourceEdge sourceEdge(String edgeID) {
+        int lanes = Math.max(1, this.network.getEdgeLaneCount(edgeID));
+        int capacity = this.capacityPerLane > 0 ? (int) Math.max(1, Math.round(lanes * this.capacityPerLane)) : 0;
+        return new SourceEdge(capacity);
+    }
+
+    private void expirePending() {
+        List<String> expired = null;
+        while (!this.released.isEmpty() && this.tick - this.released.peek().tick > PENDING_TIMEOUT_TICKS) {
+            Released release = this.released.poll();
+            // The vehicle may have departed, or have been released again since
+            if (this.pending.get(release.sumoID) == release) {
+                this.pending.remove(release.sumoID);
+                release.edge.pending--;
+                if (expired == null) expired = new ArrayList<>();
+                expired.add(release.sumoID);
+            }
+        }
+        if (expired != null) {
+            LOG.warning(expired.size() + " vehicles did not depart within " + PENDING_TIMEOUT_TICKS +
+                    " ticks after they were released, and are no longer counted as pending: " + expired);
+        }
+    }
+
+    private static class SourceEdge {
+        final int capacity;
+        final Queue<CarContext> waiting = new ArrayDeque<>();
+        int pending = 0;
+
+        SourceEdge(int capacity) {
+            this.capacity = capacity;
+        }
+
+        boolean isFull() {
+            return this.capacity > 0 && this.pending >= this.capacity;
+        }
+    }
+
+    private static class Released {
+        final String sumoID;
+        final SourceEdge edge;
+        final long tick;
+
+        Released(String sumoID, SourceEdge edge, long tick) {
+            this.sumoID = sumoID;
+            this.edge = edge;
+            this.tick = tick;
+        }
+    }
+}
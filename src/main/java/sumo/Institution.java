@@ -1,5 +1,8 @@
 package sumo;
 
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.IntPredicate;
+
 public class Institution {
     /**
      * parameters for calculating the sanction
@@ -7,6 +10,11 @@ public class Institution {
     private static double SANCTION_BASE = 2;
     private static double SANCTION_EXP = 2;
 
+    /**
+     * Resolution of the speeds and gaps returned by the inverse norm queries
+     */
+    public static final double SEARCH_STEP = 0.1;
+
     /**
      * sanction for violating speed limit is determined as SANCTION_BASE^((monitored_speed - speed_limit)/SANCTION_EXP)
      * It's similar to the idea of Switzerland regulation
@@ -81,5 +89,92 @@ public class Institution {
         return SimConfig.RICH_BUDGET - 1;
     }
 
+    /**
+     * Maximum speed an agent can afford on a lane under the exponential speed limit sanction.
+     * <p>
+     * Speeds are considered in steps of {@link #SEARCH_STEP}, starting at one step. The result is the first speed of
+     * which the sanction is no longer strictly within budget, or the last step below the physical maximum speed of
+     * the vehicle if all speeds are affordable. This is the same answer an agent gets by increasing its speed one
+     * step at a time, but found by bisection in a logarithmic number of sanction evaluations.
+     *
+     * @param budget            Budget of the agent
+     * @param laneMaxSpeed      Maximum speed of the lane in the network
+     * @param vehicleMaxSpeed   Physical maximum speed of the vehicle
+     * @return Maximum affordable speed
+     */
+    public double getMaxAffordableSpeed(double budget, double laneMaxSpeed, double vehicleMaxSpeed) {
+        return maxAffordableSpeed(budget, vehicleMaxSpeed, speed -> getSpeedLimitSanction(speed, laneMaxSpeed));
+    }
+
+    /**
+     * Maximum speed an agent can afford on a lane under the fixed speed sanction.
+     *
+     * @see #getMaxAffordableSpeed(double, double, double)
+     */
+    public double getMaxAffordableFixedSpeed(double budget, double laneMaxSpeed, double vehicleMaxSpeed) {
+        return maxAffordableSpeed(budget, vehicleMaxSpeed, speed -> getFixedSpeedSanction(speed, laneMaxSpeed));
+    }
 
+    /**
+     * Minimum gap an agent can afford at the given speed under the exponential min gap sanction.
+     * <p>
+     * Gaps are considered in steps of {@link #SEARCH_STEP}, starting at the largest gap. The result is the first gap
+     * of which the sanction is no longer strictly within budget, or the last step above the smallest allowed gap if
+     * all gaps are affordable. This is the same answer an agent gets by decreasing its gap one step at a time, but
+     * found by bisection in a logarithmic number of sanction evaluations.
+     *
+     * @param budget        Budget of the agent
+     * @param speed         Current speed of the vehicle
+     * @param smallestGap   Smallest gap the vehicle may keep
+     * @param largestGap    Gap to start searching from
+     * @return Minimum affordable gap
+     */
+    public double getMinAffordableGap(double budget, double speed, double smallestGap, double largestGap) {
+        return minAffordableGap(budget, smallestGap, largestGap, gap -> getMinGapSanction(gap, speed));
+    }
+
+    /**
+     * Minimum gap an agent can afford at the given speed under the fixed min gap sanction.
+     *
+     * @see #getMinAffordableGap(double, double, double, double)
+     */
+    public double getMinAffordableFixedGap(double budget, double speed, double smallestGap, double largestGap) {
+        return minAffordableGap(budget, smallestGap, largestGap, gap -> getFixedGapSanction(gap, speed));
+    }
+
+    private static double maxAffordableSpeed(double budget, double vehicleMaxSpeed, DoubleUnaryOperator sanction) {
+        // Sanctions never decrease with speed, so affordability flips at most once along the steps
+        int lastStep = Math.max(0, (int) Math.ceil((vehicleMaxSpeed - SEARCH_STEP) / SEARCH_STEP - 1e-9) - 1);
+        int step = firstUnaffordableStep(lastStep, k -> budget > sanction.applyAsDouble(SEARCH_STEP * (k + 1)));
+        return SEARCH_STEP * (step + 1);
+    }
+
+    private static double minAffordableGap(double budget, double smallestGap, double largestGap,
+                                           DoubleUnaryOperator sanction) {
+        // Sanctions never decrease with a shrinking gap, so affordability flips at most once along the steps
+        int lastStep = Math.max(0, (int) Math.ceil((largestGap - smallestGap - SEARCH_STEP) / SEARCH_STEP - 1e-9));
+        int step = firstUnaffordableStep(lastStep, k -> budget > sanction.applyAsDouble(largestGap - SEARCH_STEP * k));
+        return largestGap - SEARCH_STEP * step;
+    }
+
+    /**
+     * Bisection for the first step that is not affordable, given that affordability is monotone in the step
+     *
+     * @param lastStep      Step at which the search ends, whether it is affordable or not
+     * @param affordable    Whether a step is affordable
+     * @return First unaffordable step, or lastStep if all steps before it are affordable
+     */
+    private static int firstUnaffordableStep(int lastStep, IntPredicate affordable) {
+        int low = 0;
+        int high = lastStep;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (affordable.test(mid)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
 }
@@ -0,0 +1,418 @@
+package sumo;
+
+import agent.plan.CreateRoutePlanMessage;
+import agent.plan.EnterWorldPlanMessage;
+import agent.plan.PlanMessage;
+import agent.plan.SetMaxSpeedPlanMessage;
+import agent.plan.SetMinGapPlanMessage;
+import com.sun.istack.Nullable;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Wraps a backend, recording the count, latency, volume and failures of every request in {@link CommandMetrics}.
+ * <p>
+ * Volume is estimated from the size of the arguments and results in the TraCI encoding, so it is comparable between
+ * backends, even those that do not send messages at all. The volume of a time step is that of the subscription
+ * results reported to the listener. Actions are timed when they are dispatched, and the time spent performing
+ * deferred actions is recorded under Simulation/flush. Backends only report failed actions when they are flushed, so
+ * the failures are then counted under the command of each failed action, e.g. Vehicle/setMaxSpeed.
+ */
+public class InstrumentedSumoBackend implements SumoBackend {
+
+    /** Estimated sizes in bytes of the parts of TraCI messages **/
+    private static final int HEADER_SIZE = 3;
+    private static final int STATUS_SIZE = 7;
+    private static final int DOUBLE_SIZE = 9;
+    private static final int INT_SIZE = 5;
+
+    private final SumoBackend backend;
+    private final CommandMetrics metrics;
+
+    private final CommandMetrics.Command simulationStep;
+    private final CommandMetrics.Command simulationGetTime;
+    private final CommandMetrics.Command simulationFlush;
+    private final CommandMetrics.Command vehicleSubscribe;
+    private final CommandMetrics.Command edgeGetIDList;
+    private final CommandMetrics.Command edgeGetLaneNumber;
+    private final CommandMetrics.Command laneGetIDList;
+    private final CommandMetrics.Command laneGetMaxSpeed;
+    private final CommandMetrics.Command laneGetLength;
+    private final CommandMetrics.Command laneGetAllowed;
+    private final CommandMetrics.Command laneGetAttributes;
+    private final CommandMetrics.Command laneSetMaxSpeed;
+    private final CommandMetrics.Command routeGetIDList;
+    private final CommandMetrics.Command routeGetEdges;
+    private final CommandMetrics.Command routeAdd;
+    private final CommandMetrics.Command simulationFindRoute;
+    private final CommandMetrics.Command vehicleAdd;
+    private final CommandMetrics.Command vehicleSetMaxSpeed;
+    private final CommandMetrics.Command vehicleSetMinGap;
+
+    /**
+     * Volume of the subscription results reported during the current time step
+     **/
+    private long stepBytes = 0;
+
+    /**
+     * @param backend   Backend to instrument
+     * @param metrics   Metrics to record requests in
+     */
+    public InstrumentedSumoBackend(SumoBackend backend, CommandMetrics metrics) {
+        this.backend = backend;
+        this.metrics = metrics;
+
+        this.simulationStep = metrics.get("Simulation/step");
+        this.simulationGetTime = metrics.get("Simulation/getTime");
+        this.simulationFlush = metrics.get("Simulation/flush");
+        this.simulationFindRoute = metrics.get("Simulation/findRoute");
+        this.vehicleSubscribe = metrics.get("Vehicle/subscribe");
+        this.vehicleAdd = metrics.get("Vehicle/add");
+        this.vehicleSetMaxSpeed = metrics.get("Vehicle/setMaxSpeed");
+        this.vehicleSetMinGap = metrics.get("Vehicle/setMinGap");
+        this.edgeGetIDList = metrics.get("Edge/getIDList");
+        this.edgeGetLaneNumber = metrics.get("Edge/getLaneNumber");
+        this.laneGetIDList = metrics.get("Lane/getIDList");
+        this.laneGetMaxSpeed = metrics.get("Lane/getMaxSpeed");
+        this.laneGetLength = metrics.get("Lane/getLength");
+        this.laneGetAllowed = metrics.get("Lane/getAllowed");
+        this.laneGetAttributes = metrics.get("Lane/getAttributes");
+        this.laneSetMaxSpeed = metrics.get("Lane/setMaxSpeed");
+        this.routeGetIDList = metrics.get("Route/getIDList");
+        this.routeGetEdges = metrics.get("Route/getEdges");
+        this.routeAdd = metrics.get("Route/add");
+    }
+
+    /**
+     * @return Metrics requests are recorded in
+     */
+    public CommandMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public void start(String sumoBinary, String configFile, Map<String, String> options, SumoBackendListener listener)
+            throws Exception {
+        this.backend.start(sumoBinary, configFile, options, new CountingListener(listener));
+    }
+
+    @Override
+    public void step() throws Exception {
+        this.stepBytes = 0;
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            this.backend.step();
+            failed = false;
+        } finally {
+            this.simulationStep.record(System.nanoTime() - start, HEADER_SIZE + INT_SIZE,
+                    (int) Math.min(Integer.MAX_VALUE, this.stepBytes), failed);
+        }
+    }
+
+    @Override
+    public int getCurrentTime() {
+        long start = System.nanoTime();
+        int time = this.backend.getCurrentTime();
+        this.simulationGetTime.record(System.nanoTime() - start, HEADER_SIZE, HEADER_SIZE + INT_SIZE, false);
+        return time;
+    }
+
+    @Override
+    public void subscribeVehicle(String vehicleID) {
+        long start = System.nanoTime();
+        this.backend.subscribeVehicle(vehicleID);
+        this.vehicleSubscribe.record(System.nanoTime() - start, header(vehicleID) + 4 * INT_SIZE, STATUS_SIZE, false);
+    }
+
+    @Override
+    public List<String> getEdgeIDs() {
+        long start = System.nanoTime();
+        List<String> ids = this.backend.getEdgeIDs();
+        this.edgeGetIDList.record(System.nanoTime() - start, HEADER_SIZE, HEADER_SIZE + size(ids), ids.isEmpty());
+        return ids;
+    }
+
+    @Override
+    public int getEdgeLaneCount(String edgeID) {
+        long start = System.nanoTime();
+        int count = this.backend.getEdgeLaneCount(edgeID);
+        this.edgeGetLaneNumber.record(System.nanoTime() - start, header(edgeID), header(edgeID) + INT_SIZE,
+                count < 0);
+        return count;
+    }
+
+    @Override
+    public List<String> getLaneIDs() {
+        long start = System.nanoTime();
+        List<String> ids = this.backend.getLaneIDs();
+        this.laneGetIDList.record(System.nanoTime() - start, HEADER_SIZE, HEADER_SIZE + size(ids), ids.isEmpty());
+        return ids;
+    }
+
+    @Override
+    public double getLaneMaxSpeed(String laneID) {
+        long start = System.nanoTime();
+        double maxSpeed = this.backend.getLaneMaxSpeed(laneID);
+        this.laneGetMaxSpeed.record(System.nanoTime() - start, header(laneID), header(laneID) + DOUBLE_SIZE,
+                Double.isNaN(maxSpeed));
+        return maxSpeed;
+    }
+
+    @Override
+    public double getLaneLength(String laneID) {
+        long start = System.nanoTime();
+        double length = this.backend.getLaneLength(laneID);
+        this.laneGetLength.record(System.nanoTime() - start, header(laneID), header(laneID) + DOUBLE_SIZE,
+                Double.isNaN(length));
+        return length;
+    }
+
+    @Nullable
+    @Override
+    public List<String> getLaneAllowed(String laneID) {
+        long start = System.nanoTime();
+        List<String> allowed = this.backend.getLaneAllowed(laneID);
+        this.laneGetAllowed.record(System.nanoTime() - start, header(laneID),
+                header(laneID) + (allowed == null ? 0 : size(allowed)), allowed == null);
+        return allowed;
+    }
+
+    @Override
+    public Map<String, LaneAttributes> getLaneAttributes(List<String> laneIDs) {
+        long start = System.nanoTime();
+        Map<String, LaneAttributes> attributes = this.backend.getLaneAttributes(laneIDs);
+        int resultSize = 0;
+        for (LaneAttributes lane : attributes.values()) {
+            resultSize += 2 * DOUBLE_SIZE + size(lane.getAllowed()) + size(lane.getDisallowed());
+        }
+        this.laneGetAttributes.record(System.nanoTime() - start, HEADER_SIZE + size(laneIDs),
+                HEADER_SIZE + resultSize, attributes.size() < laneIDs.size());
+        return attributes;
+    }
+
+    @Override
+    public boolean setLaneMaxSpeed(String laneID, double maxSpeed) {
+        long start = System.nanoTime();
+        boolean changed = this.backend.setLaneMaxSpeed(laneID, maxSpeed);
+        this.laneSetMaxSpeed.record(System.nanoTime() - start, header(laneID) + DOUBLE_SIZE, STATUS_SIZE, !changed);
+        return changed;
+    }
+
+    @Override
+    public List<String> getRouteIDs() {
+        long start = System.nanoTime();
+        List<String> ids = this.backend.getRouteIDs();
+        this.routeGetIDList.record(System.nanoTime() - start, HEADER_SIZE, HEADER_SIZE + size(ids), ids.isEmpty());
+        return ids;
+    }
+
+    @Override
+    public List<String> getRouteEdges(String routeID) {
+        long start = System.nanoTime();
+        List<String> edges = this.backend.getRouteEdges(routeID);
+        this.routeGetEdges.record(System.nanoTime() - start, header(routeID), header(routeID) + size(edges),
+                edges.isEmpty());
+        return edges;
+    }
+
+    @Nullable
+    @Override
+    public List<String> findRoute(String sourceEdgeID, String targetEdgeID, String vehicleType) {
+        long start = System.nanoTime();
+        List<String> route = this.backend.findRoute(sourceEdgeID, targetEdgeID, vehicleType);
+        int sent = HEADER_SIZE + INT_SIZE + 1 + size(sourceEdgeID) + 1 + size(targetEdgeID) +
+                1 + size(vehicleType) + DOUBLE_SIZE + INT_SIZE;
+        this.simulationFindRoute.record(System.nanoTime() - start, sent,
+                HEADER_SIZE + (route == null ? 0 : size(route)), route == null);
+        return route;
+    }
+
+    @Override
+    public void addRoute(String routeID, List<String> edgeIDs) throws Exception {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            this.backend.addRoute(routeID, edgeIDs);
+            failed = false;
+        } finally {
+            this.routeAdd.record(System.nanoTime() - start, addRouteSize(routeID, edgeIDs), STATUS_SIZE, failed);
+        }
+    }
+
+    @Override
+    public void addVehicle(String vehicleID, String typeID, String routeID, int departTime, byte laneIndex)
+            throws Exception {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            this.backend.addVehicle(vehicleID, typeID, routeID, departTime, laneIndex);
+            failed = false;
+        } finally {
+            this.vehicleAdd.record(System.nanoTime() - start, addVehicleSize(vehicleID, typeID, routeID),
+                    STATUS_SIZE, failed);
+        }
+    }
+
+    @Override
+    public void setVehicleMaxSpeed(String vehicleID, double speed) throws Exception {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            this.backend.setVehicleMaxSpeed(vehicleID, speed);
+            failed = false;
+        } finally {
+            this.vehicleSetMaxSpeed.record(System.nanoTime() - start, header(vehicleID) + DOUBLE_SIZE,
+                    STATUS_SIZE, failed);
+        }
+    }
+
+    @Override
+    public void setVehicleMinGap(String vehicleID, double minGap) throws Exception {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            this.backend.setVehicleMinGap(vehicleID, minGap);
+            failed = false;
+        } finally {
+            this.vehicleSetMinGap.record(System.nanoTime() - start, header(vehicleID) + DOUBLE_SIZE,
+                    STATUS_SIZE, failed);
+        }
+    }
+
+    @Override
+    public void dispatch(PlanMessage message) {
+        long start = System.nanoTime();
+        this.backend.dispatch(message);
+        long nanos = System.nanoTime() - start;
+
+        if (message instanceof SetMaxSpeedPlanMessage) {
+            SetMaxSpeedPlanMessage m = (SetMaxSpeedPlanMessage) message;
+            this.vehicleSetMaxSpeed.record(nanos, header(m.sumoID) + DOUBLE_SIZE, STATUS_SIZE, false);
+        } else if (message instanceof SetMinGapPlanMessage) {
+            SetMinGapPlanMessage m = (SetMinGapPlanMessage) message;
+            this.vehicleSetMinGap.record(nanos, header(m.sumoID) + DOUBLE_SIZE, STATUS_SIZE, false);
+        } else if (message instanceof EnterWorldPlanMessage) {
+            EnterWorldPlanMessage m = (EnterWorldPlanMessage) message;
+            this.vehicleAdd.record(nanos, addVehicleSize(m.sumoID, m.typeID, m.routeID), STATUS_SIZE, false);
+        } else if (message instanceof CreateRoutePlanMessage) {
+            CreateRoutePlanMessage m = (CreateRoutePlanMessage) message;
+            this.routeAdd.record(nanos, addRouteSize(m.routeID, m.plannedRoute.edges), STATUS_SIZE, false);
+        } else {
+            commandOf(message).record(nanos, 0, 0, false);
+        }
+    }
+
+    @Override
+    public List<PlanMessage> flush() {
+        long start = System.nanoTime();
+        List<PlanMessage> failed = this.backend.flush();
+        this.simulationFlush.record(System.nanoTime() - start, 0, 0, false);
+        for (PlanMessage message : failed) {
+            commandOf(message).recordErrors(1);
+        }
+        return failed;
+    }
+
+    @Override
+    public void close() {
+        this.backend.close();
+    }
+
+    @Override
+    public boolean isClosed() {
+        return this.backend.isClosed();
+    }
+
+    /**
+     * @return Command the action of a message is recorded under
+     */
+    private CommandMetrics.Command commandOf(PlanMessage message) {
+        if (message instanceof SetMaxSpeedPlanMessage) return this.vehicleSetMaxSpeed;
+        if (message instanceof SetMinGapPlanMessage) return this.vehicleSetMinGap;
+        if (message instanceof EnterWorldPlanMessage) return this.vehicleAdd;
+        if (message instanceof CreateRoutePlanMessage) return this.routeAdd;
+        return this.metrics.get("Dispatch/" + message.getClass().getSimpleName());
+    }
+
+    private static int size(String s) {
+        return 4 + (s == null ? 0 : s.length());
+    }
+
+    private static int size(Iterable<String> strings) {
+        int size = 1 + 4;
+        for (String s : strings) size += size(s);
+        return size;
+    }
+
+    private static int header(String objectID) {
+        return HEADER_SIZE + size(objectID);
+    }
+
+    private static int addRouteSize(String routeID, Iterable<String> edgeIDs) {
+        return header(routeID) + size(edgeIDs);
+    }
+
+    /**
+     * Vehicle.add is a compound of 14 values. Besides the IDs, these are short strings that are estimated at a few
+     * bytes each
+     */
+    private static int addVehicleSize(String vehicleID, String typeID, String routeID) {
+        return header(vehicleID) + INT_SIZE + 1 + size(routeID) + 1 + size(typeID) + 12 * (1 + size("") + 2);
+    }
+
+    /**
+     * Passes everything reported by the backend on to the listener of the environment, adding the estimated size of
+     * the subscription results to the volume of the current time step
+     */
+    private class CountingListener implements SumoBackendListener {
+        private final SumoBackendListener listener;
+
+        private CountingListener(SumoBackendListener listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public void vehiclesDeparted(List<String> vehicleIDs) {
+            stepBytes += size(vehicleIDs);
+            this.listener.vehiclesDeparted(vehicleIDs);
+        }
+
+        @Override
+        public void vehiclesArrived(List<String> vehicleIDs) {
+            stepBytes += size(vehicleIDs);
+            this.listener.vehiclesArrived(vehicleIDs);
+        }
+
+        @Override
+        public void vehiclesTeleported(int count) {
+            stepBytes += INT_SIZE;
+            this.listener.vehiclesTeleported(count);
+        }
+
+        @Override
+        public void vehicleSpeed(String vehicleID, double speed) {
+            stepBytes += header(vehicleID) + DOUBLE_SIZE;
+            this.listener.vehicleSpeed(vehicleID, speed);
+        }
+
+        @Override
+        public void vehicleLane(String vehicleID, String laneID) {
+            stepBytes += header(vehicleID) + 1 + size(laneID);
+            this.listener.vehicleLane(vehicleID, laneID);
+        }
+
+        @Override
+        public void vehiclePosition(String vehicleID, double x, double y) {
+            stepBytes += header(vehicleID) + 1 + 16;
+            this.listener.vehiclePosition(vehicleID, x, y);
+        }
+
+        @Override
+        public void vehicleCo2Emission(String vehicleID, double co2Emission) {
+            stepBytes += header(vehicleID) + DOUBLE_SIZE;
+            this.listener.vehicleCo2Emission(vehicleID, co2Emission);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package sumo;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The static attributes of a lane, as read in bulk when the {@link NetworkCache} is filled
+ */
+public class LaneAttributes {
+
+    private final double maxSpeed;
+    private final double length;
+    private final List<String> allowed;
+    private final List<String> disallowed;
+
+    /**
+     * @param maxSpeed      Maximum speed on the lane in m/s, or NaN if unknown
+     * @param length        Length of the lane in meters, or NaN if unknown
+     * @param allowed       Vehicle classes allowed on the lane. Empty if all classes not disallowed are allowed
+     * @param disallowed    Vehicle classes not allowed on the lane. Only used if no allowed classes are given
+     */
+    public LaneAttributes(double maxSpeed, double length, List<String> allowed, List<String> disallowed) {
+        this.maxSpeed = maxSpeed;
+        this.length = length;
+        this.allowed = allowed;
+        this.disallowed = disallowed;
+    }
+
+    /**
+     * Request the attributes of a single lane from a backend
+     *
+     * @param backend   Started backend running the simulation
+     * @param laneID    ID of the lane
+     * @return Attributes of the lane
+     */
+    static LaneAttributes request(SumoBackend backend, String laneID) {
+        List<String> allowed = backend.getLaneAllowed(laneID);
+        return new LaneAttributes(backend.getLaneMaxSpeed(laneID), backend.getLaneLength(laneID),
+                allowed == null ? Collections.emptyList() : allowed, Collections.emptyList());
+    }
+
+    public double getMaxSpeed() {
+        return maxSpeed;
+    }
+
+    public double getLength() {
+        return length;
+    }
+
+    public List<String> getAllowed() {
+        return allowed;
+    }
+
+    public List<String> getDisallowed() {
+        return disallowed;
+    }
+}
@@ -0,0 +1,101 @@
+package sumo;
+
+import java.util.Arrays;
+
+/**
+ * A histogram of durations in nanoseconds with logarithmic buckets. Each power of two is split into
+ * {@value #SUB_BUCKETS} buckets, so percentiles are reported with a relative error of at most 12.5%, using a fixed
+ * amount of memory regardless of the number of recorded values.
+ * <p>
+ * This class is not thread safe
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int LINEAR_LIMIT = SUB_BUCKETS << 1;
+    private static final int N_BUCKETS = LINEAR_LIMIT + (63 - SUB_BUCKET_BITS - 1) * SUB_BUCKETS;
+
+    private final long[] buckets = new long[N_BUCKETS];
+    private long count = 0;
+    private long sum = 0;
+    private long max = 0;
+
+    /**
+     * Record a single duration. Negative durations are recorded as zero
+     *
+     * @param nanos Duration in nanoseconds
+     */
+    public void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        this.buckets[bucketIndex(nanos)]++;
+        this.count++;
+        this.sum += nanos;
+        if (nanos > this.max) this.max = nanos;
+    }
+
+    /**
+     * @return Number of recorded durations
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return Sum of all recorded durations in nanoseconds
+     */
+    public long getSum() {
+        return sum;
+    }
+
+    /**
+     * @return Largest recorded duration in nanoseconds, or 0 if nothing was recorded
+     */
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * Estimate a percentile of the recorded durations. The upper bound of the bucket containing the percentile is
+     * returned, but never more than the largest recorded duration
+     *
+     * @param percentile Percentile in the range [0, 100]
+     * @return Estimated duration in nanoseconds, or 0 if nothing was recorded
+     */
+    public long getPercentile(double percentile) {
+        if (this.count == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * this.count));
+        long seen = 0;
+        for (int i = 0; i < N_BUCKETS; i++) {
+            seen += this.buckets[i];
+            if (seen >= rank) {
+                return Math.min(bucketUpperBound(i), this.max);
+            }
+        }
+        return this.max;
+    }
+
+    /**
+     * Remove all recorded durations
+     */
+    public void reset() {
+        Arrays.fill(this.buckets, 0);
+        this.count = 0;
+        this.sum = 0;
+        this.max = 0;
+    }
+
+    private static int bucketIndex(long value) {
+        if (value < LINEAR_LIMIT) return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return LINEAR_LIMIT + (exponent - SUB_BUCKET_BITS - 1) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long bucketUpperBound(int index) {
+        if (index < LINEAR_LIMIT) return index;
+        int exponent = (index - LINEAR_LIMIT) / SUB_BUCKETS + SUB_BUCKET_BITS + 1;
+        int subBucket = (index - LINEAR_LIMIT) % SUB_BUCKETS;
+        return ((long) (SUB_BUCKETS + subBucket + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+}
@@ -0,0 +1,301 @@
+package sumo;
+
+import agent.plan.PlanMessage;
+import de.tudresden.sumo.config.Constants;
+import org.eclipse.sumo.libsumo.Edge;
+import org.eclipse.sumo.libsumo.IntVector;
+import org.eclipse.sumo.libsumo.Lane;
+import org.eclipse.sumo.libsumo.Route;
+import org.eclipse.sumo.libsumo.Simulation;
+import org.eclipse.sumo.libsumo.StringVector;
+import org.eclipse.sumo.libsumo.SubscriptionResults;
+import org.eclipse.sumo.libsumo.TraCIDouble;
+import org.eclipse.sumo.libsumo.TraCIPosition;
+import org.eclipse.sumo.libsumo.TraCIResult;
+import org.eclipse.sumo.libsumo.TraCIResults;
+import org.eclipse.sumo.libsumo.TraCIStage;
+import org.eclipse.sumo.libsumo.TraCIString;
+import org.eclipse.sumo.libsumo.Vehicle;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs SUMO inside this JVM through libsumo, so no request has to be serialized and sent to another process.
+ * <p>
+ * Requires the libsumo jar of the SUMO installation on the class path, and its native library (libsumojni) on the
+ * library path, e.g. by starting the JVM with -Djava.library.path=$SUMO_HOME/bin. As in the TraCI backend, vehicles
+ * are subscribed to as soon as they enter the environment, and the results of all subscriptions are read with a single
+ * call after every time step. As every call is a plain function call, actions are performed as soon as they are
+ * dispatched.
+ * <p>
+ * libsumo only supports a single simulation per process.
+ */
+public class LibsumoBackend implements SumoBackend {
+    private static final Logger LOG = Logger.getLogger(LibsumoBackend.class.getName());
+
+    private static final String NATIVE_LIBRARY = "libsumojni";
+
+    /**
+     * Vehicle variables every vehicle is subscribed to as soon as it enters the environment. libsumo uses the TraCI
+     * variable IDs, so the constants of TraaS apply
+     **/
+    private static final int[] VEHICLE_SUBSCRIPTION_VARIABLES = {
+            Constants.VAR_SPEED,
+            Constants.VAR_LANE_ID,
+            Constants.VAR_POSITION,
+            Constants.VAR_CO2EMISSION
+    };
+
+    /** Created once the native library is loaded **/
+    private IntVector vehicleSubscriptionVariables;
+
+    private SumoBackendListener listener;
+    private boolean running = false;
+    private List<PlanMessage> failedJobs = new ArrayList<>();
+
+    @Override
+    public void start(String sumoBinary, String configFile, Map<String, String> options, SumoBackendListener listener)
+            throws Exception {
+        this.listener = listener;
+        System.loadLibrary(NATIVE_LIBRARY);
+        this.vehicleSubscriptionVariables = new IntVector();
+        for (int variable : VEHICLE_SUBSCRIPTION_VARIABLES) this.vehicleSubscriptionVariables.add(variable);
+
+        List<String> command = new ArrayList<>();
+        command.add(sumoBinary);
+        command.add("-c");
+        command.add(configFile);
+        options.forEach((option, value) -> {
+            command.add("--" + option);
+            command.add(value);
+        });
+
+        LOG.info("Starting SUMO in-process with command " + String.join(" ", command));
+        Simulation.start(new StringVector(command.toArray(new String[0])));
+        this.running = true;
+    }
+
+    @Override
+    public void step() throws Exception {
+        Simulation.step();
+
+        List<String> departed = new ArrayList<>(Simulation.getDepartedIDList());
+        List<String> arrived = new ArrayList<>(Simulation.getArrivedIDList());
+        int teleported = Simulation.getStartingTeleportNumber();
+
+        if (!departed.isEmpty()) this.listener.vehiclesDeparted(departed);
+        if (!arrived.isEmpty()) this.listener.vehiclesArrived(arrived);
+        if (teleported > 0) this.listener.vehiclesTeleported(teleported);
+
+        // SUMO drops the subscriptions of arrived vehicles, so only vehicles in the environment are reported
+        SubscriptionResults results = Vehicle.getAllSubscriptionResults();
+        for (Map.Entry<String, TraCIResults> vehicle : results.entrySet()) {
+            for (Map.Entry<Integer, TraCIResult> variable : vehicle.getValue().entrySet()) {
+                updateVehicleVariable(vehicle.getKey(), variable.getKey(), variable.getValue());
+            }
+        }
+    }
+
+    private void updateVehicleVariable(String vehicleID, int variable, TraCIResult result) {
+        if (variable == Constants.VAR_SPEED) {
+            this.listener.vehicleSpeed(vehicleID, TraCIDouble.cast(result).getValue());
+        } else if (variable == Constants.VAR_LANE_ID) {
+            this.listener.vehicleLane(vehicleID, TraCIString.cast(result).getValue());
+        } else if (variable == Constants.VAR_POSITION) {
+            TraCIPosition position = TraCIPosition.cast(result);
+            this.listener.vehiclePosition(vehicleID, position.getX(), position.getY());
+        } else if (variable == Constants.VAR_CO2EMISSION) {
+            this.listener.vehicleCo2Emission(vehicleID, TraCIDouble.cast(result).getValue());
+        }
+    }
+
+    @Override
+    public int getCurrentTime() {
+        return (int) Math.round(Simulation.getTime() * 1000);
+    }
+
+    /**
+     * Subscribe to the variables of a vehicle, so they are reported after every time step until it arrives
+     *
+     * @param vehicleID SUMO ID of the vehicle to subscribe to
+     */
+    @Override
+    public void subscribeVehicle(String vehicleID) {
+        try {
+            Vehicle.subscribe(vehicleID, this.vehicleSubscriptionVariables);
+        } catch (RuntimeException e) {
+            LOG.log(Level.WARNING, "Could not subscribe to variables of vehicle " + vehicleID, e);
+        }
+    }
+
+    @Override
+    public List<String> getEdgeIDs() {
+        try {
+            return new ArrayList<>(Edge.getIDList());
+        } catch (RuntimeException e) {
+            LOG.log(Level.WARNING, "Could not obtain edges", e);
+            return Collections.emptyList();
+        }
+    }
+
+    @Override
+    public int getEdgeLaneCount(String edgeID) {
+        try {
+            return Edge.getLaneNumber(edgeID);
+        } catch (RuntimeException e) {
+            LOG.log(Level.WARNING, "Could not obtain number of lanes of edge " + edgeID, e);
+            return -1;
+        }
+    }
+
+    @Override
+    public List<String> getLaneIDs() {
+        try {
+            return new ArrayList<>(Lane.getIDList());
+        } catch (RuntimeException e) {
+            LOG.log(Level.WARNING, "Could not obtain lanes", e);
+            return Collections.emptyList();
+        }
+    }
+
+    @Override
+    public double getLaneMaxSpeed(String laneID) {
+        try {
+            return Lane.getMaxSpeed(laneID);
+        } catch (RuntimeException e) {
+            LOG.log(Level.WARNING, "Could not obtain maximum speed of lane " + laneID, e);
+            return Double.NaN;
+        }
+    }
+
+    @Override
+    public double getLaneLength(String laneID) {
+        try {
+            return Lane.getLength(laneID);
+        } catch (RuntimeException e) {
+            LOG.log(Level.WARNING, "Could not obtain length of lane " + laneID, e);
+            return Double.NaN;
+        }
+    }
+
+    @Override
+    public List<String> getLaneAllowed(String laneID) {
+        try {
+            return new ArrayList<>(Lane.getAllowed(laneID));
+        } catch (RuntimeException e) {
+            LOG.log(Level.WARNING, "Could not obtain allowed vehicle classes of lane " + laneID, e);
+            return null;
+        }
+    }
+
+    @Override
+    public boolean setLaneMaxSpeed(String laneID, double maxSpeed) {
+        try {
+            Lane.setMaxSpeed(laneID, maxSpeed);
+            return true;
+        } catch (RuntimeException e) {
+            LOG.log(Level.WARNING, "Could not set maximum speed of lane " + laneID, e);
+            return false;
+        }
+    }
+
+    @Override
+    public List<String> getRouteIDs() {
+        try {
+            return new ArrayList<>(Route.getIDList());
+        } catch (RuntimeException e) {
+            LOG.log(Level.WARNING, "Could not obtain routes", e);
+            return Collections.emptyList();
+        }
+    }
+
+    @Override
+    public List<String> getRouteEdges(String routeID) {
+        try {
+            return new ArrayList<>(Route.getEdges(routeID));
+        } catch (RuntimeException e) {
+            LOG.log(Level.WARNING, "Could not obtain edges of route " + routeID, e);
+            return Collections.emptyList();
+        }
+    }
+
+    @Override
+    public List<String> findRoute(String sourceEdgeID, String targetEdgeID, String vehicleType) {
+        try {
+            TraCIStage route = Simulation.findRoute(sourceEdgeID, targetEdgeID, vehicleType);
+            if (route.getEdges().isEmpty()) {
+                LOG.finer("Route from " + sourceEdgeID + " to " + targetEdgeID + " has no edges");
+                return null;
+            }
+            return new ArrayList<>(route.getEdges());
+        } catch (RuntimeException e) {
+            LOG.log(Level.WARNING,
+                    "SUMO returned error when requesting route from edge " + sourceEdgeID + " to " + targetEdgeID,
+                    e);
+            return null;
+        }
+    }
+
+    @Override
+    public void addRoute(String routeID, List<String> edgeIDs) {
+        Route.add(routeID, new StringVector(edgeIDs.toArray(new String[0])));
+    }
+
+    @Override
+    public void addVehicle(String vehicleID, String typeID, String routeID, int departTime, byte laneIndex) {
+        Vehicle.add(vehicleID, routeID, typeID, Double.toString(departTime / 1000.0),
+                Byte.toString(laneIndex), "0", "2");
+    }
+
+    @Override
+    public void setVehicleMaxSpeed(String vehicleID, double speed) {
+        Vehicle.setMaxSpeed(vehicleID, speed);
+    }
+
+    @Override
+    public void setVehicleMinGap(String vehicleID, double minGap) {
+        Vehicle.setMinGap(vehicleID, minGap);
+    }
+
+    /**
+     * Actions are performed immediately, as there is no round trip to save by deferring them
+     */
+    @Override
+    public void dispatch(PlanMessage message) {
+        try {
+            message.applyTo(this);
+        } catch (Exception e) {
+            this.failedJobs.add(message);
+            LOG.log(Level.WARNING, "Could not perform job " + message.toJson(), e);
+        }
+    }
+
+    @Override
+    public List<PlanMessage> flush() {
+        if (this.failedJobs.isEmpty()) return Collections.emptyList();
+        List<PlanMessage> failed = this.failedJobs;
+        this.failedJobs = new ArrayList<>();
+        return failed;
+    }
+
+    @Override
+    public void close() {
+        if (this.running) {
+            LOG.info("Closing in-process SUMO simulation");
+            Simulation.close();
+            this.running = false;
+        } else {
+            LOG.info("Tried to close in-process SUMO simulation, but simulation is already closed");
+        }
+    }
+
+    @Override
+    public boolean isClosed() {
+        return !this.running;
+    }
+}
@@ -0,0 +1,318 @@
+package sumo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Logger;
+
+/**
+ * Caches static attributes of the road network, so agents can look them up without a TraCI round trip.
+ * <p>
+ * The cache is filled in bulk right after SUMO has started, and holds the lane count of every edge, and the maximum
+ * speed, length and allowed vehicle classes of every lane, in primitive arrays indexed by interned IDs. These
+ * attributes do not change during a run, unless something changes them on purpose. Whoever does so, e.g. a
+ * variable speed sign or a Lane.setMaxSpeed action, should invalidate the affected lanes, after which their
+ * attributes are requested from SUMO again at the start of the next tick.
+ * <p>
+ * Lookups never talk to SUMO and never lock. The lane attributes are published as an immutable snapshot, which is
+ * replaced as a whole when lanes are refreshed or updated. Refreshing only happens in
+ * {@link #refreshStaleLanes()}, which is called from the tick pre-hook, so TraCI is only ever used from the
+ * simulation thread.
+ */
+public class NetworkCache {
+    private static final Logger LOG = Logger.getLogger(NetworkCache.class.getName());
+
+    /**
+     * Mask of a lane that allows all vehicle classes. SUMO reports an empty list of allowed classes for such lanes
+     */
+    private static final long ALL_CLASSES = -1L;
+
+    /**
+     * Name SUMO uses for the set of all vehicle classes in the allow and disallow attributes of a lane
+     */
+    private static final String ALL_CLASSES_NAME = "all";
+
+    private final SumoBackend backend;
+
+    private final IdDictionary edges;
+    private final int[] edgeLaneCount;
+
+    private final IdDictionary lanes;
+
+    /** Only modified while holding the lock of this cache **/
+    private final IdDictionary vehicleClasses = new IdDictionary(Long.SIZE);
+
+    private volatile LaneSnapshot snapshot;
+
+    private final Queue<Integer> staleLanes = new ConcurrentLinkedQueue<>();
+    private volatile boolean allLanesStale = false;
+
+    private NetworkCache(SumoBackend backend, List<String> edgeIDs, List<String> laneIDs) {
+        this.backend = backend;
+
+        this.edges = new IdDictionary(edgeIDs.size());
+        edgeIDs.forEach(this.edges::intern);
+        this.edgeLaneCount = new int[this.edges.size()];
+
+        this.lanes = new IdDictionary(laneIDs.size());
+        laneIDs.forEach(this.lanes::intern);
+    }
+
+    /**
+     * Fill a new cache with the attributes of all edges and lanes currently known to SUMO
+     *
+     * @param backend   Started backend running the simulation
+     * @return Filled network cache
+     */
+    static NetworkCache load(SumoBackend backend) {
+        long start = System.currentTimeMillis();
+        List<String> laneIDs = backend.getLaneIDs();
+        NetworkCache cache = new NetworkCache(backend, backend.getEdgeIDs(), laneIDs);
+
+        cache.countEdgeLanes();
+
+        Map<String, LaneAttributes> attributes = backend.getLaneAttributes(laneIDs);
+        int laneCount = cache.lanes.size();
+        LaneSnapshot lanes = new LaneSnapshot(new double[laneCount], new double[laneCount], new long[laneCount],
+                new long[laneCount], Collections.emptyMap());
+        synchronized (cache) {
+            for (int i = 0; i < laneCount; i++) {
+                LaneAttributes lane = attributes.get(cache.lanes.get(i));
+                cache.setLane(lanes, i, lane == null ? LaneAttributes.request(backend, cache.lanes.get(i)) : lane);
+            }
+            cache.snapshot = lanes.withVehicleClasses(cache.vehicleClassIndices());
+        }
+
+        LOG.info(String.format("Cached attributes of %d edges and %d lanes in %d milliseconds",
+                cache.edges.size(), cache.lanes.size(), System.currentTimeMillis() - start));
+
+        return cache;
+    }
+
+    /**
+     * @return Dictionary of the IDs of all edges in the network
+     */
+    public IdDictionary getEdges() {
+        return edges;
+    }
+
+    /**
+     * @return Dictionary of the IDs of all lanes in the network
+     */
+    public IdDictionary getLanes() {
+        return lanes;
+    }
+
+    /**
+     * Get the number of lanes on an edge
+     *
+     * @param edgeID ID of the edge
+     * @return Number of lanes on the edge, or -1 if the edge is not known
+     */
+    public int getEdgeLaneCount(String edgeID) {
+        int edge = this.edges.indexOf(edgeID);
+        return edge == IdDictionary.UNKNOWN ? -1 : this.edgeLaneCount[edge];
+    }
+
+    /**
+     * Get the maximum speed of a lane
+     *
+     * @param laneID ID of the lane
+     * @return Maximum speed on the lane in m/s, or NaN if the lane is not known
+     */
+    public double getLaneMaxSpeed(String laneID) {
+        int lane = this.lanes.indexOf(laneID);
+        return lane == IdDictionary.UNKNOWN ? Double.NaN : this.snapshot.maxSpeed[lane];
+    }
+
+    /**
+     * Get the length of a lane
+     *
+     * @param laneID ID of the lane
+     * @return Length of the lane in meters, or NaN if the lane is not known
+     */
+    public double getLaneLength(String laneID) {
+        int lane = this.lanes.indexOf(laneID);
+        return lane == IdDictionary.UNKNOWN ? Double.NaN : this.snapshot.length[lane];
+    }
+
+    /**
+     * Check if a vehicle class is allowed to drive on a lane
+     *
+     * @param laneID        ID of the lane
+     * @param vehicleClass  SUMO vehicle class, e.g. "passenger"
+     * @return True iff the lane is known and the vehicle class is allowed on it
+     */
+    public boolean isAllowed(String laneID, String vehicleClass) {
+        int lane = this.lanes.indexOf(laneID);
+        if (lane == IdDictionary.UNKNOWN) return false;
+
+        LaneSnapshot lanes = this.snapshot;
+        Integer vClass = lanes.vehicleClasses.get(vehicleClass);
+        long bit = vClass == null ? 0 : 1L << vClass;
+        if (lanes.allowed[lane] == ALL_CLASSES) {
+            return (lanes.disallowed[lane] & bit) == 0;
+        }
+        return (lanes.allowed[lane] & bit) != 0;
+    }
+
+    /**
+     * Mark the attributes of a lane as outdated, so they are requested from SUMO again at the start of the next tick.
+     *
+     * @param laneID ID of the lane that was changed
+     */
+    public void invalidateLane(String laneID) {
+        int lane = this.lanes.indexOf(laneID);
+        if (lane != IdDictionary.UNKNOWN) {
+            this.staleLanes.add(lane);
+        }
+    }
+
+    /**
+     * Mark the attributes of all lanes as outdated. This requests the attributes of every lane from SUMO at the
+     * start of the next tick, so should only be used if it is not known which lanes were changed
+     */
+    public void invalidateAll() {
+        this.allLanesStale = true;
+    }
+
+    /**
+     * Request the attributes of all lanes invalidated since the last call from SUMO, and publish them to the agents.
+     * Should only be called from the tick pre-hook, before agents start deliberating
+     */
+    synchronized void refreshStaleLanes() {
+        if (!this.allLanesStale && this.staleLanes.isEmpty()) return;
+
+        List<Integer> refresh = new ArrayList<>();
+        if (this.allLanesStale) {
+            this.allLanesStale = false;
+            this.staleLanes.clear();
+            for (int i = 0; i < this.lanes.size(); i++) refresh.add(i);
+        } else {
+            Integer lane;
+            while ((lane = this.staleLanes.poll()) != null) refresh.add(lane);
+        }
+
+        LaneSnapshot lanes = this.snapshot.copy();
+        for (int lane : refresh) {
+            setLane(lanes, lane, LaneAttributes.request(this.backend, this.lanes.get(lane)));
+        }
+        this.snapshot = lanes.withVehicleClasses(vehicleClassIndices());
+        LOG.fine("Refreshed attributes of " + refresh.size() + " lanes");
+    }
+
+    /**
+     * Update the cached maximum speed of a lane after it has been changed in SUMO
+     *
+     * @param laneID    ID of the lane that was changed
+     * @param maxSpeed  New maximum speed of the lane
+     */
+    synchronized void updateLaneMaxSpeed(String laneID, double maxSpeed) {
+        int lane = this.lanes.indexOf(laneID);
+        if (lane != IdDictionary.UNKNOWN) {
+            LaneSnapshot lanes = this.snapshot.copy();
+            lanes.maxSpeed[lane] = maxSpeed;
+            this.snapshot = lanes;
+        }
+    }
+
+    /**
+     * Count the lanes of every edge from the lane IDs, which SUMO composes of the edge ID and the index of the lane
+     * on the edge. Edges whose lanes do not follow this scheme are requested from SUMO
+     */
+    private void countEdgeLanes() {
+        for (int i = 0; i < this.lanes.size(); i++) {
+            String laneID = this.lanes.get(i);
+            int separator = laneID.lastIndexOf('_');
+            int edge = separator < 0 ? IdDictionary.UNKNOWN : this.edges.indexOf(laneID.substring(0, separator));
+            if (edge != IdDictionary.UNKNOWN) {
+                this.edgeLaneCount[edge]++;
+            }
+        }
+
+        for (int i = 0; i < this.edges.size(); i++) {
+            if (this.edgeLaneCount[i] == 0) {
+                this.edgeLaneCount[i] = Math.max(0, this.backend.getEdgeLaneCount(this.edges.get(i)));
+            }
+        }
+    }
+
+    private void setLane(LaneSnapshot lanes, int lane, LaneAttributes attributes) {
+        double maxSpeed = attributes.getMaxSpeed();
+        lanes.maxSpeed[lane] = Double.isNaN(maxSpeed) ? Double.POSITIVE_INFINITY : maxSpeed;
+        lanes.length[lane] = attributes.getLength();
+
+        List<String> allowed = attributes.getAllowed();
+        List<String> disallowed = attributes.getDisallowed();
+        if (allowed.isEmpty() && disallowed.contains(ALL_CLASSES_NAME)) {
+            lanes.allowed[lane] = 0;
+            lanes.disallowed[lane] = 0;
+        } else if (allowed.isEmpty() || allowed.contains(ALL_CLASSES_NAME)) {
+            lanes.allowed[lane] = ALL_CLASSES;
+            lanes.disallowed[lane] = classesMask(disallowed, 0);
+        } else {
+            lanes.allowed[lane] = classesMask(allowed, ALL_CLASSES);
+            lanes.disallowed[lane] = 0;
+        }
+    }
+
+    /**
+     * @param overflow Mask to use if there are too many vehicle classes to cache
+     */
+    private long classesMask(List<String> classes, long overflow) {
+        long mask = 0;
+        for (String vClass : classes) {
+            int index = this.vehicleClasses.intern(vClass);
+            if (index < Long.SIZE) {
+                mask |= 1L << index;
+            } else {
+                LOG.warning("Too many vehicle classes to cache. Treating lane as open to all classes");
+                return overflow;
+            }
+        }
+        return mask;
+    }
+
+    private Map<String, Integer> vehicleClassIndices() {
+        Map<String, Integer> indices = new HashMap<>(this.vehicleClasses.size() * 4 / 3 + 1);
+        for (int i = 0; i < Math.min(Long.SIZE, this.vehicleClasses.size()); i++) {
+            indices.put(this.vehicleClasses.get(i), i);
+        }
+        return Collections.unmodifiableMap(indices);
+    }
+
+    /**
+     * Attributes of all lanes at one point in time. A snapshot is never modified once it is published
+     */
+    private static final class LaneSnapshot {
+        private final double[] maxSpeed;
+        private final double[] length;
+        private final long[] allowed;
+        private final long[] disallowed;
+        private final Map<String, Integer> vehicleClasses;
+
+        private LaneSnapshot(double[] maxSpeed, double[] length, long[] allowed, long[] disallowed,
+                             Map<String, Integer> vehicleClasses) {
+            this.maxSpeed = maxSpeed;
+            this.length = length;
+            this.allowed = allowed;
+            this.disallowed = disallowed;
+            this.vehicleClasses = vehicleClasses;
+        }
+
+        private LaneSnapshot copy() {
+            return new LaneSnapshot(Arrays.copyOf(this.maxSpeed, this.maxSpeed.length),
+                    Arrays.copyOf(this.length, this.length.length), Arrays.copyOf(this.allowed, this.allowed.length),
+                    Arrays.copyOf(this.disallowed, this.disallowed.length), this.vehicleClasses);
+        }
+
+        private LaneSnapshot withVehicleClasses(Map<String, Integer> vehicleClasses) {
+            return new LaneSnapshot(this.maxSpeed, this.length, this.allowed, this.disallowed, vehicleClasses);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package sumo;
+
+import com.sun.istack.Nullable;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the static lane attributes of a road network from the network files of a SUMO configuration, so they do not
+ * have to be requested from SUMO lane by lane. Files are read with a streaming parser, so large networks do not have
+ * to be held in memory as a DOM. Lanes of internal edges (junction interiors) are included, as vehicles drive on them.
+ */
+class NetworkFileReader {
+
+    private NetworkFileReader() { }
+
+    /**
+     * Read the attributes of all lanes in the network of a SUMO configuration
+     *
+     * @param configFile    SUMO configuration file
+     * @param netFile       Network file to use instead of the one in the configuration file. May be null
+     * @return Attributes by lane ID
+     * @throws IOException if no network file is configured, or it cannot be read
+     */
+    static Map<String, LaneAttributes> readLaneAttributes(String configFile, @Nullable String netFile)
+            throws IOException, XMLStreamException {
+        List<File> netFiles = netFile != null ?
+                Collections.singletonList(new File(netFile)) : getNetworkFiles(new File(configFile));
+        if (netFiles.isEmpty()) {
+            throw new IOException("No network file specified in " + configFile);
+        }
+
+        Map<String, LaneAttributes> lanes = new HashMap<>();
+        for (File file : netFiles) {
+            readLanes(file, lanes);
+        }
+        return lanes;
+    }
+
+    private static List<File> getNetworkFiles(File config) throws IOException, XMLStreamException {
+        File baseDir = config.getAbsoluteFile().getParentFile();
+        List<File> netFiles = new ArrayList<>();
+        try (InputStream in = new FileInputStream(config)) {
+            XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(in);
+            while (reader.hasNext()) {
+                if (reader.next() != XMLStreamConstants.START_ELEMENT) continue;
+                String value = reader.getAttributeValue(null, "value");
+                if (value != null && "net-file".equals(reader.getLocalName())) {
+                    for (String name : value.split(",")) {
+                        File file = new File(name.trim());
+                        netFiles.add(file.isAbsolute() ? file : new File(baseDir, name.trim()));
+                    }
+                }
+            }
+            reader.close();
+        }
+        return netFiles;
+    }
+
+    private static void readLanes(File file, Map<String, LaneAttributes> lanes) throws IOException, XMLStreamException {
+        try (InputStream in = new FileInputStream(file)) {
+            XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(in);
+            while (reader.hasNext()) {
+                if (reader.next() != XMLStreamConstants.START_ELEMENT || !"lane".equals(reader.getLocalName())) {
+                    continue;
+                }
+                String id = reader.getAttributeValue(null, "id");
+                if (id == null) continue;
+                lanes.put(id, new LaneAttributes(
+                        parseDouble(reader.getAttributeValue(null, "speed")),
+                        parseDouble(reader.getAttributeValue(null, "length")),
+                        parseClasses(reader.getAttributeValue(null, "allow")),
+                        parseClasses(reader.getAttributeValue(null, "disallow"))));
+            }
+            reader.close();
+        }
+    }
+
+    private static double parseDouble(String value) {
+        if (value == null) return Double.NaN;
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    private static List<String> parseClasses(String value) {
+        if (value == null || value.trim().isEmpty()) return Collections.emptyList();
+        return Arrays.asList(value.trim().split("\\s+"));
+    }
+}
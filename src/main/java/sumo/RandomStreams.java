@@ -0,0 +1,47 @@
+package sumo;
+
+import java.util.SplittableRandom;
+
+/**
+ * Derives an independent stream of random numbers for every agent from a single seed.
+ * <p>
+ * A single Random shared by all agents is a point of contention when agents deliberate on multiple threads, and
+ * makes the outcome of a seeded run depend on the order in which threads happen to draw from it. The stream of an
+ * agent only depends on the seed and the index of the agent, so random draws never take a shared lock, and the same
+ * seed gives the same results regardless of the number of threads.
+ */
+public class RandomStreams {
+
+    private final long seed;
+
+    /**
+     * @param seed Seed from which all agent streams are derived
+     */
+    public RandomStreams(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Create the random stream of an agent. Calling this method twice for the same agent index returns two streams
+     * producing the same sequence, so each agent should create its stream only once.
+     *
+     * @param agentIndex Index of the agent
+     * @return Random stream of the agent. Not thread safe, so it should only be used by the agent itself
+     */
+    public SplittableRandom forAgent(int agentIndex) {
+        return new SplittableRandom(mix64(this.seed + 0x9E3779B97F4A7C15L * (agentIndex + 1L)));
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Stafford's variant 13 of the MurmurHash3 finalizer, so seeds of neighbouring agents are far apart
+     */
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,76 @@
+package sumo;
+
+/**
+ * Average of the last values added, kept in a fixed-size ring buffer of primitives with a running sum, so adding a
+ * value and reading the average take constant time and do not allocate.
+ * <p>
+ * The running sum is recomputed from the buffer each time the buffer wraps around, so rounding errors of the
+ * subtractions do not accumulate. Not thread safe.
+ */
+public class RollingAverage {
+
+    private final double[] values;
+    private int next = 0;
+    private int size = 0;
+    private double sum = 0;
+
+    /**
+     * @param capacity Number of most recent values the average is taken over
+     */
+    public RollingAverage(int capacity) {
+        if (capacity <= 0) throw new IllegalArgumentException("Capacity must be positive, was " + capacity);
+        this.values = new double[capacity];
+    }
+
+    /**
+     * Add a value, replacing the oldest value if the buffer is full
+     *
+     * @param value Value to add
+     */
+    public void add(double value) {
+        if (this.size == this.values.length) {
+            this.sum -= this.values[this.next];
+        } else {
+            this.size++;
+        }
+        this.values[this.next] = value;
+        this.sum += value;
+
+        this.next++;
+        if (this.next == this.values.length) {
+            this.next = 0;
+            recomputeSum();
+        }
+    }
+
+    /**
+     * @return Average of the values in the buffer, or 0 if no values have been added
+     */
+    public double getAverage() {
+        return this.size == 0 ? 0 : this.sum / this.size;
+    }
+
+    /**
+     * @return Number of values in the buffer
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Remove all values
+     */
+    public void clear() {
+        this.next = 0;
+        this.size = 0;
+        this.sum = 0;
+    }
+
+    private void recomputeSum() {
+        double sum = 0;
+        for (int i = 0; i < this.size; i++) {
+            sum += this.values[i];
+        }
+        this.sum = sum;
+    }
+}
@@ -0,0 +1,124 @@
+package sumo;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * A shared, read-only table of all routes known to SUMO at startup.
+ * <p>
+ * Each route is stored once, as an array of edge indices into the edge dictionary of the {@link NetworkCache}, so
+ * agents can refer to a route by its index instead of keeping their own copy of the edge IDs, and picking a new
+ * route does not require a TraCI round trip.
+ */
+public class RouteTable {
+    private static final Logger LOG = Logger.getLogger(RouteTable.class.getName());
+
+    private final IdDictionary edges;
+    private final String[] routeIDs;
+    private final int[][] routeEdges;
+
+    private RouteTable(IdDictionary edges, String[] routeIDs, int[][] routeEdges) {
+        this.edges = edges;
+        this.routeIDs = routeIDs;
+        this.routeEdges = routeEdges;
+    }
+
+    /**
+     * Load the edges of all routes known to SUMO. The edge dictionary is only read, so it can be shared with the
+     * network cache that sized its arrays to it. Routes over edges not in the dictionary are left out of the table.
+     *
+     * @param backend   Started backend running the simulation
+     * @param edges     Dictionary of the IDs of all edges in the network
+     * @return Filled route table
+     */
+    static RouteTable load(SumoBackend backend, IdDictionary edges) {
+        long start = System.currentTimeMillis();
+        List<String> allRouteIDs = backend.getRouteIDs();
+        List<String> routeIDs = new ArrayList<>(allRouteIDs.size());
+        List<int[]> routeEdges = new ArrayList<>(allRouteIDs.size());
+
+        for (String routeID : allRouteIDs) {
+            int[] route = resolve(backend.getRouteEdges(routeID), edges);
+            if (route == null) {
+                LOG.warning("Route " + routeID + " uses an edge that is not in the network. Ignoring route");
+            } else {
+                routeIDs.add(routeID);
+                routeEdges.add(route);
+            }
+        }
+
+        LOG.info(String.format("Loaded %d routes in %d milliseconds",
+                routeIDs.size(), System.currentTimeMillis() - start));
+
+        return new RouteTable(edges, routeIDs.toArray(new String[0]), routeEdges.toArray(new int[0][]));
+    }
+
+    /**
+     * @return Indices of the edges, or null if an edge is not in the dictionary
+     */
+    private static int[] resolve(List<String> edgeIDs, IdDictionary edges) {
+        int[] route = new int[edgeIDs.size()];
+        int i = 0;
+        for (String edgeID : edgeIDs) {
+            int edge = edges.indexOf(edgeID);
+            if (edge == IdDictionary.UNKNOWN) return null;
+            route[i++] = edge;
+        }
+        return route;
+    }
+
+    /**
+     * @return Number of routes in this table
+     */
+    public int size() {
+        return this.routeIDs.length;
+    }
+
+    /**
+     * @param route Index of the route
+     * @return SUMO ID of the route
+     */
+    public String getRouteID(int route) {
+        return this.routeIDs[route];
+    }
+
+    /**
+     * @param route Index of the route
+     * @return Number of edges on the route
+     */
+    public int getEdgeCount(int route) {
+        return this.routeEdges[route].length;
+    }
+
+    /**
+     * @param route Index of the route
+     * @param i     Position of the edge on the route
+     * @return SUMO ID of the i-th edge of the route
+     */
+    public String getEdgeID(int route, int i) {
+        return this.edges.get(this.routeEdges[route][i]);
+    }
+
+    /**
+     * Obtain the edge IDs of a route as a read-only list. The list is a view on this table, so no edge IDs are copied
+     *
+     * @param route Index of the route
+     * @return Read-only list of the edge IDs of the route
+     */
+    public List<String> getEdgeIDs(int route) {
+        final int[] routeEdges = this.routeEdges[route];
+        return new AbstractList<String>() {
+            @Override
+            public String get(int index) {
+                return edges.get(routeEdges[index]);
+            }
+
+            @Override
+            public int size() {
+                return routeEdges.length;
+            }
+        };
+    }
+}
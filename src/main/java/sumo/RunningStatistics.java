@@ -0,0 +1,155 @@
+package sumo;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Summary statistics of a series of values, computed in a single pass with constant memory. The mean and variance are
+ * exact, using Welford's method. The median is estimated with the P-square algorithm of Jain and Chlamtac, which
+ * keeps five markers instead of all values, and is exact for up to five values.
+ * <p>
+ * The variance is the population variance, as computed by numpy.var. The estimated median is written to the
+ * statistics files under the median key of extractValues.py, so existing consumers keep working, and also under
+ * median_estimate, to make clear it is approximate for more than five values.
+ */
+public class RunningStatistics {
+
+    private static final double P = 0.5;
+    private static final double[] DESIRED_INCREMENTS = {0, P / 2, P, (1 + P) / 2, 1};
+
+    private long count = 0;
+    private double mean = 0;
+    private double m2 = 0;
+
+    /** Heights and actual and desired positions of the P-square markers **/
+    private final double[] heights = new double[5];
+    private final int[] positions = new int[5];
+    private final double[] desired = new double[5];
+
+    /**
+     * Add a value to the series
+     *
+     * @param value Value to add
+     */
+    public void add(double value) {
+        this.count++;
+        double delta = value - this.mean;
+        this.mean += delta / this.count;
+        this.m2 += delta * (value - this.mean);
+
+        if (this.count <= 5) {
+            this.heights[(int) this.count - 1] = value;
+            if (this.count == 5) {
+                Arrays.sort(this.heights);
+                for (int i = 0; i < 5; i++) {
+                    this.positions[i] = i + 1;
+                }
+                this.desired[0] = 1;
+                this.desired[1] = 1 + 2 * P;
+                this.desired[2] = 1 + 4 * P;
+                this.desired[3] = 3 + 2 * P;
+                this.desired[4] = 5;
+            }
+            return;
+        }
+
+        int cell;
+        if (value < this.heights[0]) {
+            this.heights[0] = value;
+            cell = 0;
+        } else if (value >= this.heights[4]) {
+            this.heights[4] = value;
+            cell = 3;
+        } else {
+            cell = 0;
+            while (value >= this.heights[cell + 1]) cell++;
+        }
+
+        for (int i = cell + 1; i < 5; i++) {
+            this.positions[i]++;
+        }
+        for (int i = 0; i < 5; i++) {
+            this.desired[i] += DESIRED_INCREMENTS[i];
+        }
+
+        for (int i = 1; i < 4; i++) {
+            double d = this.desired[i] - this.positions[i];
+            if ((d >= 1 && this.positions[i + 1] - this.positions[i] > 1) ||
+                    (d <= -1 && this.positions[i - 1] - this.positions[i] < -1)) {
+                int step = d > 0 ? 1 : -1;
+                double height = parabolic(i, step);
+                if (this.heights[i - 1] < height && height < this.heights[i + 1]) {
+                    this.heights[i] = height;
+                } else {
+                    this.heights[i] += step * (this.heights[i + step] - this.heights[i]) /
+                            (this.positions[i + step] - this.positions[i]);
+                }
+                this.positions[i] += step;
+            }
+        }
+    }
+
+    private double parabolic(int i, int step) {
+        double n = this.positions[i];
+        double nBelow = this.positions[i - 1];
+        double nAbove = this.positions[i + 1];
+        return this.heights[i] + step / (nAbove - nBelow) * (
+                (n - nBelow + step) * (this.heights[i + 1] - this.heights[i]) / (nAbove - n) +
+                (nAbove - n - step) * (this.heights[i] - this.heights[i - 1]) / (n - nBelow));
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return Mean of all values, or NaN if there are none
+     */
+    public double getMean() {
+        return this.count == 0 ? Double.NaN : this.mean;
+    }
+
+    /**
+     * @return Population variance of all values, or NaN if there are none
+     */
+    public double getVariance() {
+        return this.count == 0 ? Double.NaN : this.m2 / this.count;
+    }
+
+    /**
+     * @return Population standard deviation of all values, or NaN if there are none
+     */
+    public double getStd() {
+        return Math.sqrt(getVariance());
+    }
+
+    /**
+     * @return Estimated median of all values, or NaN if there are none
+     */
+    public double getMedian() {
+        if (this.count == 0) return Double.NaN;
+        if (this.count < 5) {
+            double[] values = Arrays.copyOf(this.heights, (int) this.count);
+            Arrays.sort(values);
+            int middle = values.length / 2;
+            return values.length % 2 == 1 ? values[middle] : (values[middle - 1] + values[middle]) / 2;
+        }
+        return this.heights[2];
+    }
+
+    /**
+     * @return Average, estimated median, mean, standard deviation and variance, under the names used in the
+     * statistics files
+     */
+    public Map<String, Double> toMap() {
+        Map<String, Double> map = new LinkedHashMap<>();
+        map.put("average", getMean());
+        map.put("median", getMedian());
+        map.put("median_estimate", getMedian());
+        map.put("mean", getMean());
+        map.put("std", getStd());
+        map.put("variance", getVariance());
+        return map;
+    }
+}
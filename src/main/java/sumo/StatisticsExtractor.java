@@ -0,0 +1,379 @@
+package sumo;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Computes summary statistics of the trip info, FCD and emission output of SUMO. The files are parsed as a stream,
+ * in a single pass, keeping only running statistics in memory, so the files can be far larger than the heap. The
+ * files can also be parsed while SUMO is still writing them, see {@link #startFollowing(String, String, String)}.
+ * <p>
+ * The JSON files routeInfo, speedByTimestep, speedByCar, overallSpeed and emission are produced, in the format of
+ * the extractValues.py script this class replaces. Each contains the average, estimated median, mean, standard
+ * deviation and variance of every value. The median is estimated, see {@link RunningStatistics}, and is written both
+ * as median, as extractValues.py did, and as median_estimate. The trip info, overall speed and emission statistics
+ * are also written split by agent type, if the type of each vehicle is known (see {@link #readVehicleTypes(File)}),
+ * to routeInfoByType, overallSpeedByType and emissionByType.
+ * <p>
+ * Can also be run on its own, on the output files of a finished simulation:
+ * <pre>
+ *     java -cp sim2apl-SUMO-simulation.jar sumo.StatisticsExtractor routes-file fcd-file emission-file [types-file]
+ * </pre>
+ */
+public class StatisticsExtractor {
+    private static final Logger LOG = Logger.getLogger(StatisticsExtractor.class.getName());
+
+    /**
+     * Name of the CSV file mapping SUMO vehicle IDs to agent types
+     */
+    public static final String VEHICLE_TYPES_FILE = "vehicleTypes.csv";
+
+    private static final String UNKNOWN_TYPE = "unknown";
+
+    private static final String[] TRIP_FIELDS = {"depart", "departDelay", "arrival", "arrivalSpeed", "duration",
+            "routeLength", "waitingTime", "waitingCount", "stopTime", "timeLoss", "speedFactor"};
+    private static final String[] EMISSION_FIELDS = {"CO2", "CO", "HC", "NOx", "PMx", "fuel", "electricity", "noise",
+            "waiting", "speed"};
+
+    private static final Gson GSON = new GsonBuilder().serializeSpecialFloatingPointValues().create();
+
+    private final File outputDirectory;
+    private volatile Map<String, String> vehicleTypes = Collections.emptyMap();
+
+    private final List<Thread> followers = new ArrayList<>();
+    private volatile boolean writerFinished = false;
+
+    /**
+     * @param outputDirectory Directory the JSON files are written to
+     */
+    public StatisticsExtractor(File outputDirectory) {
+        this.outputDirectory = outputDirectory;
+    }
+
+    /**
+     * Set the agent type of each vehicle, used to split statistics by type. Vehicles without a type are counted as
+     * unknown.
+     *
+     * @param vehicleTypes Map from SUMO vehicle ID to agent type
+     */
+    public void setVehicleTypes(Map<String, String> vehicleTypes) {
+        this.vehicleTypes = vehicleTypes;
+    }
+
+    /**
+     * Start extracting statistics from output files SUMO is still writing, each on its own thread. Files that do
+     * not exist yet are waited for. Call {@link #finish()} when SUMO has closed its output files.
+     *
+     * @param routesFile    Trip info output file, or null
+     * @param fcdFile       FCD output file, or null
+     * @param emissionFile  Emission output file, or null
+     */
+    public void startFollowing(String routesFile, String fcdFile, String emissionFile) {
+        BooleanSupplier finished = () -> this.writerFinished;
+        if (routesFile != null) follow("routes", () -> extractTrips(
+                new GrowingFileInputStream(new File(routesFile), finished)));
+        if (fcdFile != null) follow("fcd", () -> extractSpeeds(
+                new GrowingFileInputStream(new File(fcdFile), finished)));
+        if (emissionFile != null) follow("emission", () -> extractEmissions(
+                new GrowingFileInputStream(new File(emissionFile), finished)));
+    }
+
+    /**
+     * Signal that SUMO has closed its output files, and wait until all statistics have been written. Files are read
+     * until they have not grown for a moment after this signal, so output SUMO flushes while exiting is not lost
+     */
+    public void finish() {
+        this.writerFinished = true;
+        for (Thread follower : this.followers) {
+            try {
+                follower.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                LOG.warning("Interrupted while waiting for statistics to be extracted");
+                return;
+            }
+        }
+    }
+
+    private void follow(String name, Extraction extraction) {
+        Thread thread = new Thread(() -> {
+            try {
+                extraction.run();
+            } catch (IOException | XMLStreamException e) {
+                LOG.log(Level.WARNING, "Could not extract " + name + " statistics", e);
+            }
+        }, "statistics-" + name);
+        thread.setDaemon(true);
+        thread.start();
+        this.followers.add(thread);
+    }
+
+    @FunctionalInterface
+    private interface Extraction {
+        void run() throws IOException, XMLStreamException;
+    }
+
+    /**
+     * Extract statistics from the trip info output, writing routeInfo and routeInfoByType
+     *
+     * @param in Trip info XML. Closed when done
+     * @return Statistics of every trip info value
+     */
+    public Map<String, RunningStatistics> extractTrips(InputStream in) throws IOException, XMLStreamException {
+        Map<String, RunningStatistics> statistics = createStatistics(TRIP_FIELDS, "averageSpeed");
+        Map<String, Map<String, RunningStatistics>> byType = new TreeMap<>();
+
+        XMLStreamReader reader = open(in, "tripinfos");
+        try {
+            while (reader != null && reader.hasNext()) {
+                if (reader.next() != XMLStreamConstants.START_ELEMENT || !"tripinfo".equals(reader.getLocalName())) {
+                    continue;
+                }
+                Map<String, RunningStatistics> typeStatistics = byType.computeIfAbsent(
+                        getType(reader.getAttributeValue(null, "id")),
+                        t -> createStatistics(TRIP_FIELDS, "averageSpeed"));
+                for (String field : TRIP_FIELDS) {
+                    String value = reader.getAttributeValue(null, field);
+                    if (value != null) {
+                        add(statistics, typeStatistics, field, Double.parseDouble(value));
+                    }
+                }
+                String routeLength = reader.getAttributeValue(null, "routeLength");
+                String duration = reader.getAttributeValue(null, "duration");
+                if (routeLength != null && duration != null) {
+                    add(statistics, typeStatistics, "averageSpeed",
+                            Double.parseDouble(routeLength) / Double.parseDouble(duration));
+                }
+            }
+        } finally {
+            close(reader, in);
+        }
+
+        write("routeInfo", toMap(statistics));
+        write("routeInfoByType", toTypeMap(byType));
+        LOG.info("Trip time: " + statistics.get("duration").toMap() +
+                "\nAverage speed: " + statistics.get("averageSpeed").toMap() +
+                "\nTime loss: " + statistics.get("timeLoss").toMap());
+        return statistics;
+    }
+
+    /**
+     * Extract speed statistics from the FCD output, writing speedByTimestep, speedByCar, overallSpeed and
+     * overallSpeedByType
+     *
+     * @param in FCD XML. Closed when done
+     * @return Statistics of the speed of all vehicles at all time steps
+     */
+    public RunningStatistics extractSpeeds(InputStream in) throws IOException, XMLStreamException {
+        Map<String, Map<String, Double>> byTimestep = new LinkedHashMap<>();
+        Map<String, RunningStatistics> byCar = new TreeMap<>();
+        Map<String, RunningStatistics> byType = new TreeMap<>();
+        RunningStatistics overall = new RunningStatistics();
+
+        String time = null;
+        RunningStatistics timestep = null;
+
+        XMLStreamReader reader = open(in, "fcd-export");
+        try {
+            while (reader != null && reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    if ("timestep".equals(reader.getLocalName())) {
+                        time = Double.toString(Double.parseDouble(reader.getAttributeValue(null, "time")));
+                        timestep = new RunningStatistics();
+                    } else if ("vehicle".equals(reader.getLocalName()) && timestep != null) {
+                        String id = reader.getAttributeValue(null, "id");
+                        double speed = Double.parseDouble(reader.getAttributeValue(null, "speed"));
+                        timestep.add(speed);
+                        overall.add(speed);
+                        byCar.computeIfAbsent(id, i -> new RunningStatistics()).add(speed);
+                        byType.computeIfAbsent(getType(id), t -> new RunningStatistics()).add(speed);
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT && "timestep".equals(reader.getLocalName())
+                        && timestep != null) {
+                    byTimestep.put(time, timestep.toMap());
+                    timestep = null;
+                }
+            }
+        } finally {
+            close(reader, in);
+        }
+
+        write("speedByTimestep", byTimestep);
+        write("speedByCar", toMap(byCar));
+        write("overallSpeed", Collections.singletonMap("speed", overall.toMap()));
+        write("overallSpeedByType", toMap(byType));
+        LOG.info("Speed values: " + overall.toMap());
+        return overall;
+    }
+
+    /**
+     * Extract statistics from the emission output, writing emission and emissionByType
+     *
+     * @param in Emission XML. Closed when done
+     * @return Statistics of every emission value
+     */
+    public Map<String, RunningStatistics> extractEmissions(InputStream in) throws IOException, XMLStreamException {
+        Map<String, RunningStatistics> statistics = createStatistics(EMISSION_FIELDS);
+        Map<String, Map<String, RunningStatistics>> byType = new TreeMap<>();
+
+        XMLStreamReader reader = open(in, "emission-export");
+        try {
+            while (reader != null && reader.hasNext()) {
+                if (reader.next() != XMLStreamConstants.START_ELEMENT || !"vehicle".equals(reader.getLocalName())) {
+                    continue;
+                }
+                Map<String, RunningStatistics> typeStatistics = byType.computeIfAbsent(
+                        getType(reader.getAttributeValue(null, "id")), t -> createStatistics(EMISSION_FIELDS));
+                for (String field : EMISSION_FIELDS) {
+                    String value = reader.getAttributeValue(null, field);
+                    if (value != null) {
+                        add(statistics, typeStatistics, field, Double.parseDouble(value));
+                    }
+                }
+            }
+        } finally {
+            close(reader, in);
+        }
+
+        write("emission", toMap(statistics));
+        write("emissionByType", toTypeMap(byType));
+        LOG.info("CO2 emission: " + statistics.get("CO2").toMap() +
+                "\nNoise: " + statistics.get("noise").toMap());
+        return statistics;
+    }
+
+    /**
+     * Write the agent type of each vehicle to a CSV file, so statistics can be split by type when they are
+     * extracted separately from the simulation
+     *
+     * @param file          File to write
+     * @param vehicleTypes  Map from SUMO vehicle ID to agent type
+     */
+    public static void writeVehicleTypes(File file, Map<String, String> vehicleTypes) throws IOException {
+        try (PrintWriter out = new PrintWriter(new FileWriter(file))) {
+            out.println("id,type");
+            vehicleTypes.forEach((id, type) -> out.println(id + "," + type));
+        }
+    }
+
+    /**
+     * Read a file written by {@link #writeVehicleTypes(File, Map)}
+     *
+     * @param file  File to read
+     * @return Map from SUMO vehicle ID to agent type
+     */
+    public static Map<String, String> readVehicleTypes(File file) throws IOException {
+        Map<String, String> vehicleTypes = new HashMap<>();
+        try (BufferedReader in = new BufferedReader(new FileReader(file))) {
+            in.readLine(); // Header
+            String line;
+            while ((line = in.readLine()) != null) {
+                int comma = line.lastIndexOf(',');
+                if (comma > 0) vehicleTypes.put(line.substring(0, comma), line.substring(comma + 1));
+            }
+        }
+        return vehicleTypes;
+    }
+
+    /**
+     * Open an XML stream, and verify its root element
+     *
+     * @return Reader positioned on the root element, or null if the root element is not the expected one
+     */
+    private XMLStreamReader open(InputStream in, String expectedRoot) throws XMLStreamException {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        XMLStreamReader reader = factory.createXMLStreamReader(new BufferedInputStream(in));
+        while (reader.hasNext() && reader.next() != XMLStreamConstants.START_ELEMENT) ;
+        if (!reader.isStartElement() || !expectedRoot.equals(reader.getLocalName())) {
+            LOG.warning("Root XML node was '" + (reader.isStartElement() ? reader.getLocalName() : "") +
+                    "'. '" + expectedRoot + "' expected. Skipping file");
+            return null;
+        }
+        return reader;
+    }
+
+    private static void close(XMLStreamReader reader, InputStream in) throws IOException, XMLStreamException {
+        if (reader != null) reader.close();
+        in.close();
+    }
+
+    private String getType(String vehicleID) {
+        return this.vehicleTypes.getOrDefault(vehicleID, UNKNOWN_TYPE);
+    }
+
+    private static Map<String, RunningStatistics> createStatistics(String[] fields, String... extraFields) {
+        Map<String, RunningStatistics> statistics = new LinkedHashMap<>();
+        for (String field : fields) statistics.put(field, new RunningStatistics());
+        for (String field : extraFields) statistics.put(field, new RunningStatistics());
+        return statistics;
+    }
+
+    private static void add(Map<String, RunningStatistics> statistics, Map<String, RunningStatistics> typeStatistics,
+                            String field, double value) {
+        statistics.get(field).add(value);
+        typeStatistics.get(field).add(value);
+    }
+
+    private static Map<String, Map<String, Double>> toMap(Map<String, RunningStatistics> statistics) {
+        Map<String, Map<String, Double>> map = new LinkedHashMap<>();
+        statistics.forEach((key, value) -> map.put(key, value.toMap()));
+        return map;
+    }
+
+    private static Map<String, Map<String, Map<String, Double>>> toTypeMap(
+            Map<String, Map<String, RunningStatistics>> statistics) {
+        Map<String, Map<String, Map<String, Double>>> map = new LinkedHashMap<>();
+        statistics.forEach((type, typeStatistics) -> map.put(type, toMap(typeStatistics)));
+        return map;
+    }
+
+    private void write(String name, Object statistics) throws IOException {
+        File file = new File(this.outputDirectory, name + ".json");
+        try (Writer out = new FileWriter(file)) {
+            GSON.toJson(statistics, out);
+        }
+        LOG.fine("Statistics written to " + file);
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3) {
+            System.err.println("Usage: StatisticsExtractor routes-file fcd-file emission-file [types-file]");
+            System.exit(1);
+        }
+
+        StatisticsExtractor extractor = new StatisticsExtractor(new File("."));
+        if (args.length > 3) {
+            extractor.setVehicleTypes(readVehicleTypes(new File(args[3])));
+        }
+        extractor.extractTrips(new FileInputStream(args[0]));
+        extractor.extractSpeeds(new FileInputStream(args[1]));
+        extractor.extractEmissions(new FileInputStream(args[2]));
+    }
+}
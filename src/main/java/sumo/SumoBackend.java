@@ -0,0 +1,189 @@
+package sumo;
+
+import agent.plan.PlanMessage;
+import com.sun.istack.Nullable;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A backend runs the traffic simulation the agents live in. All communication of the environment interface with
+ * the simulation goes through this interface, so the simulation can be run in a separate SUMO process over TraCI,
+ * or inside this JVM through libsumo, without changes to the environment interface or the agents.
+ * <p>
+ * Queries never throw on a failed request. They log the error and return a value marking the result as unknown, as
+ * documented per method. All backends throw an {@link IllegalStateException} when the simulation is no longer
+ * reachable.
+ */
+public interface SumoBackend {
+
+    /**
+     * Start the simulation
+     *
+     * @param sumoBinary    SUMO binary to run. Backends running SUMO in-process only use this as program name
+     * @param configFile    SUMO configuration file
+     * @param options       Additional SUMO options, without leading dashes, e.g. step-length -> 1
+     * @param listener      Listener receiving the changes reported after each time step
+     * @throws Exception if the simulation could not be started
+     */
+    void start(String sumoBinary, String configFile, Map<String, String> options, SumoBackendListener listener)
+            throws Exception;
+
+    /**
+     * Perform a single time step. Vehicles that departed, arrived or started teleporting during the step, and the
+     * states of all subscribed vehicles, are reported to the listener before this method returns.
+     *
+     * @throws Exception if the time step could not be performed
+     */
+    void step() throws Exception;
+
+    /**
+     * @return Current simulation time in milliseconds
+     */
+    int getCurrentTime();
+
+    /**
+     * Report the state of a vehicle to the listener after every time step, until it leaves the simulation
+     *
+     * @param vehicleID SUMO ID of the vehicle
+     */
+    void subscribeVehicle(String vehicleID);
+
+    /**
+     * @return IDs of all edges in the network, or an empty list if they could not be obtained
+     */
+    List<String> getEdgeIDs();
+
+    /**
+     * @param edgeID    ID of the edge
+     * @return Number of lanes of the edge, or -1 if unknown
+     */
+    int getEdgeLaneCount(String edgeID);
+
+    /**
+     * @return IDs of all lanes in the network, or an empty list if they could not be obtained
+     */
+    List<String> getLaneIDs();
+
+    /**
+     * @param laneID    ID of the lane
+     * @return Maximum speed on the lane in m/s, or NaN if unknown
+     */
+    double getLaneMaxSpeed(String laneID);
+
+    /**
+     * @param laneID    ID of the lane
+     * @return Length of the lane in meters, or NaN if unknown
+     */
+    double getLaneLength(String laneID);
+
+    /**
+     * @param laneID    ID of the lane
+     * @return Vehicle classes allowed on the lane. An empty list means all classes are allowed. Null if unknown
+     */
+    @Nullable
+    List<String> getLaneAllowed(String laneID);
+
+    /**
+     * Read the static attributes of many lanes at once. Backends talking to a separate SUMO process should not make a
+     * round trip per lane. The default implementation requests the attributes lane by lane, which is only cheap for
+     * backends running in this JVM
+     *
+     * @param laneIDs   IDs of the lanes
+     * @return Attributes by lane ID
+     */
+    default Map<String, LaneAttributes> getLaneAttributes(List<String> laneIDs) {
+        Map<String, LaneAttributes> attributes = new HashMap<>(laneIDs.size() * 4 / 3 + 1);
+        for (String laneID : laneIDs) {
+            attributes.put(laneID, LaneAttributes.request(this, laneID));
+        }
+        return attributes;
+    }
+
+    /**
+     * @param laneID    ID of the lane to change
+     * @param maxSpeed  New maximum speed of the lane in m/s
+     * @return True iff the maximum speed was changed
+     */
+    boolean setLaneMaxSpeed(String laneID, double maxSpeed);
+
+    /**
+     * @return IDs of all routes known to the simulation, or an empty list if they could not be obtained
+     */
+    List<String> getRouteIDs();
+
+    /**
+     * @param routeID   ID of the route
+     * @return IDs of the edges of the route, or an empty list if the route is not known
+     */
+    List<String> getRouteEdges(String routeID);
+
+    /**
+     * Find the fastest route between two edges
+     *
+     * @param sourceEdgeID  ID of the edge the route should start from
+     * @param targetEdgeID  ID of the intended destination edge
+     * @param vehicleType   Type of the vehicle that will drive the route
+     * @return IDs of the edges of the route, or null if no route could be found
+     */
+    @Nullable
+    List<String> findRoute(String sourceEdgeID, String targetEdgeID, String vehicleType);
+
+    /**
+     * Add a new route
+     *
+     * @param routeID   ID of the new route
+     * @param edgeIDs   IDs of the edges of the route
+     */
+    void addRoute(String routeID, List<String> edgeIDs) throws Exception;
+
+    /**
+     * Insert a new vehicle
+     *
+     * @param vehicleID     ID of the new vehicle
+     * @param typeID        ID of the vehicle type
+     * @param routeID       ID of the route the vehicle should drive
+     * @param departTime    Time of departure in milliseconds
+     * @param laneIndex     Index of the lane the vehicle should depart on
+     */
+    void addVehicle(String vehicleID, String typeID, String routeID, int departTime, byte laneIndex) throws Exception;
+
+    /**
+     * @param vehicleID ID of the vehicle
+     * @param speed     New maximum speed of the vehicle in m/s
+     */
+    void setVehicleMaxSpeed(String vehicleID, double speed) throws Exception;
+
+    /**
+     * @param vehicleID ID of the vehicle
+     * @param minGap    New minimum gap of the vehicle in meters
+     */
+    void setVehicleMinGap(String vehicleID, double minGap) throws Exception;
+
+    /**
+     * Perform the action encoded in a message. Backends may defer the action until the next call to
+     * {@link #flush()}, but preserve the order of actions that are not idempotent.
+     *
+     * @param message   The action to perform
+     */
+    void dispatch(PlanMessage message);
+
+    /**
+     * Perform all deferred actions. Should be called before performing a time step.
+     *
+     * @return Actions that failed since the last call to flush, in the order they were dispatched. Empty if all
+     * actions were performed
+     */
+    List<PlanMessage> flush();
+
+    /**
+     * Stop the simulation
+     */
+    void close();
+
+    /**
+     * @return True iff the simulation has been stopped, or was never started
+     */
+    boolean isClosed();
+}
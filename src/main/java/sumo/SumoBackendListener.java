@@ -0,0 +1,33 @@
+package sumo;
+
+import java.util.List;
+
+/**
+ * Receives the changes a {@link SumoBackend} reports after each time step. Methods are called on the thread
+ * performing the time step.
+ */
+public interface SumoBackendListener {
+
+    /**
+     * @param vehicleIDs    IDs of the vehicles that departed during the last time step
+     */
+    void vehiclesDeparted(List<String> vehicleIDs);
+
+    /**
+     * @param vehicleIDs    IDs of the vehicles that arrived during the last time step
+     */
+    void vehiclesArrived(List<String> vehicleIDs);
+
+    /**
+     * @param count Number of vehicles that started teleporting during the last time step
+     */
+    void vehiclesTeleported(int count);
+
+    void vehicleSpeed(String vehicleID, double speed);
+
+    void vehicleLane(String vehicleID, String laneID);
+
+    void vehiclePosition(String vehicleID, double x, double y);
+
+    void vehicleCo2Emission(String vehicleID, double co2Emission);
+}
@@ -1,40 +1,38 @@
 package sumo;
 
+import agent.plan.EnterWorldPlanMessage;
 import agent.plan.PlanMessage;
+import agent.plan.PlanMessageCodec;
 import agent.plan.PlanMessageParser;
 import com.sun.istack.Nullable;
-import de.tudresden.sumo.cmd.*;
-import de.tudresden.sumo.config.Constants;
-import de.tudresden.sumo.util.SumoCommand;
-import de.tudresden.ws.container.SumoStage;
-import it.polito.appeal.traci.SumoTraciConnection;
-import it.polito.appeal.traci.TraCIException;
 import nl.uu.cs.iss.ga.sim2apl.core.agent.AgentID;
 import nl.uu.cs.iss.ga.sim2apl.core.tick.TickHookProcessor;
 import org.apache.commons.cli.CommandLine;
 
 import java.io.File;
+import java.io.IOException;
 import java.net.URL;
 import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * The SUMO environment interface handles communication with the environment.
- * This class opens and maintains a connection with SUMO, and is able to process
+ * This class starts and maintains the simulation through a {@link SumoBackend}, and is able to process
  * all requests and actions in that environment.
  * <p>
  * This class also handles logging and collection of statistics from the SUMO environment
  */
-public class SumoEnvironmentInterface implements TickHookProcessor {
+public class SumoEnvironmentInterface implements TickHookProcessor, SumoBackendListener {
     private static final Logger LOG = Logger.getLogger(SumoEnvironmentInterface.class.getName());
 
     private static final String LOG_DIR = "output";
 
-    private SumoTraciConnection connection;
+    private final SumoBackend backend;
 
     /**
      * Various CMD args for starting the SUMO environment
@@ -44,21 +42,78 @@ public class SumoEnvironmentInterface implements TickHookProcessor {
     private final String netFile;
     private String collisionAction = "none";
     private String stepLength = "1";
+    private boolean inProcessActions = true;
+    private boolean binaryMatrixEncoding = false;
 
     /**
-     * A Java Random object, used by agents for action selection
+     * A Java Random object, used for random operations on the main thread. Agents draw from their own stream, see
+     * {@link RandomStreams}
      */
     private final Random agentRnd;
 
     /**
-     * A set to keep track of agents active and present in the SUMO environment
+     * The agents driving vehicles in the environment, and which of those vehicles are present in the environment
      **/
-    private final Set<String> activeAgentIDs = new HashSet<>();
+    private final AgentRegistry agents = new AgentRegistry();
 
     /**
-     * The edges making up the road network
+     * Ordinals of the agents that produced actions during the current tick. Reused every tick
      **/
-    private List<String> routes;
+    private final BitSet actingAgents = new BitSet();
+
+    /**
+     * Subscription results received during the last time step, and the snapshot of those results agents read from
+     * during the current tick
+     **/
+    private final VehicleStateSnapshot.Builder vehicleStatesBuilder = new VehicleStateSnapshot.Builder();
+    private volatile VehicleStateSnapshot vehicleStates = VehicleStateSnapshot.EMPTY;
+
+    /**
+     * Vehicles that departed, arrived or started teleporting during the last time step, as reported by the
+     * backend
+     **/
+    private List<String> departedVehicles = new ArrayList<>();
+    private List<String> arrivedVehicles = new ArrayList<>();
+    private int teleportedVehicles = 0;
+
+    /**
+     * Vehicles that were added to SUMO but have not departed yet, e.g. because they wait in the insertion backlog of
+     * SUMO. Only modified in the tick hooks
+     **/
+    private final Set<String> loadedVehicles = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Timing and volume metrics of every tick, and the moment the last pre-hook finished, from which the time spent
+     * on agent deliberation is measured
+     **/
+    private final TickMetrics metrics;
+    private long preHookFinished = -1;
+
+    /**
+     * Latency and volume of every request made to the simulation, if the backend is instrumented
+     **/
+    @Nullable
+    private final CommandMetrics commandMetrics;
+
+    /**
+     * Actions handed over by agents running in this JVM, bypassing JSON serialization
+     **/
+    private final ActionChannel actionChannel = new ActionChannel();
+
+    /**
+     * The maximum speed and minimum gap last applied to every vehicle, to drop actions that would not change them
+     **/
+    private final AppliedStateTable appliedState;
+
+    /**
+     * The routes agents can pick from
+     **/
+    private RouteTable routes;
+
+    /**
+     * Static attributes of the edges and lanes in the road network
+     **/
+    private NetworkCache networkCache;
 
     /**
      * Various parameters from the SUMO environment
@@ -77,6 +132,21 @@ public class SumoEnvironmentInterface implements TickHookProcessor {
     private String routesStatisticsFile = null;
     private String emissionStatisticsFile = null;
     private String summaryStatisticsFile = null;
+    private String telemetryStatisticsFile = null;
+
+    /**
+     * Writes the state of all vehicles at every tick, if requested. The institution is used to compute the sanctions
+     * included in the telemetry
+     **/
+    @Nullable
+    private TelemetryWriter telemetry = null;
+    private final Institution institution = new Institution();
+
+    /**
+     * Computes statistics from the output files while SUMO writes them, if requested
+     **/
+    @Nullable
+    private StatisticsExtractor statisticsExtractor = null;
 
     /**
      * Default constructor
@@ -95,62 +165,279 @@ public class SumoEnvironmentInterface implements TickHookProcessor {
             this.stepLength = args.getOptionValue("step-length");
         if (args.hasOption("collision.action"))
             this.collisionAction = args.getOptionValue("collision.action");
+        if (args.hasOption("use-matrix"))
+            this.inProcessActions = !Boolean.parseBoolean(args.getOptionValue("use-matrix"));
+        if (args.hasOption("matrix-encoding"))
+            this.binaryMatrixEncoding = parseMatrixEncoding(args.getOptionValue("matrix-encoding"));
+        this.metrics = new TickMetrics(args.getOptionValue("metrics-directory"));
+        this.appliedState = new AppliedStateTable(this.agents, args.hasOption("applied-state-epsilon") ?
+                Double.parseDouble(args.getOptionValue("applied-state-epsilon")) : AppliedStateTable.DEFAULT_EPSILON);
+        if (args.hasOption("command-metrics")) {
+            this.commandMetrics = new CommandMetrics();
+            this.metrics.addPrometheusWriter(this.commandMetrics::writePrometheus);
+            this.backend = new InstrumentedSumoBackend(createBackend(args), this.commandMetrics);
+        } else {
+            this.commandMetrics = null;
+            this.backend = createBackend(args);
+        }
 
         this.agentStatisticsFile = parseStatisticsFile(args, "agent-statistics", "agent");
         this.routesStatisticsFile = parseStatisticsFile(args, "route-statistics", "routes");
         this.emissionStatisticsFile = parseStatisticsFile(args, "emission-statistics", "emission");
         this.summaryStatisticsFile = parseStatisticsFile(args, "summary-statistics", "summary");
+        this.telemetryStatisticsFile = parseStatisticsFile(args, "telemetry-statistics", "telemetry");
+
+        File statisticsDirectory = getStatisticsDirectory();
+        if (args.hasOption("extract-statistics")) {
+            if (statisticsDirectory == null) {
+                LOG.warning("Statistics extraction requested, but no agent, route or emission statistics are logged");
+            } else {
+                this.statisticsExtractor = new StatisticsExtractor(statisticsDirectory);
+            }
+        }
 
         startConnection();
+
+        if (this.statisticsExtractor != null) {
+            this.statisticsExtractor.startFollowing(
+                    this.routesStatisticsFile, this.agentStatisticsFile, this.emissionStatisticsFile);
+        }
+
+        if (this.telemetryStatisticsFile != null) {
+            try {
+                this.telemetry = new TelemetryWriter(new File(this.telemetryStatisticsFile),
+                        this::getAgentBudget, this::getSpeedLimitSanction);
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "Could not create telemetry file " + this.telemetryStatisticsFile, e);
+            }
+        }
     }
 
     @Override
     public void tickPreHook(long l) {
         LOG.fine("Tick pre-hook called");
-        resetArrived();
-        updateActiveAgents();
+        long start = System.nanoTime();
+        List<String> arrivedAgents = resetArrived();
+        updateActiveAgents(arrivedAgents);
+        this.networkCache.refreshStaleLanes();
+        this.vehicleStates = this.vehicleStatesBuilder.build();
+        notifyVehicleStates(this.vehicleStates);
+        notifyTickStarted();
+        if (this.telemetry != null) {
+            this.telemetry.write(l, this.simulationTime, this.vehicleStates);
+        }
+        this.preHookFinished = System.nanoTime();
+        this.metrics.record(TickMetrics.Phase.PRE_HOOK, this.preHookFinished - start);
     }
 
     @Override
     public void tickPostHook(long l, int i, HashMap<AgentID, List<String>> hashMap) {
-        LOG.info(String.format("Tick %d took %d milliseconds. %d agents produced actions\n", l, i, hashMap.size()));
-        List<AgentID> processAIDList = new ArrayList<>(hashMap.keySet());
-        processAIDList.sort(Comparator.comparing(AgentID::getUuID));
+        if (this.preHookFinished >= 0) {
+            this.metrics.record(TickMetrics.Phase.DELIBERATION, System.nanoTime() - this.preHookFinished);
+        }
+        Map<AgentID, List<PlanMessage>> channelActions = this.actionChannel.drain();
+        List<AgentID> processAIDList = orderActingAgents(channelActions, hashMap);
+        LOG.info(String.format("Tick %d took %d milliseconds. %d agents produced actions\n", l, i, processAIDList.size()));
 
-        for (AgentID aid : processAIDList) {
-            LOG.finer("Processing list of actions for agent " + aid.getUuID());
-            for (String o : hashMap.get(aid)) {
-                PlanMessage message = PlanMessageParser.parse(o);
-
-                try {
-                    this.connection.do_job_set(message.getSumoCommand());
-                } catch (IllegalStateException e) {
-                    LOG.log(Level.SEVERE, "Could not peform job " + o.toString(), e);
-                    closeConnection();
-                    System.exit(10);
-                } catch (Exception e) {
-                    LOG.log(Level.WARNING, "Could not perform job " + o.toString(), e);
-                }
+        try {
+            int failedJobs = dispatchActions(processAIDList, channelActions, hashMap);
+            if (failedJobs > 0) {
+                LOG.warning(failedJobs + " jobs could not be performed during tick " + l);
             }
+        } catch (IllegalStateException e) {
+            LOG.log(Level.SEVERE, "Lost connection with SUMO while performing jobs", e);
+            closeConnection();
+            System.exit(10);
         }
 
         try {
             LOG.fine("Requesting SUMO to perform time step");
-            this.connection.do_timestep();
-            this.simulationTime = (int) this.connection.do_job_get(Simulation.getCurrentTime());
+            long start = System.nanoTime();
+            this.backend.step();
+            long stepped = System.nanoTime();
+            this.simulationTime = this.backend.getCurrentTime();
+            this.metrics.record(TickMetrics.Phase.TIME_STEP, stepped - start);
+            this.metrics.record(TickMetrics.Phase.GET_TIME, System.nanoTime() - stepped);
         } catch (Exception e) {
             LOG.log(Level.SEVERE, "An error occurred while performing the time step", e);
             System.exit(4);
         }
+
+        this.metrics.endTick(l, this.simulationTime, this.agents.getActiveCount());
+    }
+
+    /**
+     * Determine the order in which the actions of agents are performed. Agents are ordered by their ordinal in the
+     * agent registry, so the order does not depend on the order in which threads finished deliberating. The acting
+     * agents are marked in a bit set, which is read in ordinal order, so no sorting is needed. Agents that are not
+     * registered are rare, and are performed last, ordered by ID.
+     *
+     * @param channelActions    Actions delivered through the in-process action channel
+     * @param planResults       Encoded actions returned by plans
+     * @return IDs of all agents that produced actions, in the order their actions should be performed
+     */
+    List<AgentID> orderActingAgents(Map<AgentID, List<PlanMessage>> channelActions,
+                                    Map<AgentID, List<String>> planResults) {
+        this.actingAgents.clear();
+        Set<AgentID> unregistered = new HashSet<>();
+        markActingAgents(channelActions.keySet(), unregistered);
+        markActingAgents(planResults.keySet(), unregistered);
+
+        List<AgentID> processAIDList = new ArrayList<>(this.actingAgents.cardinality() + unregistered.size());
+        for (int o = this.actingAgents.nextSetBit(0); o >= 0; o = this.actingAgents.nextSetBit(o + 1)) {
+            processAIDList.add(this.agents.getAgentID(o));
+        }
+        if (!unregistered.isEmpty()) {
+            List<AgentID> others = new ArrayList<>(unregistered);
+            others.sort(Comparator.comparing(AgentID::getUuID));
+            processAIDList.addAll(others);
+        }
+        return processAIDList;
+    }
+
+    private void markActingAgents(Set<AgentID> agentIDs, Set<AgentID> unregistered) {
+        for (AgentID aid : agentIDs) {
+            int ordinal = this.agents.ordinalOf(aid);
+            if (ordinal == AgentRegistry.UNKNOWN) {
+                unregistered.add(aid);
+            } else {
+                this.actingAgents.set(ordinal);
+            }
+        }
+    }
+
+    /**
+     * Perform the actions of all agents in the simulation, in the given order. All actions are collected and parsed
+     * before the first is performed, so both steps can be timed separately. Actions that set a value the vehicle
+     * already has are dropped
+     *
+     * @param processAIDList    IDs of the agents that produced actions, in the order their actions should be performed
+     * @param channelActions    Actions delivered through the in-process action channel
+     * @param planResults       Encoded actions returned by plans
+     * @return Number of actions that could not be performed
+     * @throws IllegalStateException if the simulation is no longer reachable
+     */
+    int dispatchActions(List<AgentID> processAIDList, Map<AgentID, List<PlanMessage>> channelActions,
+                        Map<AgentID, List<String>> planResults) {
+        long start = System.nanoTime();
+        List<PlanMessage> actions = new ArrayList<>(processAIDList.size());
+        for (AgentID aid : processAIDList) {
+            LOG.finer("Processing list of actions for agent " + aid.getUuID());
+            actions.addAll(channelActions.getOrDefault(aid, Collections.emptyList()));
+            for (String o : planResults.getOrDefault(aid, Collections.emptyList())) {
+                actions.addAll(PlanMessageParser.parseAll(o));
+            }
+        }
+        long parsed = System.nanoTime();
+        this.metrics.record(TickMetrics.Phase.ACTION_PARSE, parsed - start);
+
+        List<PlanMessage> dispatched = new ArrayList<>(actions.size());
+        List<PlanMessage> failed = new ArrayList<>();
+        for (PlanMessage message : actions) {
+            if (!this.appliedState.changes(message)) {
+                this.metrics.countSuppressedAction(message);
+                continue;
+            }
+            this.metrics.countAction(message);
+            if (message instanceof EnterWorldPlanMessage) {
+                dispatchEnterWorld((EnterWorldPlanMessage) message, failed);
+            } else {
+                this.backend.dispatch(message);
+                dispatched.add(message);
+            }
+        }
+        failed.addAll(this.backend.flush());
+        updateAppliedState(dispatched, failed);
+        this.metrics.record(TickMetrics.Phase.ACTION_DISPATCH, System.nanoTime() - parsed);
+        this.metrics.countFailedJobs(failed.size());
+        return failed.size();
+    }
+
+    /**
+     * Add the vehicle of an agent entering the world, flushing before and after, so it is known whether SUMO loaded
+     * the vehicle. Vehicles are not idempotent, so no backend defers them anyway
+     *
+     * @param failed    List to add the jobs that failed while flushing to
+     */
+    private void dispatchEnterWorld(EnterWorldPlanMessage message, List<PlanMessage> failed) {
+        failed.addAll(this.backend.flush());
+        this.backend.dispatch(message);
+        List<PlanMessage> failedAdd = this.backend.flush();
+        if (failedAdd.isEmpty()) {
+            this.loadedVehicles.add(message.sumoID);
+        }
+        failed.addAll(failedAdd);
+    }
+
+    /**
+     * Record the values of the dispatched actions that were performed, and forget the values of the vehicles of which
+     * an action failed, so the next action for such a vehicle is sent again. Actions are handled in dispatch order,
+     * so the last action for a vehicle decides what is kept
+     *
+     * @param dispatched    Actions dispatched during this tick
+     * @param failed        Actions the backend reported as failed. These are the same instances as dispatched
+     */
+    private void updateAppliedState(List<PlanMessage> dispatched, List<PlanMessage> failed) {
+        if (failed.isEmpty()) {
+            dispatched.forEach(this.appliedState::record);
+            return;
+        }
+        Set<PlanMessage> failedSet = Collections.newSetFromMap(new IdentityHashMap<>(failed.size() * 2));
+        failedSet.addAll(failed);
+        for (PlanMessage message : dispatched) {
+            if (failedSet.contains(message)) {
+                this.appliedState.forget(message);
+            } else {
+                this.appliedState.record(message);
+            }
+        }
     }
 
     @Override
     public void simulationFinishedHook(long l, int i) {
         LOG.fine("Received simulation finished event from Simulation Engine. Closing SUMO connection");
+        LOG.info(this.metrics.summary());
+        this.metrics.close();
+        if (this.telemetry != null) {
+            this.telemetry.close();
+        }
+        // SUMO writes the last records of its output files when the connection closes, so the statistics can only
+        // be finished after that
         closeConnection();
+        if (this.statisticsExtractor != null) {
+            LOG.info("Waiting for statistics to be extracted");
+            this.statisticsExtractor.finish();
+        }
+        if (this.commandMetrics != null) {
+            LOG.info(this.commandMetrics.summary());
+            if (this.metrics.getDirectory() != null) {
+                this.commandMetrics.writeCsv(this.metrics.getDirectory());
+            }
+        }
         System.exit(0);
     }
 
+    /**
+     * Hand an action produced by a plan to the environment. When agents run in the same JVM as this environment, the
+     * message is delivered directly through the in-process action channel, and the plan should return null. When
+     * actions have to travel through the Matrix, the message is encoded for the plan to return instead, as JSON or
+     * as a binary frame, depending on the Matrix encoding.
+     *
+     * @param agentID   ID of the agent producing the action
+     * @param message   The action
+     * @return Encoding of the message if it should be returned by the plan, null if it has been delivered
+     */
+    @Nullable
+    public String submitAction(AgentID agentID, PlanMessage message) {
+        if (this.inProcessActions) {
+            this.actionChannel.submit(agentID, message);
+            return null;
+        } else if (this.binaryMatrixEncoding) {
+            return PlanMessageCodec.encode(Collections.singletonList(message));
+        }
+        return message.toJson();
+    }
+
     /**
      * Verify that an agent is still in the environment
      *
@@ -158,7 +445,60 @@ public class SumoEnvironmentInterface implements TickHookProcessor {
      * @return True iff agent is still in the environment
      */
     public boolean isAgentActive(String sumoAgentID) {
-        return this.activeAgentIDs.contains(sumoAgentID);
+        return this.agents.isActive(sumoAgentID);
+    }
+
+    /**
+     * Check if the vehicle of an agent was added to SUMO, but has not departed yet. SUMO keeps such vehicles in its
+     * insertion backlog until there is room on their source lane, and refuses to add a vehicle with the same ID
+     *
+     * @param sumoAgentID   Agent ID of the sumo agent
+     * @return True iff the vehicle is waiting to be inserted by SUMO
+     */
+    public boolean isVehicleLoaded(String sumoAgentID) {
+        return this.loadedVehicles.contains(sumoAgentID);
+    }
+
+    /**
+     * Obtain the registry of the agents driving vehicles in this environment. Agents are registered by the
+     * environment agent interface when they are created
+     *
+     * @return Agent registry
+     */
+    public AgentRegistry getAgentRegistry() {
+        return agents;
+    }
+
+    /**
+     * Obtain the maximum speed and minimum gap last applied to every vehicle, and how often applying them failed
+     *
+     * @return Applied state table
+     */
+    public AppliedStateTable getAppliedState() {
+        return appliedState;
+    }
+
+    /**
+     * Get the state of a vehicle as reported by SUMO at the end of the last time step. This does not require a
+     * round trip to SUMO, as the state is read from the subscription snapshot taken at the start of the current tick.
+     * <p>
+     * Vehicles that entered the environment during the last step may not have a state yet.
+     *
+     * @param sumoAgentID SUMO ID of the vehicle
+     * @return State of the vehicle, or null if no state is known for this vehicle
+     */
+    @Nullable
+    public VehicleState getVehicleState(String sumoAgentID) {
+        return this.vehicleStates.get(sumoAgentID);
+    }
+
+    /**
+     * Obtain the snapshot of all vehicle states for the current tick
+     *
+     * @return Immutable snapshot of vehicle states
+     */
+    public VehicleStateSnapshot getVehicleStates() {
+        return this.vehicleStates;
     }
 
     /**
@@ -166,86 +506,97 @@ public class SumoEnvironmentInterface implements TickHookProcessor {
      *
      * @param sourceEdgeID ID of the edge the route should start from
      * @param targetEdgeID ID of the intended destination edge
-     * @return A SumoState, encoding a route from sourceEdgeID to targetEdgeID, if one could be found.
+     * @return The IDs of the edges of a route from sourceEdgeID to targetEdgeID, if one could be found.
      * Null if no route can be found, or an error occurred.
      */
     @Nullable
-    public SumoStage findRoute(String sourceEdgeID, String targetEdgeID, String vehicleType) {
-        SumoStage route = null;
-        try {
-            route = (SumoStage) this.connection.do_job_get(
-                    Simulation.findRoute(sourceEdgeID, targetEdgeID, vehicleType, this.simulationTime, Constants.ROUTING_MODE_DEFAULT)
-            );
-            if (route.edges.size() == 0) {
-                LOG.finer("Route from " + sourceEdgeID + " to " + targetEdgeID + " has no edges. Returning zero route");
-                route = null;
-            }
-        } catch (Exception e) {
-            LOG.log(Level.WARNING,
-                    "SUMO returned error when requesting route from edge " + sourceEdgeID + " to " + targetEdgeID,
-                    e);
-        }
+    public List<String> findRoute(String sourceEdgeID, String targetEdgeID, String vehicleType) {
+        return this.backend.findRoute(sourceEdgeID, targetEdgeID, vehicleType);
+    }
 
-        return route;
+    /**
+     * Pick a random route from the route table
+     *
+     * @param random    Random stream of the agent picking the route
+     * @return Index of the route in the route table
+     */
+    public int getRandomRoute(SplittableRandom random) {
+        return random.nextInt(this.routes.size());
     }
 
-    public String getRandomRoute() {
-        return this.routes.get(this.agentRnd.nextInt(this.routes.size()));
+    /**
+     * Obtain the table of all routes known to SUMO at startup
+     *
+     * @return Route table
+     */
+    public RouteTable getRouteTable() {
+        return routes;
     }
 
     /**
      * Get a random lane on the given edge. 0 if the action could not succeed
      *
      * @param edgeID Edge to find random lane on
+     * @param random Random stream of the agent picking the lane
      * @return Lane index, or 0 if no lane could be found
      */
-    public byte getLaneForEdge(String edgeID) {
-        try {
-            return (byte) this.agentRnd.nextInt((int) this.connection.do_job_get(Edge.getLaneNumber(edgeID)));
-        } catch (Exception e) {
-            LOG.log(Level.WARNING, "Could not get lane for edge " + edgeID + ". Using default lane 0", e);
+    public byte getLaneForEdge(String edgeID, SplittableRandom random) {
+        int laneCount = this.networkCache.getEdgeLaneCount(edgeID);
+        if (laneCount <= 0) {
+            LOG.warning("Could not get lane for edge " + edgeID + ". Using default lane 0");
             return (byte) 0;
         }
+        return (byte) random.nextInt(laneCount);
     }
 
     /**
-     * Get the maximum speed associated to the specified lane
+     * Get the maximum speed associated to the specified lane. The speed is read from the network cache, so this never
+     * talks to SUMO and can be called from agent threads.
+     *
+     * @return Maximum speed of the lane in m/s, or positive infinity if the lane is not known
      */
     public double getLaneMaxSpeed(String laneID) {
-        try {
-            return (double) this.connection.do_job_get(Lane.getMaxSpeed(laneID));
-        } catch (Exception e) {
-            LOG.log(Level.WARNING, "Could not get maximum speed for lane " + laneID, e);
-            return Double.POSITIVE_INFINITY;
-        }
+        double maxSpeed = this.networkCache.getLaneMaxSpeed(laneID);
+        return Double.isNaN(maxSpeed) ? Double.POSITIVE_INFINITY : maxSpeed;
     }
 
     /**
-     * Perform a get-request in the SUMO environment. This method will handle any get request supported by TraCI/TRAAS.
-     * This method handles errors. If a request fails, no error will be thrown here.
+     * Change the maximum speed of a lane in SUMO, keeping the network cache up to date
      *
-     * @param cmd SumoCommand encoding get request
-     * @return Object with result to cmd if request succeeded. Nul otherwise
+     * @param laneID    ID of the lane to change
+     * @param maxSpeed  New maximum speed of the lane in m/s
      */
-    public Object do_job_get(SumoCommand cmd) {
-        try {
-            return this.connection.do_job_get(cmd);
-        } catch (TraCIException e) {
-            LOG.log(Level.WARNING, "Error occurred performing GET job through TraaS", e);
-            return null;
-        } catch (IllegalStateException e) {
-            LOG.log(Level.WARNING, "Error occurred performing GET in SUMO", e);
-            System.exit(15);
-            return null;
-        } catch (Exception e) {
-            LOG.log(Level.WARNING, "Exception occurred performing GET job in SUMO", e);
-            return null;
+    public void setLaneMaxSpeed(String laneID, double maxSpeed) {
+        if (this.backend.setLaneMaxSpeed(laneID, maxSpeed)) {
+            this.networkCache.updateLaneMaxSpeed(laneID, maxSpeed);
+        } else {
+            this.networkCache.invalidateLane(laneID);
         }
     }
 
+    /**
+     * Obtain the cache of static road network attributes. Lanes changed by anything other than
+     * {@link #setLaneMaxSpeed(String, double)} should be invalidated on this cache.
+     *
+     * @return Network attribute cache
+     */
+    public NetworkCache getNetworkCache() {
+        return networkCache;
+    }
+
+    /**
+     * Obtain the backend running the simulation, for requests not covered by this interface
+     *
+     * @return Simulation backend
+     */
+    public SumoBackend getBackend() {
+        return backend;
+    }
+
     /**
      * Get the Random used by the Java-end of this simulation. When a seed is provided in the command line arguments,
-     * this Random instance should be used for <i>any</i> operations requiring random.
+     * this Random instance should be used for any operations requiring random outside of agent deliberation. Agents
+     * should use their own random stream instead, so their draws do not depend on thread scheduling.
      *
      * @return Java Random object. If a seed was provided in the startup arguments, that seed is used in this object.
      */
@@ -254,36 +605,119 @@ public class SumoEnvironmentInterface implements TickHookProcessor {
     }
 
     /**
-     * Starts a connection with SUMO, using parameters set with the command line arguments, or where missing
+     * Obtain the timing and volume metrics of the ticks performed so far
+     *
+     * @return Tick metrics
+     */
+    public TickMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Register the agent type of every vehicle, so statistics can be split by agent type. When statistics are logged,
+     * the types are written to {@value StatisticsExtractor#VEHICLE_TYPES_FILE} in the statistics directory.
+     *
+     * @param vehicleTypes Map from SUMO vehicle ID to agent type
+     */
+    public void setVehicleTypes(Map<String, String> vehicleTypes) {
+        if (this.statisticsExtractor != null) {
+            this.statisticsExtractor.setVehicleTypes(vehicleTypes);
+        }
+
+        File statisticsDirectory = getStatisticsDirectory();
+        if (statisticsDirectory != null) {
+            File file = new File(statisticsDirectory, StatisticsExtractor.VEHICLE_TYPES_FILE);
+            try {
+                StatisticsExtractor.writeVehicleTypes(file, vehicleTypes);
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "Could not write vehicle types to " + file, e);
+            }
+        }
+    }
+
+    /**
+     * Obtain the latency and volume of the requests made to the simulation so far
+     *
+     * @return Command metrics, or null if the backend is not instrumented
+     */
+    @Nullable
+    public CommandMetrics getCommandMetrics() {
+        return commandMetrics;
+    }
+
+    /**
+     * Create the backend running the simulation, as selected with the backend option. TraCI is used by default. The
+     * synthetic backend does not run SUMO at all, and is meant for measuring the cost of the agents at scale.
+     *
+     * @param args  Parsed command line arguments
+     * @return Backend, not yet started
+     */
+    private SumoBackend createBackend(CommandLine args) {
+        String type = args.getOptionValue("backend", "traci");
+        LOG.info("Using " + type + " simulation backend");
+
+        switch (type) {
+            case "traci":
+                int dispatchBatchSize = args.hasOption("dispatch-batch-size") ?
+                        Integer.parseInt(args.getOptionValue("dispatch-batch-size")) :
+                        CommandBatchDispatcher.DEFAULT_BATCH_SIZE;
+                return new TraciSumoBackend(dispatchBatchSize);
+            case "libsumo":
+                return new LibsumoBackend();
+            case "synthetic":
+                return new SyntheticSumoBackend();
+            default:
+                throw new IllegalArgumentException("Unknown backend " + type +
+                        ". Valid values are traci, libsumo and synthetic");
+        }
+    }
+
+    /**
+     * @param encoding  Value of the matrix-encoding option
+     * @return True iff actions should be sent through the Matrix in the binary encoding
+     */
+    private static boolean parseMatrixEncoding(String encoding) {
+        switch (encoding) {
+            case "json":
+                return false;
+            case "binary":
+                return true;
+            default:
+                throw new IllegalArgumentException("Unknown matrix encoding " + encoding +
+                        ". Valid values are binary and json");
+        }
+    }
+
+    /**
+     * Starts the simulation, using parameters set with the command line arguments, or where missing
      * using defaults
      *
      * @return Boolean indicating success status
      */
     private boolean startConnection() {
-        this.connection = new SumoTraciConnection(this.sumoBinary, this.configFile);
-        this.connection.addOption("step-length", this.stepLength);
-        this.connection.addOption("start", "1"); // Start right away
-        this.connection.addOption("collision.action", this.collisionAction);
-        this.connection.addOption("seed", "42");
-        
+        Map<String, String> options = new LinkedHashMap<>();
+        options.put("step-length", this.stepLength);
+        options.put("start", "1"); // Start right away
+        options.put("collision.action", this.collisionAction);
+        options.put("seed", "42");
+
         String sumo_error_log = System.getenv("SUMO_ERROR_LOG");
         if (sumo_error_log != null) {
-            this.connection.addOption("error-log", sumo_error_log);
+            options.put("error-log", sumo_error_log);
         }
 
         if (this.netFile != null)
-            this.connection.addOption("net-file", this.netFile);
+            options.put("net-file", this.netFile);
 
-        if (this.agentStatisticsFile != null)  this.connection.addOption("fcd-output", this.agentStatisticsFile);
-        if (this.routesStatisticsFile != null)  this.connection.addOption("tripinfo-output", this.routesStatisticsFile);
-        if (this.emissionStatisticsFile != null)  this.connection.addOption("emission-output", this.emissionStatisticsFile);
-        if (this.summaryStatisticsFile != null) this.connection.addOption("summary", this.summaryStatisticsFile);
-
-        LOG.info("Starting SUMO with following command using connection " + this.connection.toString());
+        if (this.agentStatisticsFile != null)  options.put("fcd-output", this.agentStatisticsFile);
+        if (this.routesStatisticsFile != null)  options.put("tripinfo-output", this.routesStatisticsFile);
+        if (this.emissionStatisticsFile != null)  options.put("emission-output", this.emissionStatisticsFile);
+        if (this.summaryStatisticsFile != null) options.put("summary", this.summaryStatisticsFile);
 
         try {
-            this.connection.runServer();
-            this.routes = (List<String>) this.connection.do_job_get(Route.getIDList());
+            this.backend.start(this.sumoBinary, this.configFile, options, this);
+            this.networkCache = NetworkCache.load(this.backend);
+            this.routes = RouteTable.load(this.backend, this.networkCache.getEdges());
             return true;
         } catch (Exception e) {
             LOG.log(Level.SEVERE, "Could not start connection with SUMO", e);
@@ -294,15 +728,10 @@ public class SumoEnvironmentInterface implements TickHookProcessor {
     }
 
     /**
-     * Closes the connection with the SUMO environment.
+     * Stops the simulation
      */
     private void closeConnection() {
-        if (this.connection != null && !this.connection.isClosed()) {
-            LOG.info("Closing SUMO connection");
-            this.connection.close();
-        } else {
-            LOG.info("Tried to close SUMO connection, but connection is already closed");
-        }
+        this.backend.close();
     }
 
     /**
@@ -327,6 +756,44 @@ public class SumoEnvironmentInterface implements TickHookProcessor {
         return statisticsFile;
     }
 
+    /**
+     * @param sumoID SUMO ID of a vehicle
+     * @return Budget of the agent driving the vehicle, or NaN if unknown
+     */
+    private double getAgentBudget(String sumoID) {
+        for (EnvironmentAgentInterface observer : this.environmentObservers) {
+            double budget = observer.getBudget(sumoID);
+            if (!Double.isNaN(budget)) return budget;
+        }
+        return Double.NaN;
+    }
+
+    /**
+     * Compute the speed limit sanction of a vehicle in the given state. Only uses the network cache, so it can be
+     * called from any thread
+     *
+     * @param sumoID SUMO ID of the vehicle
+     * @param state  State of the vehicle
+     * @return Sanction for exceeding the speed limit, or NaN if the speed limit of the lane is unknown
+     */
+    private double getSpeedLimitSanction(String sumoID, VehicleState state) {
+        double laneMaxSpeed = state.getLaneID() == null ?
+                Double.NaN : this.networkCache.getLaneMaxSpeed(state.getLaneID());
+        return Double.isNaN(laneMaxSpeed) ?
+                Double.NaN : this.institution.getSpeedLimitSanction(state.getSpeed(), laneMaxSpeed);
+    }
+
+    /**
+     * @return Directory the agent, route or emission statistics are logged to, or null if none of these are logged
+     */
+    @Nullable
+    private File getStatisticsDirectory() {
+        for (String file : new String[]{this.agentStatisticsFile, this.routesStatisticsFile, this.emissionStatisticsFile}) {
+            if (file != null) return new File(file).getAbsoluteFile().getParentFile();
+        }
+        return null;
+    }
+
     /**
      * Generate a log file name for passing to SUMO
      *
@@ -401,59 +868,107 @@ public class SumoEnvironmentInterface implements TickHookProcessor {
     }
 
     /**
-     * SUMO removes cars that have arrived at their intended destination. This method checks which agents have arrived
-     * and thus been removed during the last simulation step. The agent interface is notified of agents that have been
-     * removed from the sumo environment
+     * SUMO removes cars that have arrived at their intended destination. This method processes the vehicles that
+     * arrived and thus have been removed during the last simulation step, as reported by the backend. The agent
+     * interface is notified of agents that have been removed from the sumo environment
      * <p>
      * This method should be called in the pre- or post-hook of every tick
+     *
+     * @return SUMO ID's of the vehicles that arrived during the last step
      */
-    private void resetArrived() {
-        List<String> removedAgents;
-        try {
-            removedAgents = (List<String>) this.connection.do_job_get(Simulation.getArrivedIDList());
-            LOG.fine(removedAgents.size() + " agents arrived at the previous time step and have been removed from SUMO");
-        } catch (Exception e) {
-            LOG.log(Level.WARNING, "Exception occurred requesting list of arrived vehicles", e);
-            removedAgents = Collections.emptyList();
-        }
+    private List<String> resetArrived() {
+        List<String> removedAgents = this.arrivedVehicles;
+        this.arrivedVehicles = new ArrayList<>();
+        LOG.fine(removedAgents.size() + " agents arrived at the previous time step and have been removed from SUMO");
 
+        this.metrics.countArrivedVehicles(removedAgents.size());
         if (!removedAgents.isEmpty()) {
-            this.activeAgentIDs.removeAll(removedAgents);
+            removedAgents.forEach(this.agents::deactivate);
+            removedAgents.forEach(this.vehicleStatesBuilder::remove);
+            removedAgents.forEach(this.appliedState::clear);
+            removedAgents.forEach(this.loadedVehicles::remove);
             this.notifyAgentsArrived(removedAgents);
         }
+        return removedAgents;
     }
 
     /**
-     * Agents can request to enter the world themselves, but this may fail for whatever reason. This method allows
-     * verifying which agents have successfully entered the simulation environment in the last simulation time step,
-     * keeps track of all active agents, and notifies the agent interface of successfully entered agents.
+     * Agents can request to enter the world themselves, but this may fail for whatever reason. This method processes
+     * the vehicles that have successfully entered the simulation environment in the last simulation time step, as
+     * reported by the backend, keeps track of all active agents, and notifies the agent
+     * interface of successfully entered agents. Only vehicles that departed are processed, so the cost of this method
+     * depends on the number of departures, not on the number of vehicles in the environment.
      * <p>
-     * This method should be called in the pre- or post-hook of every tick
+     * This method should be called in the pre- or post-hook of every tick, after {@link #resetArrived()}
+     *
+     * @param arrivedAgents SUMO ID's of the vehicles that arrived during the last step
      */
-    private void updateActiveAgents() {
-        List<String> presentAgents;
-        List<String> enteredAgents = new ArrayList<>();
-        try {
-            presentAgents = (List<String>) this.connection.do_job_get(Vehicle.getIDList());
-        } catch (Exception e) {
-            presentAgents = Collections.emptyList();
-        }
+    private void updateActiveAgents(List<String> arrivedAgents) {
+        List<String> departedAgents = this.departedVehicles;
+        this.departedVehicles = new ArrayList<>();
+        List<String> enteredAgents = new ArrayList<>(departedAgents.size());
+        Set<String> arrived = arrivedAgents.isEmpty() ? Collections.emptySet() : new HashSet<>(arrivedAgents);
 
-        for (String sumoAgentID : presentAgents) {
-            if (this.activeAgentIDs.add(sumoAgentID)) {
+        for (String sumoAgentID : departedAgents) {
+            this.loadedVehicles.remove(sumoAgentID);
+            // A vehicle that departed and arrived during the same step is not in the environment anymore
+            if (arrived.contains(sumoAgentID)) continue;
+            if (this.agents.activate(sumoAgentID)) {
                 enteredAgents.add(sumoAgentID);
+                this.backend.subscribeVehicle(sumoAgentID);
                 LOG.finer("SUMO agent " + sumoAgentID + " is now in the environment");
             }
         }
 
-        LOG.fine(this.activeAgentIDs.size() + " agents active in the environment. " +
+        if (this.teleportedVehicles > 0) {
+            LOG.fine(this.teleportedVehicles + " vehicles started teleporting during the last step");
+            this.teleportedVehicles = 0;
+        }
+
+        LOG.fine(this.agents.getActiveCount() + " agents active in the environment. " +
                 enteredAgents.size() + " entered during the last step");
 
+        this.metrics.countEnteredVehicles(enteredAgents.size());
         if (!enteredAgents.isEmpty()) {
             this.notifyAgentsEntered(enteredAgents);
         }
     }
 
+    @Override
+    public void vehiclesDeparted(List<String> vehicleIDs) {
+        this.departedVehicles.addAll(vehicleIDs);
+    }
+
+    @Override
+    public void vehiclesArrived(List<String> vehicleIDs) {
+        this.arrivedVehicles.addAll(vehicleIDs);
+    }
+
+    @Override
+    public void vehiclesTeleported(int count) {
+        this.teleportedVehicles += count;
+    }
+
+    @Override
+    public void vehicleSpeed(String vehicleID, double speed) {
+        this.vehicleStatesBuilder.setSpeed(vehicleID, speed);
+    }
+
+    @Override
+    public void vehicleLane(String vehicleID, String laneID) {
+        this.vehicleStatesBuilder.setLaneID(vehicleID, laneID);
+    }
+
+    @Override
+    public void vehiclePosition(String vehicleID, double x, double y) {
+        this.vehicleStatesBuilder.setPosition(vehicleID, x, y);
+    }
+
+    @Override
+    public void vehicleCo2Emission(String vehicleID, double co2Emission) {
+        this.vehicleStatesBuilder.setCo2Emission(vehicleID, co2Emission);
+    }
+
     /**
      * Add an agent interface as a listener to this environment
      *
@@ -492,4 +1007,21 @@ public class SumoEnvironmentInterface implements TickHookProcessor {
     private void notifyAgentsEntered(List<String> enteredAgents) {
         this.environmentObservers.forEach(listener -> listener.notifyAgentsEntered(enteredAgents));
     }
+
+    /**
+     * Notifies all subscribed listeners of the vehicle states received during the last time step
+     *
+     * @param vehicleStates Snapshot of the vehicle states for the current tick
+     */
+    private void notifyVehicleStates(VehicleStateSnapshot vehicleStates) {
+        this.environmentObservers.forEach(listener -> listener.updateCo2Backlogs(vehicleStates));
+    }
+
+    /**
+     * Notifies all subscribed listeners that a tick starts, after arrivals, departures and vehicle states of the last
+     * time step have been processed
+     */
+    private void notifyTickStarted() {
+        this.environmentObservers.forEach(EnvironmentAgentInterface::startTick);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,346 @@
+package sumo;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.logging.Logger;
+
+/**
+ * The road network, routes and vehicle types of a SUMO configuration, as used by the {@link SyntheticSumoBackend}.
+ * <p>
+ * Only what the synthetic backend needs is read: edges and lanes, the connections between edges, named routes and
+ * vehicle types. Internal edges (junction interiors) are skipped, as the synthetic model moves vehicles from the end
+ * of one edge directly to the start of the next. Files are read with a streaming parser, so large networks do not
+ * have to be held in memory as a DOM.
+ */
+class SyntheticNetwork {
+    private static final Logger LOG = Logger.getLogger(SyntheticNetwork.class.getName());
+
+    /**
+     * Default attributes of SUMO's default passenger vehicle type
+     */
+    static final VehicleType DEFAULT_TYPE = new VehicleType("DEFAULT_VEHTYPE", 55.55, 2.5, 2.6, 4.5, 5.0);
+
+    final IdDictionary edgeIDs = new IdDictionary();
+    final List<Edge> edges = new ArrayList<>();
+    final Map<String, Lane> lanes = new LinkedHashMap<>();
+    final Map<String, int[]> routes = new LinkedHashMap<>();
+    final Map<String, VehicleType> vehicleTypes = new HashMap<>();
+
+    private final Map<String, Set<String>> connections = new HashMap<>();
+
+    /**
+     * Read the network and all route and additional files referenced by a SUMO configuration file
+     *
+     * @param configFile    SUMO configuration file
+     * @param netFile       Network file to use instead of the one in the configuration file. May be null
+     * @return Loaded network
+     */
+    static SyntheticNetwork load(String configFile, String netFile) throws IOException, XMLStreamException {
+        long start = System.currentTimeMillis();
+        File config = new File(configFile);
+        File baseDir = config.getAbsoluteFile().getParentFile();
+
+        List<File> netFiles = new ArrayList<>();
+        List<File> routeFiles = new ArrayList<>();
+        try (InputStream in = new FileInputStream(config)) {
+            XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(in);
+            while (reader.hasNext()) {
+                if (reader.next() != XMLStreamConstants.START_ELEMENT) continue;
+                String value = reader.getAttributeValue(null, "value");
+                if (value == null) continue;
+                switch (reader.getLocalName()) {
+                    case "net-file":
+                        netFiles.addAll(resolveFiles(baseDir, value));
+                        break;
+                    case "route-files":
+                    case "additional-files":
+                        routeFiles.addAll(resolveFiles(baseDir, value));
+                        break;
+                }
+            }
+            reader.close();
+        }
+
+        if (netFile != null) {
+            netFiles = Collections.singletonList(new File(netFile));
+        }
+        if (netFiles.isEmpty()) {
+            throw new IOException("No network file specified in " + configFile);
+        }
+
+        SyntheticNetwork network = new SyntheticNetwork();
+        network.vehicleTypes.put(DEFAULT_TYPE.id, DEFAULT_TYPE);
+        for (File file : netFiles) network.readNetwork(file);
+        network.linkEdges();
+        for (File file : routeFiles) {
+            if (file.exists()) {
+                network.readRoutes(file);
+            } else {
+                LOG.warning("Route or additional file " + file + " does not exist. Skipping");
+            }
+        }
+
+        LOG.info(String.format("Loaded synthetic network with %d edges, %d lanes and %d routes in %d milliseconds",
+                network.edges.size(), network.lanes.size(), network.routes.size(),
+                System.currentTimeMillis() - start));
+        return network;
+    }
+
+    /**
+     * Code a list of edge IDs as edge indices
+     *
+     * @param edgeIDs   IDs of the edges
+     * @return Indices of the edges
+     * @throws IllegalArgumentException if an edge is not part of the network
+     */
+    int[] toEdgeIndices(List<String> edgeIDs) {
+        int[] route = new int[edgeIDs.size()];
+        int i = 0;
+        for (String edgeID : edgeIDs) {
+            int edge = this.edgeIDs.indexOf(edgeID);
+            if (edge == IdDictionary.UNKNOWN) {
+                throw new IllegalArgumentException("Unknown edge " + edgeID);
+            }
+            route[i++] = edge;
+        }
+        return route;
+    }
+
+    /**
+     * Find the route with the shortest free-flow travel time between two edges
+     *
+     * @param source    Index of the first edge
+     * @param target    Index of the last edge
+     * @return Indices of the edges of the route, or null if the target cannot be reached
+     */
+    int[] findRoute(int source, int target) {
+        double[] travelTime = new double[this.edges.size()];
+        int[] previous = new int[this.edges.size()];
+        Arrays.fill(travelTime, Double.POSITIVE_INFINITY);
+        Arrays.fill(previous, -1);
+
+        PriorityQueue<double[]> queue = new PriorityQueue<>((a, b) -> Double.compare(a[0], b[0]));
+        travelTime[source] = this.edges.get(source).freeFlowTime();
+        queue.add(new double[]{travelTime[source], source});
+
+        while (!queue.isEmpty()) {
+            double[] entry = queue.poll();
+            int edge = (int) entry[1];
+            if (entry[0] > travelTime[edge]) continue;
+            if (edge == target) break;
+            for (int next : this.edges.get(edge).successors) {
+                double time = travelTime[edge] + this.edges.get(next).freeFlowTime();
+                if (time < travelTime[next]) {
+                    travelTime[next] = time;
+                    previous[next] = edge;
+                    queue.add(new double[]{time, next});
+                }
+            }
+        }
+
+        if (Double.isInfinite(travelTime[target])) return null;
+
+        int length = 0;
+        for (int edge = target; edge != -1; edge = previous[edge]) length++;
+        int[] route = new int[length];
+        for (int edge = target, i = length - 1; edge != -1; edge = previous[edge], i--) {
+            route[i] = edge;
+        }
+        return route;
+    }
+
+    private void readNetwork(File file) throws IOException, XMLStreamException {
+        try (InputStream in = new FileInputStream(file)) {
+            XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(in);
+            Edge edge = null;
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.END_ELEMENT && "edge".equals(reader.getLocalName())) {
+                    edge = null;
+                    continue;
+                }
+                if (event != XMLStreamConstants.START_ELEMENT) continue;
+
+                switch (reader.getLocalName()) {
+                    case "edge":
+                        if (!"internal".equals(reader.getAttributeValue(null, "function"))) {
+                            String id = reader.getAttributeValue(null, "id");
+                            edge = new Edge(this.edgeIDs.intern(id), id);
+                            this.edges.add(edge);
+                        }
+                        break;
+                    case "lane":
+                        if (edge != null) {
+                            Lane lane = readLane(reader, edge);
+                            edge.lanes.add(lane);
+                            this.lanes.put(lane.id, lane);
+                        }
+                        break;
+                    case "connection":
+                        String from = reader.getAttributeValue(null, "from");
+                        String to = reader.getAttributeValue(null, "to");
+                        if (from != null && to != null && !from.startsWith(":") && !to.startsWith(":")) {
+                            this.connections.computeIfAbsent(from, k -> new LinkedHashSet<>()).add(to);
+                        }
+                        break;
+                }
+            }
+            reader.close();
+        }
+    }
+
+    private Lane readLane(XMLStreamReader reader, Edge edge) {
+        String id = reader.getAttributeValue(null, "id");
+        double speed = parseDouble(reader.getAttributeValue(null, "speed"), 13.89);
+        double length = parseDouble(reader.getAttributeValue(null, "length"), 0);
+        String allow = reader.getAttributeValue(null, "allow");
+        List<String> allowed = allow == null || allow.isEmpty() ?
+                Collections.emptyList() : Arrays.asList(allow.trim().split("\\s+"));
+
+        double[] shape = {0, 0, 0, 0};
+        String shapeValue = reader.getAttributeValue(null, "shape");
+        if (shapeValue != null) {
+            String[] points = shapeValue.trim().split("\\s+");
+            String[] first = points[0].split(",");
+            String[] last = points[points.length - 1].split(",");
+            shape = new double[]{
+                    Double.parseDouble(first[0]), Double.parseDouble(first[1]),
+                    Double.parseDouble(last[0]), Double.parseDouble(last[1])};
+        }
+
+        return new Lane(id, edge.index, speed, length, allowed, shape);
+    }
+
+    private void readRoutes(File file) throws IOException, XMLStreamException {
+        try (InputStream in = new FileInputStream(file)) {
+            XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(in);
+            while (reader.hasNext()) {
+                if (reader.next() != XMLStreamConstants.START_ELEMENT) continue;
+                String id = reader.getAttributeValue(null, "id");
+                if (id == null) continue;
+
+                if ("route".equals(reader.getLocalName())) {
+                    String edges = reader.getAttributeValue(null, "edges");
+                    if (edges == null) continue;
+                    try {
+                        this.routes.put(id, toEdgeIndices(Arrays.asList(edges.trim().split("\\s+"))));
+                    } catch (IllegalArgumentException e) {
+                        LOG.warning("Skipping route " + id + ": " + e.getMessage());
+                    }
+                } else if ("vType".equals(reader.getLocalName())) {
+                    this.vehicleTypes.put(id, new VehicleType(id,
+                            parseDouble(reader.getAttributeValue(null, "maxSpeed"), DEFAULT_TYPE.maxSpeed),
+                            parseDouble(reader.getAttributeValue(null, "minGap"), DEFAULT_TYPE.minGap),
+                            parseDouble(reader.getAttributeValue(null, "accel"), DEFAULT_TYPE.accel),
+                            parseDouble(reader.getAttributeValue(null, "decel"), DEFAULT_TYPE.decel),
+                            parseDouble(reader.getAttributeValue(null, "length"), DEFAULT_TYPE.length)));
+                }
+            }
+            reader.close();
+        }
+    }
+
+    private void linkEdges() {
+        for (Edge edge : this.edges) {
+            Set<String> next = this.connections.getOrDefault(edge.id, Collections.emptySet());
+            edge.successors = next.stream().mapToInt(this.edgeIDs::indexOf).filter(i -> i >= 0).toArray();
+        }
+        this.connections.clear();
+    }
+
+    private static List<File> resolveFiles(File baseDir, String value) {
+        List<File> files = new ArrayList<>();
+        for (String name : value.split("[,\\s]+")) {
+            if (name.isEmpty()) continue;
+            File file = new File(name);
+            files.add(file.isAbsolute() ? file : new File(baseDir, name));
+        }
+        return files;
+    }
+
+    private static double parseDouble(String value, double defaultValue) {
+        return value == null ? defaultValue : Double.parseDouble(value);
+    }
+
+    static final class Edge {
+        final int index;
+        final String id;
+        final List<Lane> lanes = new ArrayList<>(2);
+        int[] successors = new int[0];
+
+        Edge(int index, String id) {
+            this.index = index;
+            this.id = id;
+        }
+
+        /**
+         * @return Time needed to traverse this edge at the maximum speed of its first lane
+         */
+        double freeFlowTime() {
+            if (this.lanes.isEmpty()) return 0;
+            Lane lane = this.lanes.get(0);
+            return lane.length / Math.max(0.1, lane.maxSpeed);
+        }
+    }
+
+    static final class Lane {
+        final String id;
+        final int edge;
+        final double length;
+        final List<String> allowed;
+        final double x0, y0, x1, y1;
+        volatile double maxSpeed;
+
+        /**
+         * Vehicles on this lane, from the vehicle closest to the end of the lane to the vehicle that entered last
+         */
+        final ArrayDeque<SyntheticSumoBackend.SyntheticVehicle> vehicles = new ArrayDeque<>();
+
+        Lane(String id, int edge, double maxSpeed, double length, List<String> allowed, double[] shape) {
+            this.id = id;
+            this.edge = edge;
+            this.maxSpeed = maxSpeed;
+            this.length = length;
+            this.allowed = allowed;
+            this.x0 = shape[0];
+            this.y0 = shape[1];
+            this.x1 = shape[2];
+            this.y1 = shape[3];
+        }
+    }
+
+    static final class VehicleType {
+        final String id;
+        final double maxSpeed;
+        final double minGap;
+        final double accel;
+        final double decel;
+        final double length;
+
+        VehicleType(String id, double maxSpeed, double minGap, double accel, double decel, double length) {
+            this.id = id;
+            this.maxSpeed = maxSpeed;
+            this.minGap = minGap;
+            this.accel = accel;
+            this.decel = decel;
+            this.length = length;
+        }
+    }
+}
@@ -0,0 +1,416 @@
+package sumo;
+
+import agent.plan.PlanMessage;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A pure Java stand-in for SUMO, for measuring the cost of the agent side at scale without a SUMO process whose step
+ * time hides that cost.
+ * <p>
+ * Networks, routes and vehicle types are read from the same configuration files SUMO would use. Vehicles move with
+ * a cheap kinematic model: every vehicle accelerates towards the lowest of its own maximum speed and the maximum
+ * speed of its lane, and never closer to its leader on the same lane than its minimum gap. Vehicles keep their lane
+ * index from edge to edge, do not change lanes, and pass junctions without conflicts. A vehicle waits at the end of
+ * an edge while the next edge has no room for it. CO2 emissions are estimated from the tractive power, and are only
+ * meant to be of the right order of magnitude.
+ * <p>
+ * The model is not meant to produce realistic traffic, only realistic work for the agents: vehicles depart, drive,
+ * slow down behind each other, react to their maximum speed and minimum gap, and arrive. SUMO output files are not
+ * written.
+ */
+public class SyntheticSumoBackend implements SumoBackend {
+    private static final Logger LOG = Logger.getLogger(SyntheticSumoBackend.class.getName());
+
+    /**
+     * Speed in m/s vehicles depart with, matching the departure speed agents request
+     */
+    private static final double DEPART_SPEED = 2;
+
+    /**
+     * Parameters of the CO2 estimate. Emissions are a constant idle rate, plus a rate proportional to the power needed
+     * to overcome inertia, rolling resistance and drag of a typical passenger car
+     */
+    private static final double IDLE_CO2 = 1000; // mg/s
+    private static final double CO2_PER_JOULE = 0.29; // mg/J, petrol engine at about 25% efficiency
+    private static final double MASS = 1300; // kg
+    private static final double ROLLING_RESISTANCE = 0.01 * 9.81;
+    private static final double DRAG = 0.5 * 1.2 * 0.7; // air density * drag coefficient * frontal area
+
+    private static final String[] IGNORED_OUTPUTS = {"fcd-output", "tripinfo-output", "emission-output", "summary"};
+
+    private SyntheticNetwork network;
+    private SumoBackendListener listener;
+
+    private final Map<String, SyntheticVehicle> vehicles = new HashMap<>();
+    private final ArrayDeque<SyntheticVehicle> pendingInsertions = new ArrayDeque<>();
+    private final Set<String> subscribedVehicles = new LinkedHashSet<>();
+    private final Map<String, int[]> addedRoutes = new HashMap<>();
+
+    private int stepLength = 1000;
+    private int time = 0;
+    private long step = 0;
+    private List<PlanMessage> failedJobs = new ArrayList<>();
+    private boolean running = false;
+
+    @Override
+    public void start(String sumoBinary, String configFile, Map<String, String> options, SumoBackendListener listener)
+            throws Exception {
+        this.listener = listener;
+        if (options.containsKey("step-length")) {
+            this.stepLength = (int) Math.round(Double.parseDouble(options.get("step-length")) * 1000);
+        }
+        for (String output : IGNORED_OUTPUTS) {
+            if (options.containsKey(output)) {
+                LOG.warning("The synthetic backend does not write " + output + " to " + options.get(output));
+            }
+        }
+
+        this.network = SyntheticNetwork.load(configFile, options.get("net-file"));
+        this.running = true;
+    }
+
+    @Override
+    public void step() {
+        this.step++;
+        this.time += this.stepLength;
+        double dt = this.stepLength / 1000.0;
+
+        List<String> departed = insertPendingVehicles();
+        List<String> arrived = new ArrayList<>();
+        for (SyntheticNetwork.Lane lane : this.network.lanes.values()) {
+            if (!lane.vehicles.isEmpty()) {
+                moveVehicles(lane, dt, arrived);
+            }
+        }
+
+        if (!departed.isEmpty()) this.listener.vehiclesDeparted(departed);
+        if (!arrived.isEmpty()) {
+            this.subscribedVehicles.removeAll(arrived);
+            this.listener.vehiclesArrived(arrived);
+        }
+
+        for (String vehicleID : this.subscribedVehicles) {
+            SyntheticVehicle vehicle = this.vehicles.get(vehicleID);
+            if (vehicle == null || vehicle.lane == null) continue;
+            SyntheticNetwork.Lane lane = vehicle.lane;
+            double f = lane.length > 0 ? Math.min(1, vehicle.position / lane.length) : 0;
+            this.listener.vehicleSpeed(vehicleID, vehicle.speed);
+            this.listener.vehicleLane(vehicleID, lane.id);
+            this.listener.vehiclePosition(vehicleID, lane.x0 + (lane.x1 - lane.x0) * f, lane.y0 + (lane.y1 - lane.y0) * f);
+            this.listener.vehicleCo2Emission(vehicleID, vehicle.co2Emission);
+        }
+    }
+
+    /**
+     * Insert vehicles whose departure time has passed on the first edge of their route, in the order they were added.
+     * Vehicles for which there is no room yet are tried again next step.
+     */
+    private List<String> insertPendingVehicles() {
+        List<String> departed = new ArrayList<>();
+        Iterator<SyntheticVehicle> pending = this.pendingInsertions.iterator();
+        while (pending.hasNext()) {
+            SyntheticVehicle vehicle = pending.next();
+            if (vehicle.departTime > this.time) continue;
+
+            SyntheticNetwork.Lane lane = laneOf(vehicle.route[0], vehicle.laneIndex);
+            if (lane != null && hasRoom(lane, vehicle, 0)) {
+                pending.remove();
+                vehicle.lane = lane;
+                vehicle.position = 0;
+                vehicle.speed = Math.min(DEPART_SPEED, maxSpeed(vehicle, lane));
+                vehicle.movedInStep = this.step;
+                lane.vehicles.addLast(vehicle);
+                departed.add(vehicle.id);
+            }
+        }
+        return departed;
+    }
+
+    /**
+     * Move all vehicles on a lane, from the vehicle closest to the end of the lane to the last. Vehicles that pass the
+     * end of the lane continue on the next edge of their route, or arrive if it was their last edge.
+     */
+    private void moveVehicles(SyntheticNetwork.Lane lane, double dt, List<String> arrived) {
+        SyntheticVehicle leader = null;
+        for (SyntheticVehicle vehicle : lane.vehicles) {
+            // Vehicles that entered this lane from another lane during this step have already moved
+            if (vehicle.movedInStep != this.step) {
+                double speed = Math.min(vehicle.speed + vehicle.type.accel * dt, maxSpeed(vehicle, lane));
+                if (leader != null) {
+                    double gap = leader.position - leader.type.length - vehicle.position - vehicle.minGap;
+                    speed = Math.min(speed, Math.max(0, gap / dt));
+                }
+                double acceleration = (speed - vehicle.speed) / dt;
+                vehicle.speed = speed;
+                vehicle.position += speed * dt;
+                vehicle.co2Emission = co2Emission(speed, acceleration);
+                vehicle.movedInStep = this.step;
+            }
+            leader = vehicle;
+        }
+
+        while (!lane.vehicles.isEmpty() && lane.vehicles.peekFirst().position >= lane.length) {
+            SyntheticVehicle vehicle = lane.vehicles.peekFirst();
+            if (vehicle.routeIndex + 1 >= vehicle.route.length) {
+                lane.vehicles.pollFirst();
+                this.vehicles.remove(vehicle.id);
+                vehicle.lane = null;
+                arrived.add(vehicle.id);
+                continue;
+            }
+
+            double overflow = vehicle.position - lane.length;
+            SyntheticNetwork.Lane next = laneOf(vehicle.route[vehicle.routeIndex + 1], vehicle.laneIndex);
+            if (next == null || !hasRoom(next, vehicle, overflow)) {
+                // Wait at the end of the lane, which also holds back all vehicles behind
+                vehicle.position = lane.length;
+                vehicle.speed = 0;
+                break;
+            }
+
+            lane.vehicles.pollFirst();
+            vehicle.routeIndex++;
+            vehicle.lane = next;
+            vehicle.position = overflow;
+            next.vehicles.addLast(vehicle);
+        }
+    }
+
+    private static boolean hasRoom(SyntheticNetwork.Lane lane, SyntheticVehicle vehicle, double position) {
+        SyntheticVehicle last = lane.vehicles.peekLast();
+        return last == null || last.position - last.type.length - vehicle.minGap >= position;
+    }
+
+    private static double maxSpeed(SyntheticVehicle vehicle, SyntheticNetwork.Lane lane) {
+        return Math.min(vehicle.maxSpeed, lane.maxSpeed);
+    }
+
+    private static double co2Emission(double speed, double acceleration) {
+        double power = speed * (MASS * (acceleration + ROLLING_RESISTANCE) + DRAG * speed * speed);
+        return IDLE_CO2 + CO2_PER_JOULE * Math.max(0, power);
+    }
+
+    /**
+     * @return Lane of an edge with the given index, or its rightmost lane if the edge has fewer lanes
+     */
+    private SyntheticNetwork.Lane laneOf(int edge, int laneIndex) {
+        List<SyntheticNetwork.Lane> lanes = this.network.edges.get(edge).lanes;
+        return lanes.isEmpty() ? null : lanes.get(Math.min(laneIndex, lanes.size() - 1));
+    }
+
+    @Override
+    public int getCurrentTime() {
+        return this.time;
+    }
+
+    @Override
+    public void subscribeVehicle(String vehicleID) {
+        if (this.vehicles.containsKey(vehicleID)) {
+            this.subscribedVehicles.add(vehicleID);
+        }
+    }
+
+    @Override
+    public List<String> getEdgeIDs() {
+        List<String> edgeIDs = new ArrayList<>(this.network.edges.size());
+        for (SyntheticNetwork.Edge edge : this.network.edges) edgeIDs.add(edge.id);
+        return edgeIDs;
+    }
+
+    @Override
+    public int getEdgeLaneCount(String edgeID) {
+        int edge = this.network.edgeIDs.indexOf(edgeID);
+        return edge == IdDictionary.UNKNOWN ? -1 : this.network.edges.get(edge).lanes.size();
+    }
+
+    @Override
+    public List<String> getLaneIDs() {
+        return new ArrayList<>(this.network.lanes.keySet());
+    }
+
+    @Override
+    public double getLaneMaxSpeed(String laneID) {
+        SyntheticNetwork.Lane lane = this.network.lanes.get(laneID);
+        return lane == null ? Double.NaN : lane.maxSpeed;
+    }
+
+    @Override
+    public double getLaneLength(String laneID) {
+        SyntheticNetwork.Lane lane = this.network.lanes.get(laneID);
+        return lane == null ? Double.NaN : lane.length;
+    }
+
+    @Override
+    public List<String> getLaneAllowed(String laneID) {
+        SyntheticNetwork.Lane lane = this.network.lanes.get(laneID);
+        return lane == null ? null : lane.allowed;
+    }
+
+    @Override
+    public boolean setLaneMaxSpeed(String laneID, double maxSpeed) {
+        SyntheticNetwork.Lane lane = this.network.lanes.get(laneID);
+        if (lane == null) {
+            LOG.warning("Could not set maximum speed of unknown lane " + laneID);
+            return false;
+        }
+        lane.maxSpeed = maxSpeed;
+        return true;
+    }
+
+    @Override
+    public List<String> getRouteIDs() {
+        return new ArrayList<>(this.network.routes.keySet());
+    }
+
+    @Override
+    public List<String> getRouteEdges(String routeID) {
+        int[] route = findRouteEdges(routeID);
+        if (route == null) return Collections.emptyList();
+        List<String> edgeIDs = new ArrayList<>(route.length);
+        for (int edge : route) edgeIDs.add(this.network.edgeIDs.get(edge));
+        return edgeIDs;
+    }
+
+    @Override
+    public List<String> findRoute(String sourceEdgeID, String targetEdgeID, String vehicleType) {
+        int source = this.network.edgeIDs.indexOf(sourceEdgeID);
+        int target = this.network.edgeIDs.indexOf(targetEdgeID);
+        if (source == IdDictionary.UNKNOWN || target == IdDictionary.UNKNOWN) {
+            LOG.warning("Cannot find route from edge " + sourceEdgeID + " to " + targetEdgeID + ". Unknown edge");
+            return null;
+        }
+
+        int[] route = this.network.findRoute(source, target);
+        if (route == null) return null;
+        List<String> edgeIDs = new ArrayList<>(route.length);
+        for (int edge : route) edgeIDs.add(this.network.edgeIDs.get(edge));
+        return edgeIDs;
+    }
+
+    @Override
+    public void addRoute(String routeID, List<String> edgeIDs) {
+        if (findRouteEdges(routeID) != null) {
+            throw new IllegalArgumentException("Route " + routeID + " already exists");
+        }
+        if (edgeIDs.isEmpty()) {
+            throw new IllegalArgumentException("Route " + routeID + " has no edges");
+        }
+        this.addedRoutes.put(routeID, this.network.toEdgeIndices(edgeIDs));
+    }
+
+    @Override
+    public void addVehicle(String vehicleID, String typeID, String routeID, int departTime, byte laneIndex) {
+        if (this.vehicles.containsKey(vehicleID)) {
+            throw new IllegalArgumentException("Vehicle " + vehicleID + " already exists");
+        }
+        int[] route = findRouteEdges(routeID);
+        if (route == null) {
+            throw new IllegalArgumentException("Unknown route " + routeID);
+        }
+        SyntheticNetwork.VehicleType type = this.network.vehicleTypes.get(typeID);
+        if (type == null) {
+            throw new IllegalArgumentException("Unknown vehicle type " + typeID);
+        }
+
+        SyntheticVehicle vehicle = new SyntheticVehicle(vehicleID, type, route, departTime, Math.max(0, laneIndex));
+        this.vehicles.put(vehicleID, vehicle);
+        this.pendingInsertions.addLast(vehicle);
+    }
+
+    @Override
+    public void setVehicleMaxSpeed(String vehicleID, double speed) {
+        getVehicle(vehicleID).maxSpeed = speed;
+    }
+
+    @Override
+    public void setVehicleMinGap(String vehicleID, double minGap) {
+        getVehicle(vehicleID).minGap = minGap;
+    }
+
+    /**
+     * Actions are performed immediately, as there is no round trip to save by deferring them
+     */
+    @Override
+    public void dispatch(PlanMessage message) {
+        try {
+            message.applyTo(this);
+        } catch (Exception e) {
+            this.failedJobs.add(message);
+            LOG.log(Level.WARNING, "Could not perform job " + message.toJson(), e);
+        }
+    }
+
+    @Override
+    public List<PlanMessage> flush() {
+        if (this.failedJobs.isEmpty()) return Collections.emptyList();
+        List<PlanMessage> failed = this.failedJobs;
+        this.failedJobs = new ArrayList<>();
+        return failed;
+    }
+
+    @Override
+    public void close() {
+        if (this.running) {
+            LOG.info("Stopping synthetic simulation at time " + this.time + " with " + this.vehicles.size() +
+                    " vehicles");
+            this.running = false;
+        }
+    }
+
+    @Override
+    public boolean isClosed() {
+        return !this.running;
+    }
+
+    private int[] findRouteEdges(String routeID) {
+        int[] route = this.network.routes.get(routeID);
+        return route == null ? this.addedRoutes.get(routeID) : route;
+    }
+
+    private SyntheticVehicle getVehicle(String vehicleID) {
+        SyntheticVehicle vehicle = this.vehicles.get(vehicleID);
+        if (vehicle == null) {
+            throw new IllegalArgumentException("Unknown vehicle " + vehicleID);
+        }
+        return vehicle;
+    }
+
+    static final class SyntheticVehicle {
+        final String id;
+        final SyntheticNetwork.VehicleType type;
+        final int[] route;
+        final int departTime;
+        final int laneIndex;
+
+        double maxSpeed;
+        double minGap;
+
+        SyntheticNetwork.Lane lane;
+        int routeIndex = 0;
+        double position = 0;
+        double speed = 0;
+        double co2Emission = 0;
+        long movedInStep = -1;
+
+        SyntheticVehicle(String id, SyntheticNetwork.VehicleType type, int[] route, int departTime, int laneIndex) {
+            this.id = id;
+            this.type = type;
+            this.route = route;
+            this.departTime = departTime;
+            this.laneIndex = laneIndex;
+            this.maxSpeed = type.maxSpeed;
+            this.minGap = type.minGap;
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package sumo;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads a telemetry file written by {@link TelemetryWriter}. The file is memory-mapped block by block, so files
+ * larger than the heap can be read. Opening the file only reads the block headers, to index the blocks and build the
+ * ID dictionaries. The columns of a block are decompressed when the block is requested.
+ * <p>
+ * Not thread safe. Open a reader per thread to read a file concurrently.
+ */
+public class TelemetryReader implements Closeable {
+
+    private final FileChannel channel;
+    private final List<Long> blockOffsets = new ArrayList<>();
+    private final List<String> vehicleIDs = new ArrayList<>();
+    private final List<String> laneIDs = new ArrayList<>();
+    private final Inflater inflater = new Inflater();
+
+    /**
+     * Open a telemetry file and index its blocks. A partially written last block, e.g. of a simulation that is still
+     * running, is ignored.
+     *
+     * @param file  Telemetry file
+     * @throws IOException if the file could not be read, or is not a telemetry file
+     */
+    public TelemetryReader(File file) throws IOException {
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+
+        ByteBuffer header = ByteBuffer.allocate(TelemetryWriter.MAGIC.length + 1);
+        this.channel.read(header, 0);
+        byte[] magic = Arrays.copyOf(header.array(), TelemetryWriter.MAGIC.length);
+        if (!Arrays.equals(magic, TelemetryWriter.MAGIC)) {
+            close();
+            throw new IOException(file + " is not a telemetry file");
+        }
+        if (header.get(TelemetryWriter.MAGIC.length) != TelemetryWriter.VERSION) {
+            close();
+            throw new IOException("Unsupported telemetry file version " + header.get(TelemetryWriter.MAGIC.length));
+        }
+
+        long size = this.channel.size();
+        long offset = header.capacity();
+        ByteBuffer length = ByteBuffer.allocate(4);
+        while (offset + 4 <= size) {
+            length.clear();
+            this.channel.read(length, offset);
+            long end = offset + 4 + length.getInt(0);
+            if (end > size) break;
+
+            MappedByteBuffer block = map(offset);
+            block.position(20);
+            readStrings(block, this.vehicleIDs);
+            readStrings(block, this.laneIDs);
+
+            this.blockOffsets.add(offset);
+            offset = end;
+        }
+    }
+
+    /**
+     * @return Number of ticks in the file
+     */
+    public int getBlockCount() {
+        return this.blockOffsets.size();
+    }
+
+    /**
+     * @param vehicle   Index of a vehicle in the dictionary
+     * @return SUMO ID of the vehicle
+     */
+    public String getVehicleID(int vehicle) {
+        return this.vehicleIDs.get(vehicle);
+    }
+
+    /**
+     * @return Number of distinct vehicles in the file
+     */
+    public int getVehicleCount() {
+        return this.vehicleIDs.size();
+    }
+
+    /**
+     * @param lane  Index of a lane in the dictionary
+     * @return ID of the lane, or null if the index is -1
+     */
+    public String getLaneID(int lane) {
+        return lane < 0 ? null : this.laneIDs.get(lane);
+    }
+
+    /**
+     * Read the states of all vehicles at a tick
+     *
+     * @param index Index of the block, from 0 to {@link #getBlockCount()}
+     * @return States of all vehicles in the block
+     * @throws IOException if the block could not be read or decompressed
+     */
+    public Block readBlock(int index) throws IOException {
+        MappedByteBuffer buffer = map(this.blockOffsets.get(index));
+        buffer.position(4);
+        long tick = buffer.getLong();
+        int simulationTime = buffer.getInt();
+        int size = buffer.getInt();
+        skipStrings(buffer);
+        skipStrings(buffer);
+        int compressedLength = buffer.getInt();
+        int uncompressedLength = buffer.getInt();
+
+        byte[] compressed = new byte[compressedLength];
+        buffer.get(compressed);
+        byte[] uncompressed = new byte[uncompressedLength];
+        this.inflater.reset();
+        this.inflater.setInput(compressed);
+        try {
+            int n = 0;
+            while (n < uncompressedLength && !this.inflater.finished()) {
+                n += this.inflater.inflate(uncompressed, n, uncompressedLength - n);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt telemetry block " + index, e);
+        }
+
+        ByteBuffer columns = ByteBuffer.wrap(uncompressed);
+        Block block = new Block(tick, simulationTime, size);
+        for (int i = 0; i < size; i++) block.vehicles[i] = columns.getInt();
+        for (int i = 0; i < size; i++) block.speeds[i] = columns.getFloat();
+        for (int i = 0; i < size; i++) block.x[i] = columns.getDouble();
+        for (int i = 0; i < size; i++) block.y[i] = columns.getDouble();
+        for (int i = 0; i < size; i++) block.lanes[i] = columns.getInt();
+        for (int i = 0; i < size; i++) block.co2Emissions[i] = columns.getFloat();
+        for (int i = 0; i < size; i++) block.budgets[i] = columns.getFloat();
+        for (int i = 0; i < size; i++) block.sanctions[i] = columns.getFloat();
+        return block;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.inflater.end();
+        this.channel.close();
+    }
+
+    private MappedByteBuffer map(long offset) throws IOException {
+        ByteBuffer length = ByteBuffer.allocate(4);
+        this.channel.read(length, offset);
+        return this.channel.map(FileChannel.MapMode.READ_ONLY, offset, 4 + length.getInt(0));
+    }
+
+    private static void readStrings(ByteBuffer buffer, List<String> strings) {
+        int n = buffer.getInt();
+        for (int i = 0; i < n; i++) {
+            byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+            buffer.get(bytes);
+            strings.add(new String(bytes, StandardCharsets.UTF_8));
+        }
+    }
+
+    private static void skipStrings(ByteBuffer buffer) {
+        int n = buffer.getInt();
+        for (int i = 0; i < n; i++) {
+            int length = buffer.getShort() & 0xFFFF;
+            buffer.position(buffer.position() + length);
+        }
+    }
+
+    /**
+     * The states of all vehicles at a single tick, as columns. Vehicles and lanes are indices in the dictionaries of
+     * the reader.
+     */
+    public static class Block {
+        public final long tick;
+        public final int simulationTime;
+        public final int size;
+        public final int[] vehicles;
+        public final float[] speeds;
+        public final double[] x;
+        public final double[] y;
+        public final int[] lanes;
+        public final float[] co2Emissions;
+        public final float[] budgets;
+        public final float[] sanctions;
+
+        Block(long tick, int simulationTime, int size) {
+            this.tick = tick;
+            this.simulationTime = simulationTime;
+            this.size = size;
+            this.vehicles = new int[size];
+            this.speeds = new float[size];
+            this.x = new double[size];
+            this.y = new double[size];
+            this.lanes = new int[size];
+            this.co2Emissions = new float[size];
+            this.budgets = new float[size];
+            this.sanctions = new float[size];
+        }
+    }
+}
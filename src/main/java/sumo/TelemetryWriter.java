@@ -0,0 +1,265 @@
+package sumo;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleBiFunction;
+import java.util.function.ToDoubleFunction;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.Deflater;
+
+/**
+ * Writes the state of every vehicle at every tick to a compact binary file, as a lighter alternative to the FCD and
+ * emission output of SUMO. The state is taken from the per-tick {@link VehicleStateSnapshot}, so no extra requests
+ * are made to SUMO.
+ * <p>
+ * The file starts with the magic bytes {@code S2AT} and a version byte, followed by one block per tick. Vehicle and
+ * lane IDs are dictionary encoded: each ID is written once, in the block where it first occurs, and referred to by
+ * index after that. Each block is laid out as:
+ * <pre>
+ *     int     length of the rest of the block
+ *     long    tick
+ *     int     simulation time in milliseconds
+ *     int     number of vehicles
+ *     int     number of new vehicle IDs, followed by each ID as a short length and UTF-8 bytes
+ *     int     number of new lane IDs, followed by each ID as a short length and UTF-8 bytes
+ *     int     compressed length of the columns
+ *     int     uncompressed length of the columns
+ *     byte[]  deflated columns: vehicle (int), speed (float), x (double), y (double), lane (int, -1 if unknown),
+ *             CO2 (float), budget (float), sanction (float)
+ * </pre>
+ * Encoding, compression and writing happen on a background thread, so the tick loop only hands over the snapshot.
+ * The snapshot is immutable, and the agent budget and sanction are looked up on the background thread. If the
+ * background thread fails, telemetry is disabled for the rest of the run, and the tick loop is never blocked by it.
+ * Use {@link TelemetryReader} to read the file.
+ */
+public class TelemetryWriter {
+    private static final Logger LOG = Logger.getLogger(TelemetryWriter.class.getName());
+
+    static final byte[] MAGIC = {'S', '2', 'A', 'T'};
+    static final byte VERSION = 1;
+
+    /**
+     * Number of ticks that may be waiting to be written before the tick loop is slowed down
+     */
+    private static final int QUEUE_CAPACITY = 32;
+
+    /**
+     * How long to wait for room in the queue before checking again whether the writer thread is still running
+     */
+    private static final long OFFER_TIMEOUT_MILLIS = 100;
+
+    private final File file;
+    private final ToDoubleFunction<String> budgets;
+    private final ToDoubleBiFunction<String, VehicleState> sanctions;
+
+    private final BlockingQueue<Tick> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Thread thread;
+    private volatile boolean failed = false;
+
+    /** Only used on the writer thread **/
+    private DataOutputStream out;
+    private final Map<String, Integer> vehicleDictionary = new HashMap<>();
+    private final Map<String, Integer> laneDictionary = new HashMap<>();
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private byte[] compressed = new byte[1 << 16];
+
+    /**
+     * Open a telemetry file, and start the writer thread
+     *
+     * @param file      File to write
+     * @param budgets   Budget of the agent of a vehicle, or NaN if unknown
+     * @param sanctions Sanction the institution would impose on a vehicle in its current state, or NaN if unknown
+     * @throws IOException if the file could not be created
+     */
+    public TelemetryWriter(File file, ToDoubleFunction<String> budgets,
+                           ToDoubleBiFunction<String, VehicleState> sanctions) throws IOException {
+        this.file = file;
+        this.budgets = budgets;
+        this.sanctions = sanctions;
+
+        this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+        this.out.write(MAGIC);
+        this.out.writeByte(VERSION);
+
+        this.thread = new Thread(this::run, "telemetry-writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+        LOG.info("Vehicle telemetry will be written to " + file);
+    }
+
+    /**
+     * Queue the state of all vehicles at a tick for writing. Blocks only if the writer has fallen behind by more
+     * than {@value #QUEUE_CAPACITY} ticks.
+     *
+     * @param tick              The tick
+     * @param simulationTime    Simulation time the snapshot was taken at, in milliseconds
+     * @param snapshot          States of all vehicles
+     */
+    public void write(long tick, int simulationTime, VehicleStateSnapshot snapshot) {
+        try {
+            enqueue(new Tick(tick, simulationTime, snapshot));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Write all queued ticks, and close the file
+     */
+    public void close() {
+        try {
+            enqueue(Tick.END);
+            this.thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOG.warning("Interrupted while closing telemetry file " + this.file);
+        }
+    }
+
+    /**
+     * Wait for room in the queue for as long as the writer thread is running. The tick is dropped if telemetry is
+     * disabled
+     */
+    private void enqueue(Tick tick) throws InterruptedException {
+        while (!this.failed && this.thread.isAlive()) {
+            if (this.queue.offer(tick, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) return;
+        }
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                Tick tick = this.queue.take();
+                if (tick == Tick.END) break;
+                writeBlock(tick);
+            }
+        } catch (IOException | RuntimeException e) {
+            LOG.log(Level.SEVERE, "Could not write telemetry to " + this.file + ". Telemetry is disabled", e);
+            this.failed = true;
+            this.queue.clear();
+        } catch (InterruptedException e) {
+            LOG.warning("Telemetry writer interrupted. Telemetry is disabled");
+            this.failed = true;
+            this.queue.clear();
+        } finally {
+            this.deflater.end();
+            try {
+                this.out.close();
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "Could not close telemetry file " + this.file, e);
+            }
+        }
+    }
+
+    private void writeBlock(Tick tick) throws IOException {
+        List<String> newVehicles = new ArrayList<>();
+        List<String> newLanes = new ArrayList<>();
+
+        int n = tick.snapshot.size();
+        ByteArrayOutputStream columnBytes = new ByteArrayOutputStream(n * 40);
+        DataOutputStream columns = new DataOutputStream(columnBytes);
+
+        List<String> ids = new ArrayList<>(n);
+        List<VehicleState> states = new ArrayList<>(n);
+        tick.snapshot.forEach((id, state) -> {
+            ids.add(id);
+            states.add(state);
+        });
+
+        for (String id : ids) {
+            columns.writeInt(index(this.vehicleDictionary, newVehicles, id));
+        }
+        for (VehicleState state : states) columns.writeFloat((float) state.getSpeed());
+        for (VehicleState state : states) columns.writeDouble(state.getX());
+        for (VehicleState state : states) columns.writeDouble(state.getY());
+        for (VehicleState state : states) {
+            columns.writeInt(state.getLaneID() == null ? -1 : index(this.laneDictionary, newLanes, state.getLaneID()));
+        }
+        for (VehicleState state : states) columns.writeFloat((float) state.getCo2Emission());
+        for (String id : ids) columns.writeFloat((float) this.budgets.applyAsDouble(id));
+        for (int i = 0; i < n; i++) {
+            columns.writeFloat((float) this.sanctions.applyAsDouble(ids.get(i), states.get(i)));
+        }
+        columns.flush();
+
+        byte[] uncompressed = columnBytes.toByteArray();
+        int compressedLength = deflate(uncompressed);
+
+        ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+        DataOutputStream header = new DataOutputStream(headerBytes);
+        header.writeLong(tick.tick);
+        header.writeInt(tick.simulationTime);
+        header.writeInt(n);
+        writeStrings(header, newVehicles);
+        writeStrings(header, newLanes);
+        header.writeInt(compressedLength);
+        header.writeInt(uncompressed.length);
+        header.flush();
+
+        this.out.writeInt(headerBytes.size() + compressedLength);
+        headerBytes.writeTo(this.out);
+        this.out.write(this.compressed, 0, compressedLength);
+    }
+
+    private int deflate(byte[] uncompressed) {
+        this.deflater.reset();
+        this.deflater.setInput(uncompressed);
+        this.deflater.finish();
+        int length = 0;
+        while (!this.deflater.finished()) {
+            if (length == this.compressed.length) {
+                byte[] larger = new byte[this.compressed.length * 2];
+                System.arraycopy(this.compressed, 0, larger, 0, length);
+                this.compressed = larger;
+            }
+            length += this.deflater.deflate(this.compressed, length, this.compressed.length - length);
+        }
+        return length;
+    }
+
+    private static int index(Map<String, Integer> dictionary, List<String> newEntries, String id) {
+        Integer index = dictionary.get(id);
+        if (index == null) {
+            index = dictionary.size();
+            dictionary.put(id, index);
+            newEntries.add(id);
+        }
+        return index;
+    }
+
+    private static void writeStrings(DataOutputStream out, List<String> strings) throws IOException {
+        out.writeInt(strings.size());
+        for (String s : strings) {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            out.writeShort(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static class Tick {
+        static final Tick END = new Tick(-1, -1, VehicleStateSnapshot.EMPTY);
+
+        final long tick;
+        final int simulationTime;
+        final VehicleStateSnapshot snapshot;
+
+        Tick(long tick, int simulationTime, VehicleStateSnapshot snapshot) {
+            this.tick = tick;
+            this.simulationTime = simulationTime;
+            this.snapshot = snapshot;
+        }
+    }
+}
@@ -0,0 +1,413 @@
+package sumo;
+
+import agent.plan.PlanMessage;
+import com.sun.istack.Nullable;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Collects timing and volume metrics of every tick, split into the phases of a tick. Durations of each phase are kept
+ * in a {@link LatencyHistogram}, next to counters of actions by message type, actions dropped because they would not
+ * change the simulation, failed jobs, and vehicles entering and leaving the environment.
+ * <p>
+ * When an output directory is given, one CSV row is written per tick. The CSV file is rolled over to a new file every
+ * {@value #CSV_ROLL_TICKS} ticks. Every {@value #EXPORT_INTERVAL} ticks, all metrics are written in the Prometheus text
+ * exposition format to {@value #PROMETHEUS_FILE}, which can be picked up by the textfile collector of the Prometheus
+ * node exporter.
+ * <p>
+ * This class is not thread safe, and should only be used from the hooks of the environment
+ */
+public class TickMetrics {
+    private static final Logger LOG = Logger.getLogger(TickMetrics.class.getName());
+
+    public static final String PROMETHEUS_FILE = "sim2apl-sumo.prom";
+    public static final int CSV_ROLL_TICKS = 100000;
+    public static final int EXPORT_INTERVAL = 10;
+
+    /**
+     * The phases of a tick, in the order in which they happen
+     */
+    public enum Phase {
+        /** Processing arrived and departed vehicles before agents deliberate **/
+        PRE_HOOK("pre_hook"),
+        /** Agent deliberation, measured as the time between the pre-hook and the post-hook **/
+        DELIBERATION("deliberation"),
+        /** Collecting and parsing the actions produced by agents **/
+        ACTION_PARSE("action_parse"),
+        /** Performing the actions in the simulation **/
+        ACTION_DISPATCH("action_dispatch"),
+        /** Performing the simulation step **/
+        TIME_STEP("time_step"),
+        /** Requesting the simulation time after the step **/
+        GET_TIME("get_time");
+
+        private final String label;
+
+        Phase(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    private static final Phase[] PHASES = Phase.values();
+
+    private final LatencyHistogram[] histograms = new LatencyHistogram[PHASES.length];
+    private final long[] tickDurations = new long[PHASES.length];
+
+    private final Map<Class<?>, long[]> actionCounts = new HashMap<>();
+    private final Map<Class<?>, long[]> suppressedCounts = new HashMap<>();
+    private long ticks = 0;
+    private long actions = 0;
+    private long suppressedActions = 0;
+    private long failedJobs = 0;
+    private long enteredVehicles = 0;
+    private long arrivedVehicles = 0;
+
+    private int tickActions = 0;
+    private int tickSuppressedActions = 0;
+    private int tickFailedJobs = 0;
+    private int tickEnteredVehicles = 0;
+    private int tickArrivedVehicles = 0;
+
+    private final List<Consumer<PrintWriter>> prometheusWriters = new ArrayList<>();
+
+    private final File directory;
+    private PrintWriter csv;
+    private int csvRows = 0;
+    private int csvFileIndex = 0;
+
+    /**
+     * Create a metrics collector
+     *
+     * @param directory Directory to write the CSV and Prometheus files to, or null to only keep metrics in memory
+     */
+    public TickMetrics(@Nullable String directory) {
+        for (int i = 0; i < PHASES.length; i++) {
+            this.histograms[i] = new LatencyHistogram();
+        }
+
+        File dir = directory == null ? null : new File(directory);
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+            LOG.warning("Could not create metrics directory " + directory + ". Metrics will not be written to disk");
+            dir = null;
+        }
+        this.directory = dir;
+        if (this.directory != null) {
+            LOG.info("Tick metrics will be written to " + this.directory.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Record the duration of a phase in the current tick. If a phase is recorded more than once in a tick, the
+     * durations are added up
+     *
+     * @param phase Phase of the tick
+     * @param nanos Duration in nanoseconds
+     */
+    public void record(Phase phase, long nanos) {
+        this.tickDurations[phase.ordinal()] += nanos;
+    }
+
+    /**
+     * Count an action performed in the current tick
+     *
+     * @param message The action
+     */
+    public void countAction(PlanMessage message) {
+        increment(this.actionCounts, message);
+        this.tickActions++;
+    }
+
+    /**
+     * Count an action that was dropped in the current tick, because it would not change the simulation
+     *
+     * @param message The action
+     */
+    public void countSuppressedAction(PlanMessage message) {
+        increment(this.suppressedCounts, message);
+        this.tickSuppressedActions++;
+    }
+
+    public void countFailedJobs(int failedJobs) {
+        this.tickFailedJobs += failedJobs;
+    }
+
+    public void countEnteredVehicles(int enteredVehicles) {
+        this.tickEnteredVehicles += enteredVehicles;
+    }
+
+    public void countArrivedVehicles(int arrivedVehicles) {
+        this.tickArrivedVehicles += arrivedVehicles;
+    }
+
+    /**
+     * Finish the current tick, adding the durations of all phases to their histograms, and writing metrics if an
+     * output directory was given
+     *
+     * @param tick              The tick that finished
+     * @param simulationTime    Simulation time after the tick, in milliseconds
+     * @param activeAgents      Number of agents in the environment
+     */
+    public void endTick(long tick, int simulationTime, int activeAgents) {
+        for (int i = 0; i < PHASES.length; i++) {
+            this.histograms[i].record(this.tickDurations[i]);
+        }
+        this.ticks++;
+        this.actions += this.tickActions;
+        this.suppressedActions += this.tickSuppressedActions;
+        this.failedJobs += this.tickFailedJobs;
+        this.enteredVehicles += this.tickEnteredVehicles;
+        this.arrivedVehicles += this.tickArrivedVehicles;
+
+        if (this.directory != null) {
+            writeCsvRow(tick, simulationTime, activeAgents);
+            if (this.ticks % EXPORT_INTERVAL == 0) {
+                if (this.csv != null) this.csv.flush();
+                writePrometheus();
+            }
+        }
+
+        Arrays.fill(this.tickDurations, 0);
+        this.tickActions = 0;
+        this.tickSuppressedActions = 0;
+        this.tickFailedJobs = 0;
+        this.tickEnteredVehicles = 0;
+        this.tickArrivedVehicles = 0;
+    }
+
+    /**
+     * Obtain the histogram of durations of a phase, over all finished ticks
+     *
+     * @param phase Phase of the tick
+     * @return Histogram of durations in nanoseconds
+     */
+    public LatencyHistogram getHistogram(Phase phase) {
+        return this.histograms[phase.ordinal()];
+    }
+
+    /**
+     * @return Directory metrics are written to, or null if metrics are only kept in memory
+     */
+    @Nullable
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Add metrics collected elsewhere to the Prometheus file
+     *
+     * @param writer Writes additional metrics in the Prometheus text format
+     */
+    public void addPrometheusWriter(Consumer<PrintWriter> writer) {
+        this.prometheusWriters.add(writer);
+    }
+
+    /**
+     * @return Number of finished ticks
+     */
+    public long getTicks() {
+        return ticks;
+    }
+
+    /**
+     * @return Fraction of the actions of all finished ticks that were dropped because they would not change the
+     * simulation, or 0 if no actions were produced
+     */
+    public double getSuppressionRate() {
+        long total = this.actions + this.suppressedActions;
+        return total == 0 ? 0 : (double) this.suppressedActions / total;
+    }
+
+    /**
+     * Create a human readable summary of the durations of all phases
+     *
+     * @return Multi-line summary with the 50th and 99th percentile and the maximum duration of each phase
+     */
+    public String summary() {
+        StringBuilder sb = new StringBuilder(String.format(Locale.ROOT,
+                "Tick metrics over %d ticks (milliseconds):", this.ticks));
+        for (Phase phase : PHASES) {
+            LatencyHistogram histogram = getHistogram(phase);
+            sb.append(String.format(Locale.ROOT, "%n  %-16s p50 %10.3f  p99 %10.3f  max %10.3f",
+                    phase.getLabel(),
+                    histogram.getPercentile(50) / 1e6,
+                    histogram.getPercentile(99) / 1e6,
+                    histogram.getMax() / 1e6));
+        }
+        sb.append(String.format(Locale.ROOT, "%n  %d actions, %d failed jobs, %d vehicles entered, %d arrived",
+                this.actions, this.failedJobs, this.enteredVehicles, this.arrivedVehicles));
+        sb.append(String.format(Locale.ROOT, "%n  %d unchanged actions suppressed (%.1f%% of all actions)",
+                this.suppressedActions, getSuppressionRate() * 100));
+        return sb.toString();
+    }
+
+    /**
+     * Write the final metrics and close the CSV file
+     */
+    public void close() {
+        if (this.directory == null) return;
+        writePrometheus();
+        if (this.csv != null) {
+            this.csv.close();
+            this.csv = null;
+        }
+    }
+
+    private void writeCsvRow(long tick, int simulationTime, int activeAgents) {
+        if (this.csv == null || this.csvRows >= CSV_ROLL_TICKS) {
+            if (!openCsv()) return;
+        }
+
+        StringBuilder row = new StringBuilder();
+        row.append(tick).append(',').append(simulationTime);
+        for (long duration : this.tickDurations) {
+            row.append(',').append(duration / 1000);
+        }
+        row.append(',').append(this.tickActions)
+                .append(',').append(this.tickFailedJobs)
+                .append(',').append(this.tickEnteredVehicles)
+                .append(',').append(this.tickArrivedVehicles)
+                .append(',').append(activeAgents)
+                .append(',').append(this.tickSuppressedActions);
+        this.csv.println(row);
+        this.csvRows++;
+    }
+
+    private boolean openCsv() {
+        if (this.csv != null) {
+            this.csv.close();
+            this.csvFileIndex++;
+        }
+        File file = new File(this.directory, String.format("tick-metrics-%03d.csv", this.csvFileIndex));
+        try {
+            this.csv = new PrintWriter(new FileWriter(file));
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Could not open tick metrics file " + file, e);
+            this.csv = null;
+            return false;
+        }
+        this.csvRows = 0;
+
+        StringBuilder header = new StringBuilder("tick,simulation_time_ms");
+        for (Phase phase : PHASES) {
+            header.append(',').append(phase.getLabel()).append("_us");
+        }
+        header.append(",actions,failed_jobs,entered_vehicles,arrived_vehicles,active_agents,suppressed_actions");
+        this.csv.println(header);
+        return true;
+    }
+
+    /**
+     * Write all metrics in the Prometheus text format. The file is written next to its destination first, and then
+     * moved, so a scraper never reads a partially written file
+     */
+    private void writePrometheus() {
+        File target = new File(this.directory, PROMETHEUS_FILE);
+        File temp = new File(this.directory, PROMETHEUS_FILE + ".tmp");
+        try (PrintWriter out = new PrintWriter(new FileWriter(temp))) {
+            writePrometheus(out);
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Could not write Prometheus metrics to " + temp, e);
+            return;
+        }
+
+        try {
+            Files.move(temp.toPath(), target.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Could not move Prometheus metrics to " + target, e);
+        }
+    }
+
+    /**
+     * Write all metrics in the Prometheus text format
+     *
+     * @param out Writer to write metrics to
+     */
+    public void writePrometheus(PrintWriter out) {
+        out.println("# HELP sim2apl_tick_phase_seconds Duration of the phases of a tick");
+        out.println("# TYPE sim2apl_tick_phase_seconds summary");
+        for (Phase phase : PHASES) {
+            LatencyHistogram histogram = getHistogram(phase);
+            String label = "phase=\"" + phase.getLabel() + "\"";
+            printSample(out, "sim2apl_tick_phase_seconds{" + label + ",quantile=\"0.5\"}",
+                    histogram.getPercentile(50) / 1e9);
+            printSample(out, "sim2apl_tick_phase_seconds{" + label + ",quantile=\"0.99\"}",
+                    histogram.getPercentile(99) / 1e9);
+            printSample(out, "sim2apl_tick_phase_seconds_sum{" + label + "}", histogram.getSum() / 1e9);
+            printSample(out, "sim2apl_tick_phase_seconds_count{" + label + "}", histogram.getCount());
+        }
+
+        out.println("# HELP sim2apl_tick_phase_max_seconds Longest duration of the phases of a tick");
+        out.println("# TYPE sim2apl_tick_phase_max_seconds gauge");
+        for (Phase phase : PHASES) {
+            printSample(out, "sim2apl_tick_phase_max_seconds{phase=\"" + phase.getLabel() + "\"}",
+                    getHistogram(phase).getMax() / 1e9);
+        }
+
+        out.println("# HELP sim2apl_actions_total Actions performed in the simulation, by message type");
+        out.println("# TYPE sim2apl_actions_total counter");
+        Map<String, Long> byType = new TreeMap<>();
+        this.actionCounts.forEach((type, count) -> byType.put(type.getSimpleName(), count[0]));
+        byType.forEach((type, count) -> printSample(out, "sim2apl_actions_total{type=\"" + type + "\"}", count));
+
+        out.println("# HELP sim2apl_actions_suppressed_total Actions dropped because they would not change the " +
+                "simulation, by message type");
+        out.println("# TYPE sim2apl_actions_suppressed_total counter");
+        Map<String, Long> suppressedByType = new TreeMap<>();
+        this.suppressedCounts.forEach((type, count) -> suppressedByType.put(type.getSimpleName(), count[0]));
+        suppressedByType.forEach((type, count) ->
+                printSample(out, "sim2apl_actions_suppressed_total{type=\"" + type + "\"}", count));
+        out.println("# HELP sim2apl_actions_suppressed_ratio Fraction of all actions dropped because they would not " +
+                "change the simulation");
+        out.println("# TYPE sim2apl_actions_suppressed_ratio gauge");
+        printSample(out, "sim2apl_actions_suppressed_ratio", getSuppressionRate());
+
+        printCounter(out, "sim2apl_ticks_total", "Finished ticks", this.ticks);
+        printCounter(out, "sim2apl_failed_jobs_total", "Actions that could not be performed", this.failedJobs);
+        printCounter(out, "sim2apl_vehicles_entered_total", "Vehicles that entered the simulation",
+                this.enteredVehicles);
+        printCounter(out, "sim2apl_vehicles_arrived_total", "Vehicles that arrived and left the simulation",
+                this.arrivedVehicles);
+
+        this.prometheusWriters.forEach(writer -> writer.accept(out));
+    }
+
+    private static void increment(Map<Class<?>, long[]> counts, PlanMessage message) {
+        long[] count = counts.get(message.getClass());
+        if (count == null) {
+            count = new long[1];
+            counts.put(message.getClass(), count);
+        }
+        count[0]++;
+    }
+
+    private static void printCounter(PrintWriter out, String name, String help, long value) {
+        out.println("# HELP " + name + " " + help);
+        out.println("# TYPE " + name + " counter");
+        printSample(out, name, value);
+    }
+
+    private static void printSample(PrintWriter out, String name, double value) {
+        out.println(name + " " + (value == Math.rint(value) && Math.abs(value) < 1e15 ?
+                Long.toString((long) value) : Double.toString(value)));
+    }
+}
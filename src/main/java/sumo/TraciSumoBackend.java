@@ -0,0 +1,380 @@
+package sumo;
+
+import agent.plan.PlanMessage;
+import de.tudresden.sumo.cmd.Edge;
+import de.tudresden.sumo.cmd.Lane;
+import de.tudresden.sumo.cmd.Route;
+import de.tudresden.sumo.cmd.Simulation;
+import de.tudresden.sumo.cmd.Vehicle;
+import de.tudresden.sumo.config.Constants;
+import de.tudresden.sumo.subscription.ResponseType;
+import de.tudresden.sumo.subscription.SubscribtionVariable;
+import de.tudresden.sumo.subscription.SubscriptionObject;
+import de.tudresden.sumo.subscription.VariableSubscription;
+import de.tudresden.sumo.util.Observable;
+import de.tudresden.sumo.util.Observer;
+import de.tudresden.sumo.util.SumoCommand;
+import de.tudresden.ws.container.SumoPosition2D;
+import de.tudresden.ws.container.SumoPrimitive;
+import de.tudresden.ws.container.SumoStage;
+import de.tudresden.ws.container.SumoStringList;
+import it.polito.appeal.traci.SumoTraciConnection;
+import it.polito.appeal.traci.TraCIException;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs SUMO as a separate process, and communicates with it over TraCI using TraaS.
+ * <p>
+ * Vehicle states and departures and arrivals are obtained through variable subscriptions, so SUMO pushes them after
+ * every time step without further requests. Actions are dispatched through a {@link CommandBatchDispatcher}.
+ */
+public class TraciSumoBackend implements SumoBackend, Observer {
+    private static final Logger LOG = Logger.getLogger(TraciSumoBackend.class.getName());
+
+    /**
+     * Vehicle variables every vehicle is subscribed to as soon as it enters the environment
+     **/
+    private static final int[] VEHICLE_SUBSCRIPTION_VARIABLES = {
+            Constants.VAR_SPEED,
+            Constants.VAR_LANE_ID,
+            Constants.VAR_POSITION,
+            Constants.VAR_CO2EMISSION
+    };
+
+    /**
+     * Simulation variables subscribed to once, so only vehicles that departed or arrived need to be processed
+     **/
+    private static final int[] SIMULATION_SUBSCRIPTION_VARIABLES = {
+            Constants.VAR_DEPARTED_VEHICLES_IDS,
+            Constants.VAR_ARRIVED_VEHICLES_IDS,
+            Constants.VAR_TELEPORT_STARTING_VEHICLES_IDS
+    };
+
+    private final int dispatchBatchSize;
+
+    private SumoTraciConnection connection;
+    private CommandBatchDispatcher dispatcher;
+    private SumoBackendListener listener;
+    private String configFile;
+    private String netFile;
+
+    /**
+     * Simulation time in milliseconds, requested once after every time step
+     **/
+    private int currentTime = 0;
+
+    /**
+     * @param dispatchBatchSize Maximum number of idempotent commands packed into a single TraCI message
+     */
+    public TraciSumoBackend(int dispatchBatchSize) {
+        this.dispatchBatchSize = dispatchBatchSize;
+    }
+
+    @Override
+    public void start(String sumoBinary, String configFile, Map<String, String> options, SumoBackendListener listener)
+            throws Exception {
+        this.listener = listener;
+        this.configFile = configFile;
+        this.netFile = options.get("net-file");
+        this.connection = new SumoTraciConnection(sumoBinary, configFile);
+        options.forEach(this.connection::addOption);
+
+        LOG.info("Starting SUMO with following command using connection " + this.connection.toString());
+
+        this.connection.runServer();
+        this.connection.addObserver(this);
+        subscribeSimulation();
+        this.dispatcher = new CommandBatchDispatcher(this.connection, this.dispatchBatchSize);
+        this.currentTime = requestCurrentTime();
+    }
+
+    @Override
+    public void step() throws Exception {
+        this.connection.do_timestep();
+        this.currentTime = requestCurrentTime();
+    }
+
+    /**
+     * The time only changes when a time step is performed, so it is read from SUMO once per step
+     */
+    @Override
+    public int getCurrentTime() {
+        return this.currentTime;
+    }
+
+    /**
+     * Subscribe to the vehicle variables agents use, so SUMO reports them after every time step without further
+     * requests. SUMO removes the subscription automatically when the vehicle leaves the environment.
+     *
+     * @param vehicleID SUMO ID of the vehicle to subscribe to
+     */
+    @Override
+    public void subscribeVehicle(String vehicleID) {
+        VariableSubscription subscription =
+                new VariableSubscription(SubscribtionVariable.vehicle, 0, Integer.MAX_VALUE, vehicleID);
+        for (int variable : VEHICLE_SUBSCRIPTION_VARIABLES) {
+            subscription.addCommand(variable);
+        }
+
+        try {
+            this.connection.do_subscription(subscription);
+        } catch (Exception e) {
+            LOG.log(Level.WARNING, "Could not subscribe to variables of vehicle " + vehicleID, e);
+        }
+    }
+
+    @Override
+    public List<String> getEdgeIDs() {
+        return getStringList(Edge.getIDList());
+    }
+
+    @Override
+    public int getEdgeLaneCount(String edgeID) {
+        Object laneCount = get(Edge.getLaneNumber(edgeID));
+        return laneCount == null ? -1 : (int) laneCount;
+    }
+
+    @Override
+    public List<String> getLaneIDs() {
+        return getStringList(Lane.getIDList());
+    }
+
+    @Override
+    public double getLaneMaxSpeed(String laneID) {
+        Object maxSpeed = get(Lane.getMaxSpeed(laneID));
+        return maxSpeed == null ? Double.NaN : (double) maxSpeed;
+    }
+
+    @Override
+    public double getLaneLength(String laneID) {
+        Object length = get(Lane.getLength(laneID));
+        return length == null ? Double.NaN : (double) length;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<String> getLaneAllowed(String laneID) {
+        return (List<String>) get(Lane.getAllowed(laneID));
+    }
+
+    /**
+     * Read the attributes of all lanes from the network file SUMO loaded, instead of making three round trips per
+     * lane. Only lanes that are missing from the network file are requested from SUMO.
+     */
+    @Override
+    public Map<String, LaneAttributes> getLaneAttributes(List<String> laneIDs) {
+        Map<String, LaneAttributes> fromFile = Collections.emptyMap();
+        try {
+            fromFile = NetworkFileReader.readLaneAttributes(this.configFile, this.netFile);
+        } catch (IOException | XMLStreamException e) {
+            LOG.log(Level.WARNING, "Could not read lane attributes from the network file. Requesting them from SUMO", e);
+        }
+
+        Map<String, LaneAttributes> attributes = new HashMap<>(laneIDs.size() * 4 / 3 + 1);
+        int requested = 0;
+        for (String laneID : laneIDs) {
+            LaneAttributes lane = fromFile.get(laneID);
+            if (lane == null || Double.isNaN(lane.getMaxSpeed()) || Double.isNaN(lane.getLength())) {
+                lane = LaneAttributes.request(this, laneID);
+                requested++;
+            }
+            attributes.put(laneID, lane);
+        }
+        if (requested > 0) {
+            LOG.info("Attributes of " + requested + " lanes were not found in the network file and were requested " +
+                    "from SUMO");
+        }
+        return attributes;
+    }
+
+    @Override
+    public boolean setLaneMaxSpeed(String laneID, double maxSpeed) {
+        try {
+            this.connection.do_job_set(Lane.setMaxSpeed(laneID, maxSpeed));
+            return true;
+        } catch (IllegalStateException e) {
+            throw e;
+        } catch (Exception e) {
+            LOG.log(Level.WARNING, "Could not set maximum speed of lane " + laneID, e);
+            return false;
+        }
+    }
+
+    @Override
+    public List<String> getRouteIDs() {
+        return getStringList(Route.getIDList());
+    }
+
+    @Override
+    public List<String> getRouteEdges(String routeID) {
+        return getStringList(Route.getEdges(routeID));
+    }
+
+    @Override
+    public List<String> findRoute(String sourceEdgeID, String targetEdgeID, String vehicleType) {
+        try {
+            SumoStage route = (SumoStage) this.connection.do_job_get(
+                    Simulation.findRoute(sourceEdgeID, targetEdgeID, vehicleType, this.currentTime,
+                            Constants.ROUTING_MODE_DEFAULT));
+            if (route == null || route.edges.size() == 0) {
+                LOG.finer("Route from " + sourceEdgeID + " to " + targetEdgeID + " has no edges");
+                return null;
+            }
+            List<String> edges = new ArrayList<>(route.edges.size());
+            for (String edge : route.edges) edges.add(edge);
+            return edges;
+        } catch (IllegalStateException e) {
+            throw e;
+        } catch (Exception e) {
+            LOG.log(Level.WARNING,
+                    "SUMO returned error when requesting route from edge " + sourceEdgeID + " to " + targetEdgeID,
+                    e);
+            return null;
+        }
+    }
+
+    @Override
+    public void addRoute(String routeID, List<String> edgeIDs) throws Exception {
+        SumoStringList edges = new SumoStringList();
+        for (String edgeID : edgeIDs) edges.add(edgeID);
+        this.connection.do_job_set(Route.add(routeID, edges));
+    }
+
+    @Override
+    public void addVehicle(String vehicleID, String typeID, String routeID, int departTime, byte laneIndex)
+            throws Exception {
+        this.connection.do_job_set(Vehicle.add(vehicleID, typeID, routeID, departTime, 0, 2, laneIndex));
+    }
+
+    @Override
+    public void setVehicleMaxSpeed(String vehicleID, double speed) throws Exception {
+        this.connection.do_job_set(Vehicle.setMaxSpeed(vehicleID, speed));
+    }
+
+    @Override
+    public void setVehicleMinGap(String vehicleID, double minGap) throws Exception {
+        this.connection.do_job_set(Vehicle.setMinGap(vehicleID, minGap));
+    }
+
+    @Override
+    public void dispatch(PlanMessage message) {
+        this.dispatcher.dispatch(message);
+    }
+
+    @Override
+    public List<PlanMessage> flush() {
+        return this.dispatcher.flush();
+    }
+
+    @Override
+    public void close() {
+        if (!isClosed()) {
+            LOG.info("Closing SUMO connection");
+            this.connection.close();
+        } else {
+            LOG.info("Tried to close SUMO connection, but connection is already closed");
+        }
+    }
+
+    @Override
+    public boolean isClosed() {
+        return this.connection == null || this.connection.isClosed();
+    }
+
+    /**
+     * Receives subscription results from TraaS. Called on the thread performing the time step, once for every
+     * subscribed variable of every subscribed vehicle.
+     *
+     * @param observable    Source of the subscription result
+     * @param so            Subscription result
+     */
+    @Override
+    public void update(Observable observable, SubscriptionObject so) {
+        if (so.response == ResponseType.SIM_VARIABLE) {
+            updateSimulationVariable(so);
+            return;
+        }
+        if (so.response != ResponseType.VEHICLE_VARIABLE) return;
+
+        if (so.variable == Constants.VAR_SPEED) {
+            this.listener.vehicleSpeed(so.id, (double) ((SumoPrimitive) so.object).val);
+        } else if (so.variable == Constants.VAR_LANE_ID) {
+            this.listener.vehicleLane(so.id, (String) ((SumoPrimitive) so.object).val);
+        } else if (so.variable == Constants.VAR_POSITION) {
+            SumoPosition2D position = (SumoPosition2D) so.object;
+            this.listener.vehiclePosition(so.id, position.x, position.y);
+        } else if (so.variable == Constants.VAR_CO2EMISSION) {
+            this.listener.vehicleCo2Emission(so.id, (double) ((SumoPrimitive) so.object).val);
+        }
+    }
+
+    private void updateSimulationVariable(SubscriptionObject so) {
+        SumoStringList ids = (SumoStringList) so.object;
+        if (so.variable == Constants.VAR_TELEPORT_STARTING_VEHICLES_IDS) {
+            this.listener.vehiclesTeleported(ids.size());
+            return;
+        }
+
+        List<String> vehicleIDs = new ArrayList<>(ids.size());
+        for (String id : ids) vehicleIDs.add(id);
+        if (so.variable == Constants.VAR_DEPARTED_VEHICLES_IDS) {
+            this.listener.vehiclesDeparted(vehicleIDs);
+        } else if (so.variable == Constants.VAR_ARRIVED_VEHICLES_IDS) {
+            this.listener.vehiclesArrived(vehicleIDs);
+        }
+    }
+
+    /**
+     * Subscribe to the lists of vehicles that departed, arrived or started teleporting, so SUMO reports only these
+     * changes after every time step, instead of the full list of vehicles having to be requested every tick.
+     */
+    private void subscribeSimulation() throws Exception {
+        VariableSubscription subscription =
+                new VariableSubscription(SubscribtionVariable.simulation, 0, Integer.MAX_VALUE, "");
+        for (int variable : SIMULATION_SUBSCRIPTION_VARIABLES) {
+            subscription.addCommand(variable);
+        }
+        this.connection.do_subscription(subscription);
+    }
+
+    private int requestCurrentTime() {
+        Object time = get(Simulation.getCurrentTime());
+        return time == null ? this.currentTime : (int) time;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<String> getStringList(SumoCommand cmd) {
+        List<String> list = (List<String>) get(cmd);
+        return list == null ? Collections.emptyList() : list;
+    }
+
+    /**
+     * Perform a get-request in the SUMO environment. Errors are logged, and result in null being returned
+     *
+     * @param cmd SumoCommand encoding get request
+     * @return Object with result to cmd if request succeeded. Null otherwise
+     * @throws IllegalStateException if the connection with SUMO has been lost
+     */
+    private Object get(SumoCommand cmd) {
+        try {
+            return this.connection.do_job_get(cmd);
+        } catch (TraCIException e) {
+            LOG.log(Level.WARNING, "Error occurred performing GET job through TraaS", e);
+            return null;
+        } catch (IllegalStateException e) {
+            throw e;
+        } catch (Exception e) {
+            LOG.log(Level.WARNING, "Exception occurred performing GET job in SUMO", e);
+            return null;
+        }
+    }
+}
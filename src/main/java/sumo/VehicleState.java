@@ -0,0 +1,52 @@
+package sumo;
+
+/**
+ * Immutable view of the variables SUMO reported for a single vehicle at the end of the last simulation step.
+ * Instances are created by the {@link VehicleStateSnapshot.Builder} from subscription results, and can be shared
+ * freely between agent deliberation threads.
+ */
+public class VehicleState {
+
+    private final double speed;
+    private final String laneID;
+    private final double x;
+    private final double y;
+    private final double co2Emission;
+
+    public VehicleState(double speed, String laneID, double x, double y, double co2Emission) {
+        this.speed = speed;
+        this.laneID = laneID;
+        this.x = x;
+        this.y = y;
+        this.co2Emission = co2Emission;
+    }
+
+    /**
+     * @return Speed of the vehicle in m/s, or NaN if SUMO did not report it
+     */
+    public double getSpeed() {
+        return speed;
+    }
+
+    /**
+     * @return ID of the lane the vehicle is on, or null if SUMO did not report it
+     */
+    public String getLaneID() {
+        return laneID;
+    }
+
+    public double getX() {
+        return x;
+    }
+
+    public double getY() {
+        return y;
+    }
+
+    /**
+     * @return CO2 emission of the vehicle during the last step in mg/s, or NaN if SUMO did not report it
+     */
+    public double getCo2Emission() {
+        return co2Emission;
+    }
+}
@@ -0,0 +1,99 @@
+package sumo;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * An immutable, per-tick snapshot of the subscribed variables of all vehicles in the SUMO environment.
+ * <p>
+ * The snapshot is frozen once in the tick pre-hook, after which agents can read it from memory during deliberation
+ * without performing a TraCI round trip of their own.
+ */
+public class VehicleStateSnapshot {
+
+    public static final VehicleStateSnapshot EMPTY = new VehicleStateSnapshot(Collections.emptyMap());
+
+    private final Map<String, VehicleState> states;
+
+    private VehicleStateSnapshot(Map<String, VehicleState> states) {
+        this.states = states;
+    }
+
+    /**
+     * Get the state of a vehicle
+     *
+     * @param sumoID SUMO ID of the vehicle
+     * @return State of the vehicle at the end of the last step, or null if no state was received for this vehicle
+     */
+    public VehicleState get(String sumoID) {
+        return this.states.get(sumoID);
+    }
+
+    public boolean contains(String sumoID) {
+        return this.states.containsKey(sumoID);
+    }
+
+    public int size() {
+        return this.states.size();
+    }
+
+    /**
+     * Perform an action for the state of every vehicle in this snapshot
+     *
+     * @param action Action receiving the SUMO ID and state of each vehicle
+     */
+    public void forEach(BiConsumer<String, VehicleState> action) {
+        this.states.forEach(action);
+    }
+
+    /**
+     * Collects subscription results for individual variables while SUMO performs a time step. Not thread safe;
+     * subscription results are only delivered on the thread that performs the time step.
+     */
+    static class Builder {
+
+        private final Map<String, MutableState> states = new HashMap<>();
+
+        void setSpeed(String sumoID, double speed) {
+            state(sumoID).speed = speed;
+        }
+
+        void setLaneID(String sumoID, String laneID) {
+            state(sumoID).laneID = laneID;
+        }
+
+        void setPosition(String sumoID, double x, double y) {
+            MutableState state = state(sumoID);
+            state.x = x;
+            state.y = y;
+        }
+
+        void setCo2Emission(String sumoID, double co2Emission) {
+            state(sumoID).co2Emission = co2Emission;
+        }
+
+        void remove(String sumoID) {
+            this.states.remove(sumoID);
+        }
+
+        VehicleStateSnapshot build() {
+            Map<String, VehicleState> frozen = new HashMap<>(this.states.size() * 4 / 3 + 1);
+            this.states.forEach((id, s) -> frozen.put(id, new VehicleState(s.speed, s.laneID, s.x, s.y, s.co2Emission)));
+            return new VehicleStateSnapshot(Collections.unmodifiableMap(frozen));
+        }
+
+        private MutableState state(String sumoID) {
+            return this.states.computeIfAbsent(sumoID, id -> new MutableState());
+        }
+    }
+
+    private static class MutableState {
+        double speed = Double.NaN;
+        String laneID;
+        double x = Double.NaN;
+        double y = Double.NaN;
+        double co2Emission = Double.NaN;
+    }
+}
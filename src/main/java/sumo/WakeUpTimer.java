@@ -0,0 +1,99 @@
+package sumo;
+
+import agent.context.CarContext;
+import agent.trigger.external.WakeUpExternalTrigger;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Wakes up dormant agents after a number of ticks. An agent without goals or plans is not deliberated until it
+ * receives a trigger, so agents that wait for something that may never happen, e.g. a car that waits to be inserted
+ * by SUMO, set a timer to be woken up with a {@link WakeUpExternalTrigger} in case it does not happen.
+ * <p>
+ * An agent has at most one timer. Setting a new timer replaces the previous one. Agents set timers while
+ * deliberating, from any thread. Timers are cancelled and fired in the tick hooks.
+ */
+public class WakeUpTimer {
+
+    private final Queue<Timer> requests = new ConcurrentLinkedQueue<>();
+    private volatile long tick = 0;
+
+    /** Only used in the tick hooks. Timers replaced or cancelled stay in the queue until they expire **/
+    private final PriorityQueue<Timer> timers = new PriorityQueue<>();
+    private final Map<CarContext, Timer> current = new IdentityHashMap<>();
+
+    /**
+     * Wake up an agent after a number of ticks, replacing the timer the agent may already have. Thread safe
+     *
+     * @param context   Context of the agent to wake up
+     * @param ticks     Number of ticks from the current tick
+     */
+    public void schedule(CarContext context, int ticks) {
+        this.requests.add(new Timer(context, this.tick + ticks));
+    }
+
+    /**
+     * Cancel the timer of an agent, e.g. because what it waited for has happened
+     *
+     * @param context   Context of the agent
+     */
+    void cancel(CarContext context) {
+        collectRequests();
+        this.current.remove(context);
+    }
+
+    /**
+     * Wake up the agents whose timers expire at this tick. Should be called once in every tick pre-hook.
+     *
+     * @return Number of agents woken up
+     */
+    int fire() {
+        collectRequests();
+        long now = ++this.tick;
+
+        int woken = 0;
+        while (!this.timers.isEmpty() && this.timers.peek().due <= now) {
+            Timer timer = this.timers.poll();
+            if (this.current.get(timer.context) != timer) continue;
+            this.current.remove(timer.context);
+            timer.context.getAgentInterface().getAgent().addExternalTrigger(new WakeUpExternalTrigger());
+            woken++;
+        }
+        return woken;
+    }
+
+    /**
+     * @return Number of agents with a timer. Only to be called from the tick hooks
+     */
+    int size() {
+        collectRequests();
+        return this.current.size();
+    }
+
+    private void collectRequests() {
+        Timer timer;
+        while ((timer = this.requests.poll()) != null) {
+            this.timers.add(timer);
+            this.current.put(timer.context, timer);
+        }
+    }
+
+    private static class Timer implements Comparable<Timer> {
+        final CarContext context;
+        final long due;
+
+        Timer(CarContext context, long due) {
+            this.context = context;
+            this.due = due;
+        }
+
+        @Override
+        public int compareTo(Timer other) {
+            return Long.compare(this.due, other.due);
+        }
+    }
+}
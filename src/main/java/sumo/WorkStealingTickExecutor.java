@@ -0,0 +1,206 @@
+package sumo;
+
+import nl.uu.cs.iss.ga.sim2apl.core.agent.AgentID;
+import nl.uu.cs.iss.ga.sim2apl.core.deliberation.DeliberationRunnable;
+import nl.uu.cs.iss.ga.sim2apl.core.tick.TickExecutor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * A tick executor that performs the deliberation cycles of all scheduled agents on a work-stealing
+ * {@link ForkJoinPool}.
+ * <p>
+ * The scheduled agents are split recursively into chunks. Chunks are only split as long as they are larger than a
+ * granularity derived from the number of agents and the number of workers, so the overhead of splitting stays small,
+ * while idle workers can still steal the unprocessed halves of chunks from workers that are held up by a few slow
+ * agents. The utilisation of the workers is measured every tick, and logged at FINE level, as the environment already
+ * logs every tick at INFO level. It is also available through {@link #getLastTickUtilisation()}.
+ */
+public class WorkStealingTickExecutor implements TickExecutor {
+    private static final Logger LOG = Logger.getLogger(WorkStealingTickExecutor.class.getName());
+
+    /**
+     * Number of chunks per worker agents are split into at most. More chunks balance load better, fewer chunks have
+     * less overhead.
+     */
+    private static final int CHUNKS_PER_WORKER = 8;
+
+    private final ForkJoinPool pool;
+    private final int parallelism;
+    private final Random random;
+
+    /**
+     * Agents scheduled for the next tick. A linked set keeps scheduling O(1) per agent, while keeping the order in
+     * which agents were scheduled, so the shuffle of each tick is reproducible
+     */
+    private final Set<DeliberationRunnable> scheduledRunnables = new LinkedHashSet<>();
+
+    private int tick = 0;
+    private int lastTickDuration = 0;
+    private double lastTickUtilisation = 0;
+
+    /**
+     * Create a work-stealing executor that uses one worker per available processor
+     *
+     * @param random Random used to shuffle the order of agents each tick. Can be null to disable shuffling
+     */
+    public WorkStealingTickExecutor(Random random) {
+        this(Runtime.getRuntime().availableProcessors(), random);
+    }
+
+    /**
+     * @param nThreads  Number of workers
+     * @param random    Random used to shuffle the order of agents each tick. Can be null to disable shuffling
+     */
+    public WorkStealingTickExecutor(int nThreads, Random random) {
+        this.parallelism = Math.max(1, nThreads);
+        this.pool = new ForkJoinPool(this.parallelism);
+        this.random = random;
+    }
+
+    @Override
+    public boolean scheduleForNextTick(DeliberationRunnable agentDeliberationRunnable) {
+        synchronized (this.scheduledRunnables) {
+            return this.scheduledRunnables.add(agentDeliberationRunnable);
+        }
+    }
+
+    @Override
+    public HashMap<AgentID, List<String>> doTick() {
+        List<DeliberationRunnable> runnables;
+        synchronized (this.scheduledRunnables) {
+            runnables = new ArrayList<>(this.scheduledRunnables);
+            this.scheduledRunnables.clear();
+        }
+
+        if (this.random != null) {
+            Collections.shuffle(runnables, this.random);
+        }
+
+        @SuppressWarnings("unchecked")
+        List<String>[] results = new List[runnables.size()];
+        LongAdder busyNanos = new LongAdder();
+        int granularity = Math.max(1, runnables.size() / (this.parallelism * CHUNKS_PER_WORKER));
+
+        long start = System.nanoTime();
+        if (!runnables.isEmpty()) {
+            this.pool.invoke(new DeliberationTask(runnables, results, 0, runnables.size(), granularity, busyNanos));
+        }
+        long wallNanos = System.nanoTime() - start;
+
+        HashMap<AgentID, List<String>> agentPlanActions = new HashMap<>();
+        for (int i = 0; i < results.length; i++) {
+            if (results[i] != null) {
+                agentPlanActions.put(runnables.get(i).getAgentID(), results[i]);
+            }
+        }
+
+        this.lastTickDuration = (int) (wallNanos / 1_000_000);
+        this.lastTickUtilisation = wallNanos == 0 ? 0 : (double) busyNanos.sum() / (wallNanos * this.parallelism);
+        if (LOG.isLoggable(Level.FINE)) {
+            LOG.fine(String.format("Tick %d: deliberated %d agents on %d workers in %d milliseconds. " +
+                            "Worker utilisation %.1f%%", this.tick, runnables.size(), this.parallelism,
+                    this.lastTickDuration, this.lastTickUtilisation * 100));
+        }
+
+        this.tick++;
+        return agentPlanActions;
+    }
+
+    @Override
+    public int getCurrentTick() {
+        return this.tick;
+    }
+
+    @Override
+    public int getLastTickDuration() {
+        return this.lastTickDuration;
+    }
+
+    /**
+     * Fraction of the available worker time that was spent deliberating during the last tick
+     *
+     * @return Utilisation between 0 and 1
+     */
+    public double getLastTickUtilisation() {
+        return this.lastTickUtilisation;
+    }
+
+    @Override
+    public List<AgentID> getScheduledAgents() {
+        synchronized (this.scheduledRunnables) {
+            return this.scheduledRunnables.stream().map(DeliberationRunnable::getAgentID).collect(Collectors.toList());
+        }
+    }
+
+    @Override
+    public int getNofScheduledAgents() {
+        synchronized (this.scheduledRunnables) {
+            return this.scheduledRunnables.size();
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        this.pool.shutdownNow();
+    }
+
+    /**
+     * Performs the deliberation cycles of a range of agents, splitting the range in halves as long as it is larger
+     * than the granularity
+     */
+    private static class DeliberationTask extends RecursiveAction {
+        private final List<DeliberationRunnable> runnables;
+        private final List<String>[] results;
+        private final int from;
+        private final int to;
+        private final int granularity;
+        private final LongAdder busyNanos;
+
+        DeliberationTask(List<DeliberationRunnable> runnables, List<String>[] results, int from, int to,
+                         int granularity, LongAdder busyNanos) {
+            this.runnables = runnables;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+            this.granularity = granularity;
+            this.busyNanos = busyNanos;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.to - this.from > this.granularity) {
+                int mid = (this.from + this.to) >>> 1;
+                invokeAll(
+                        new DeliberationTask(this.runnables, this.results, this.from, mid, this.granularity,
+                                this.busyNanos),
+                        new DeliberationTask(this.runnables, this.results, mid, this.to, this.granularity,
+                                this.busyNanos));
+                return;
+            }
+
+            long start = System.nanoTime();
+            for (int i = this.from; i < this.to; i++) {
+                DeliberationRunnable runnable = this.runnables.get(i);
+                try {
+                    this.results[i] = runnable.call();
+                } catch (Exception e) {
+                    LOG.log(Level.SEVERE, "Deliberation of agent " + runnable.getAgentID() + " failed", e);
+                }
+            }
+            this.busyNanos.add(System.nanoTime() - start);
+        }
+    }
+}
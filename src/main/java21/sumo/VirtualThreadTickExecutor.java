@@ -0,0 +1,129 @@
+package sumo;
+
+import nl.uu.cs.iss.ga.sim2apl.core.agent.AgentID;
+import nl.uu.cs.iss.ga.sim2apl.core.deliberation.DeliberationRunnable;
+import nl.uu.cs.iss.ga.sim2apl.core.tick.TickExecutor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * A tick executor that performs the deliberation cycle of every scheduled agent on its own virtual thread.
+ * <p>
+ * Plans block on TraCI I/O when they query the environment. On a fixed pool of platform threads, a few slow queries
+ * stall entire workers. Virtual threads are unmounted from their carrier thread while they block, so thousands of
+ * agents waiting for the environment do not tie up the carrier threads.
+ * <p>
+ * This only holds for I/O outside a monitor. TraaS sends each TraCI request while holding the monitor of the
+ * connection, and a virtual thread that blocks inside a monitor pins its carrier thread until JDK 24. Agents that
+ * query SUMO over TraCI thus pin carriers for the duration of their requests, and gain little over a platform thread
+ * pool. The executor pays off when agents block elsewhere, e.g. on the belief store or on in-process backends. Compare
+ * it with the work-stealing executor for a given workload with the TickExecutorBenchmark of the benchmarks module.
+ * <p>
+ * This class requires JDK 21, and is only compiled when building with the jdk21 Maven profile.
+ */
+public class VirtualThreadTickExecutor implements TickExecutor {
+    private static final Logger LOG = Logger.getLogger(VirtualThreadTickExecutor.class.getName());
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Random random;
+
+    /**
+     * Agents scheduled for the next tick, in the order they were scheduled
+     */
+    private final Set<DeliberationRunnable> scheduledRunnables = new LinkedHashSet<>();
+
+    private int tick = 0;
+    private int lastTickDuration = 0;
+
+    /**
+     * @param random Random used to shuffle the order of agents each tick. Can be null to disable shuffling
+     */
+    public VirtualThreadTickExecutor(Random random) {
+        this.random = random;
+    }
+
+    @Override
+    public boolean scheduleForNextTick(DeliberationRunnable agentDeliberationRunnable) {
+        synchronized (this.scheduledRunnables) {
+            return this.scheduledRunnables.add(agentDeliberationRunnable);
+        }
+    }
+
+    @Override
+    public HashMap<AgentID, List<String>> doTick() {
+        List<DeliberationRunnable> runnables;
+        synchronized (this.scheduledRunnables) {
+            runnables = new ArrayList<>(this.scheduledRunnables);
+            this.scheduledRunnables.clear();
+        }
+
+        if (this.random != null) {
+            Collections.shuffle(runnables, this.random);
+        }
+
+        HashMap<AgentID, List<String>> agentPlanActions = new HashMap<>();
+        long start = System.currentTimeMillis();
+        try {
+            List<Future<List<String>>> futures = this.executor.invokeAll(runnables);
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    List<String> result = futures.get(i).get();
+                    if (result != null) {
+                        agentPlanActions.put(runnables.get(i).getAgentID(), result);
+                    }
+                } catch (ExecutionException e) {
+                    LOG.log(Level.SEVERE, "Deliberation of agent " + runnables.get(i).getAgentID() + " failed", e);
+                }
+            }
+        } catch (InterruptedException e) {
+            LOG.log(Level.SEVERE, "Interrupted while waiting for agents to finish deliberation", e);
+            Thread.currentThread().interrupt();
+        }
+        this.lastTickDuration = (int) (System.currentTimeMillis() - start);
+
+        this.tick++;
+        return agentPlanActions;
+    }
+
+    @Override
+    public int getCurrentTick() {
+        return this.tick;
+    }
+
+    @Override
+    public int getLastTickDuration() {
+        return this.lastTickDuration;
+    }
+
+    @Override
+    public List<AgentID> getScheduledAgents() {
+        synchronized (this.scheduledRunnables) {
+            return this.scheduledRunnables.stream().map(DeliberationRunnable::getAgentID).collect(Collectors.toList());
+        }
+    }
+
+    @Override
+    public int getNofScheduledAgents() {
+        synchronized (this.scheduledRunnables) {
+            return this.scheduledRunnables.size();
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        this.executor.shutdownNow();
+    }
+}
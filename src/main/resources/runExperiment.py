@@ -1,6 +1,6 @@
 #!/bin/python3
 
-import os, subprocess
+import subprocess
 import time
 
 java = "java"
@@ -40,23 +40,12 @@ for n in ncars:
 				args = [java, "-jar", jar, "-s", "sumo", "-c", net, "-i", str(iterations), "--step-length", str(1), 
 				"--statistics-directory", logdir,
 					"--number-of-cars", str(n), "--rich", str(r), "--medium", medium, "--poor", poor,
-					"--speed-reduction", str(srf), "--min-gap", str(mg), "--agent-seed", str(agentSeed), "--full-statistics"]
+					"--speed-reduction", str(srf), "--min-gap", str(mg), "--agent-seed", str(agentSeed), "--full-statistics", "--extract-statistics"]
 
 				expStartTime = time.time()
 				subprocess.call(args)
 				took = time.time() - expStartTime
 				timeFile.write(f'{took} seconds for {n} agents in {net} with {r}% rich and a minimum gap of {mg}\n')
-
-				wd = os.getcwd()
-				os.chdir(logdir)
-				files = {'agent' : '', 'routes' : '', 'emission' : ''}
-				for f in os.listdir("."):
-					for k in files.keys():
-						if k in f:
-							files[k] = f
-
-				subprocess.call([wd + "/extractValues.py", files['routes'], files['agent'], files['emission']])
-				os.chdir(wd)
 tookTotal = time.time() - startTime
 timeFile.write(f'total execution time was {tookTotal} seconds\n')
 timeFile.close()
\ No newline at end of file